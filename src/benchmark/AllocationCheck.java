@@ -0,0 +1,292 @@
+/**
+ * AllocationCheck class verifying that the steady state of a simulation allocates nothing.
+ *
+ * Each engine of the extended model is run past its warm-up, so that the hot path is
+ * compiled, and then the bytes allocated by the running thread are read before and after a
+ * number of further tics. Two loops are checked: Simulation.go alone, as advanced by Global,
+ * and the whole run of a sweep, opening a CsvSink, setting up a Simulation and running it to
+ * its last tic. The run allocates while it is set up, so it is measured as the difference
+ * between a run of the warm-up tics and a run of the warm-up and the measured tics, which
+ * set up the same objects. Any byte allocated by a steady-state tic is reported as a
+ * failure, so a change bringing allocation back onto the hot path is caught.
+ *
+ * Only sequential runs are checked. A parallel run hands each stripe to the fork/join pool
+ * as a task object, and the workers allocate on threads of their own.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package benchmark;
+
+import extended.ArrayMuscle;
+import extended.Configuration;
+import extended.CsvSink;
+import extended.Simulation;
+import extended.Sweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class AllocationCheck {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // settings every engine is checked with
+    private static final String[] VARIANTS = {
+        "default", "fastMath", "compensatedSums", "geometricLift", "convergence"
+    };
+
+    private static final int WARMUP_RUNS = 2; // full runs before the runs are measured
+
+    private int warmupTics;    // tics run before measuring
+    private int measuredTics;  // tics measured
+    private long overhead;     // bytes allocated by reading the allocated bytes itself
+    private int failures;      // number of loops that allocated
+
+    /**
+     * Bytes allocated so far by the calling thread.
+     *
+     * @return allocated bytes
+     */
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Measure the bytes allocated by reading the allocated bytes, which is subtracted from
+     * every measurement.
+     */
+    private void calibrate() {
+        long smallest = Long.MAX_VALUE;
+        for (int i = 0; i < 10_000; i++) {
+            long before = allocatedBytes();
+            smallest = Math.min(smallest, allocatedBytes() - before);
+        }
+        overhead = smallest;
+    }
+
+    /**
+     * Check both loops of one configuration on one engine.
+     *
+     * @param config configuration of the simulation, running the warm-up and measured tics
+     * @param shorter same configuration running the warm-up tics only
+     * @param engine name of the state engine
+     * @param variant description of the configuration
+     * @param output path of the CSV the sink writes to
+     * @throws IOException if the CSV cannot be written
+     */
+    private void check(
+        Configuration config,
+        Configuration shorter,
+        String engine,
+        String variant,
+        String output
+    ) throws IOException {
+        Simulation simulation = new Simulation(config, engine);
+        if (engine.equals("vector") && simulation.getMuscle() instanceof ArrayMuscle) {
+            System.out.println("Skipping the vector engine, it is unavailable");
+            return;
+        }
+
+        for (int tic = 0; tic < warmupTics; tic++) {
+            simulation.go();
+        }
+        long before = allocatedBytes();
+        for (int tic = 0; tic < measuredTics; tic++) {
+            simulation.go();
+        }
+        String name = config.isSinglePrecision() ? "float" : engine;
+        report("go", name, variant, allocatedBytes() - before);
+
+        // the first runs compile the loop, fill the caches of the file channel and let code
+        // deoptimised at a late tic be compiled again, whose interpreted vectors allocate
+        for (int r = 0; r < WARMUP_RUNS; r++) {
+            run(config, engine, output);
+        }
+        long warmupRun = run(shorter, engine, output);
+        long fullRun = run(config, engine, output);
+        report("run", name, variant, fullRun - warmupRun + overhead);
+    }
+
+    /**
+     * Run a simulation to its last tic the way a sweep runs each configuration.
+     *
+     * @param config configuration of the simulation
+     * @param engine name of the state engine
+     * @param output path of the CSV the sink writes to
+     * @return bytes allocated by the run
+     * @throws IOException if the CSV cannot be written
+     */
+    private static long run(Configuration config, String engine, String output)
+        throws IOException {
+        long before = allocatedBytes();
+        try (CsvSink sink = new CsvSink(output)) {
+            Simulation simulation = new Simulation(config, engine);
+            simulation.run(sink);
+        }
+        return allocatedBytes() - before;
+    }
+
+    /**
+     * Create the configuration of a variant.
+     *
+     * @param variant name of the variant in VARIANTS
+     * @param singlePrecision store the state in single precision
+     * @param gridWidth width of grid
+     * @param gridHeight height of grid
+     * @param maxTic upper bound for tic
+     * @return configuration of the variant
+     */
+    private static Configuration configure(
+        String variant,
+        boolean singlePrecision,
+        int gridWidth,
+        int gridHeight,
+        int maxTic
+    ) {
+        Configuration config = new Configuration(
+            95,
+            8.0,
+            5,
+            50,
+            true,
+            0.7,
+            gridWidth,
+            gridHeight,
+            maxTic,
+            42
+        )
+            .withFastMath(variant.equals("fastMath"))
+            .withCompensatedSums(variant.equals("compensatedSums"))
+            .withSinglePrecision(singlePrecision);
+        if (variant.equals("geometricLift")) {
+            return config.withGeometricLift(true);
+        } else if (variant.equals("convergence")) {
+            // a tolerance of 0 keeps observing every tic without ever ending the run
+            return config.withConvergence(100, 0, false);
+        }
+        return config;
+    }
+
+    /**
+     * Print the allocation of a loop and count it as a failure if it allocated.
+     *
+     * @param loop name of the loop
+     * @param engine name of the state engine
+     * @param variant description of the configuration
+     * @param bytes bytes allocated while measuring, including the overhead
+     */
+    private void report(String loop, String engine, String variant, long bytes) {
+        long allocated = Math.max(0, bytes - overhead);
+        if (allocated > 0) {
+            failures++;
+        }
+        System.out.printf(
+            "%-4s %-7s %-15s %10d bytes in %d tics  %s%n",
+            loop,
+            engine,
+            variant,
+            allocated,
+            measuredTics,
+            allocated > 0 ? "ALLOCATES" : "ok"
+        );
+    }
+
+    /**
+     * Runs the allocation check.
+     *
+     * Command line arguments:
+     *  --engines=[names]          Engines to check, float being the array layout in single
+     *                             precision, defaults to object,array,active,vector,offheap,
+     *                             float
+     *  --gridWidth=[width]        Width of grid, defaults to 17
+     *  --gridHeight=[height]      Height of grid, defaults to 17
+     *  --warmupTics=[tics]        Tics run before measuring, defaults to 20000
+     *  --tics=[tics]              Tics measured, defaults to 2000
+     *  --output=[filePath]        CSV written by the sink, a temporary file if not given
+     *
+     * Every engine is checked with the default settings, with fast math, with compensated
+     * sums, with geometric lift sampling and with a convergence detector. The program exits
+     * with status 1 if any steady-state loop allocated.
+     *
+     * @param args the command line arguments used to configure the check.
+     */
+    public static void main(String[] args) {
+        AllocationCheck check = new AllocationCheck();
+        String engines = "object,array,active,vector,offheap,float";
+        int gridWidth = 17;
+        int gridHeight = 17;
+        String output = null;
+        check.warmupTics = 20_000;
+        check.measuredTics = 2_000;
+
+        // parse command line arguments.
+        for (String arg : args) {
+            if (arg.startsWith("--engines=")) {
+                engines = arg.split("=")[1];
+            } else if (arg.startsWith("--gridWidth=")) {
+                gridWidth = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--gridHeight=")) {
+                gridHeight = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--warmupTics=")) {
+                check.warmupTics = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--tics=")) {
+                check.measuredTics = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--output=")) {
+                output = arg.split("=")[1];
+            }
+        }
+
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocated bytes per thread are not supported by this JVM");
+            return;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        check.calibrate();
+
+        int maxTic = check.warmupTics + check.measuredTics;
+        List<String> engineNames = Sweep.parseValues(engines);
+
+        try {
+            File temporary = null;
+            if (output == null) {
+                temporary = File.createTempFile("allocation-check", ".csv");
+                temporary.deleteOnExit();
+                output = temporary.getPath();
+            }
+
+            for (String engine : engineNames) {
+                boolean singlePrecision = engine.equals("float");
+                String muscle = singlePrecision ? "array" : engine;
+                for (String variant : VARIANTS) {
+                    Configuration config =
+                        configure(variant, singlePrecision, gridWidth, gridHeight, maxTic);
+                    Configuration shorter = configure(
+                        variant,
+                        singlePrecision,
+                        gridWidth,
+                        gridHeight,
+                        check.warmupTics
+                    );
+                    check.check(config, shorter, muscle, variant, output);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception occured during writing the CSV");
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        System.out.printf("%d loops allocated%n", check.failures);
+        if (check.failures > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * FastForwardCheck class verifying that a fast forwarded run repeats its last period.
+ *
+ * Runs are set up to converge early with fast forward, for several workout intervals and
+ * without lifting, and their CSV is read back. Every row after the convergence tic c must
+ * equal the row one period earlier, so row c + k is checked against row c + k - period for
+ * every k up to the upper bound for tic. The period is the number of days between workouts
+ * when lifting and a single tic otherwise.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package benchmark;
+
+import extended.Configuration;
+import extended.CsvSink;
+import extended.Simulation;
+import extended.Sweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FastForwardCheck {
+
+    private static final String CONVERGENCE = "CONVERGENCE";
+
+    private int failures;  // number of runs whose fast forwarded rows are wrong
+    private int skipped;   // number of runs that did not converge
+
+    /**
+     * Run one configuration with fast forward and check its rows after convergence.
+     *
+     * @param config configuration of the run, with fast forward
+     * @param engine name of the state engine
+     * @param output path of the CSV the run writes to
+     * @throws IOException if the CSV cannot be written or read
+     */
+    private void check(Configuration config, String engine, String output) throws IOException {
+        try (CsvSink sink = new CsvSink(output)) {
+            new Simulation(config, engine).run(sink);
+        }
+
+        // rows by tic, and the tic after the CONVERGENCE header
+        Map<Integer, String> rows = new HashMap<>();
+        int convergenceTic = -1;
+        List<String> lines = Files.readAllLines(new File(output).toPath());
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n);
+            if (line.equals(CONVERGENCE)) {
+                convergenceTic = Integer.parseInt(lines.get(n + 2).trim());
+                break;
+            }
+            int comma = line.indexOf(',');
+            if (comma > 0 && Character.isDigit(line.charAt(0))) {
+                rows.put(Integer.parseInt(line.substring(0, comma)), line.substring(comma));
+            }
+        }
+
+        String description = String.format(
+            "%-7s daysBwWorkouts=%d lift=%-5b",
+            engine,
+            config.getDaysBetweenWorkouts(),
+            config.isLift()
+        );
+        if (convergenceTic < 0) {
+            skipped++;
+            System.out.printf("%s  did not converge, skipped%n", description);
+            return;
+        }
+
+        int period = config.isLift() ? config.getDaysBetweenWorkouts() : 1;
+        int mismatches = 0;
+        int firstMismatch = -1;
+        for (int tic = convergenceTic + 1; tic <= config.getMaxTic(); tic++) {
+            String row = rows.get(tic);
+            if (row == null || !row.equals(rows.get(tic - period))) {
+                mismatches++;
+                if (firstMismatch < 0) {
+                    firstMismatch = tic;
+                }
+            }
+        }
+
+        if (mismatches > 0) {
+            failures++;
+        }
+        System.out.printf(
+            "%s  converged at %d, %d rows fast forwarded  %s%n",
+            description,
+            convergenceTic,
+            config.getMaxTic() - convergenceTic,
+            mismatches > 0 ? "MISMATCH from tic " + firstMismatch : "ok"
+        );
+    }
+
+    /**
+     * Runs the fast forward check.
+     *
+     * Command line arguments:
+     *  --engines=[names]          Engines to check, defaults to object,array
+     *  --daysBwWorkouts=[days]    Workout intervals to check, defaults to 1,3,5,7
+     *  --maxTic=[tics]            Number of tics of every run, defaults to 1500
+     *  --output=[filePath]        CSV written by the runs, a temporary file if not given
+     *
+     * Every interval is checked when lifting, and a single run checks not lifting. The
+     * program exits with status 1 if any fast forwarded row differs from the row one period
+     * earlier.
+     *
+     * @param args the command line arguments used to configure the check.
+     */
+    public static void main(String[] args) {
+        FastForwardCheck check = new FastForwardCheck();
+        String engines = "object,array";
+        String intervals = "1,3,5,7";
+        int maxTic = 1500;
+        String output = null;
+
+        // parse command line arguments.
+        for (String arg : args) {
+            if (arg.startsWith("--engines=")) {
+                engines = arg.split("=")[1];
+            } else if (arg.startsWith("--daysBwWorkouts=")) {
+                intervals = arg.split("=")[1];
+            } else if (arg.startsWith("--maxTic=")) {
+                maxTic = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--output=")) {
+                output = arg.split("=")[1];
+            }
+        }
+
+        try {
+            if (output == null) {
+                File temporary = File.createTempFile("fast-forward-check", ".csv");
+                temporary.deleteOnExit();
+                output = temporary.getPath();
+            }
+
+            for (String engine : Sweep.parseValues(engines)) {
+                for (String interval : Sweep.parseValues(intervals)) {
+                    int days = Integer.parseInt(interval);
+                    check.check(configure(days, true, maxTic), engine, output);
+                }
+                check.check(configure(1, false, maxTic), engine, output);
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception occured during writing or reading the CSV");
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        System.out.printf(
+            "%d runs mismatched, %d did not converge%n",
+            check.failures,
+            check.skipped
+        );
+        if (check.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Create a configuration converging early with fast forward.
+     *
+     * @param daysBwWorkouts days between workouts
+     * @param lift whether the subject lifts
+     * @param maxTic upper bound for tic
+     * @return configuration of the run
+     */
+    private static Configuration configure(int daysBwWorkouts, boolean lift, int maxTic) {
+        return new Configuration(95, 8.0, daysBwWorkouts, 50, lift, 0.7, 17, 17, maxTic, 42)
+            .withConvergence(30, 0.5, true);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Tracks which tiles of the grid can be skipped by a tic without changing its result.
+ *
+ * The grid is split into square tiles of TILE_SIZE patches a side. Without a lift a tic is
+ * the same function of the state every time, and the new state of a patch only depends on
+ * the patch and its eight neighbours, which lie in its own tile and the eight tiles around
+ * it. If none of those tiles changed during the previous tic and that tic did not lift
+ * either, the tic maps the tile onto the same inputs as before and so leaves it unchanged:
+ * it is skipped. The shares a skipped tile hands out during diffusion are also the ones it
+ * stored when it was last evaluated, so its neighbours still gather the right amounts.
+ *
+ * A lift day makes every tile active again, as does a neighbouring tile that changed.
+ * Whether an evaluated tile changed is decided by comparing the state of its patches with a
+ * copy taken before the tic, so skipping is exact: the output is bit-identical to
+ * evaluating every tile.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.Arrays;
+
+public class ActiveTiles {
+
+    public static final int TILE_SIZE = 16; // patches along each side of a tile
+
+    private int height;       // number of patches in each row of the grid
+    private int tileRows;     // number of tiles along the width of the grid
+    private int tileColumns;  // number of tiles along the height of the grid
+
+    // flags of the tiles, indexed by tileRow * tileColumns + tileColumn
+    private boolean[] stable;  // unchanged by the previous tic, which did not lift
+    private boolean[] active;  // evaluated by the current tic
+    private boolean[] changed; // changed by the current tic
+
+    // state of the patches before the current tic, indexed by i * height + j
+    private double[] anabolicBefore;
+    private double[] catabolicBefore;
+    private double[] fiberBefore;
+
+    /**
+     * Constructor for ActiveTiles covering a grid. No tile is stable until a tic ran.
+     *
+     * @param width number of rows of the grid
+     * @param height number of patches in each row of the grid
+     */
+    public ActiveTiles(int width, int height) {
+        this.height = height;
+        this.tileRows = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tileColumns = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.stable = new boolean[tileRows * tileColumns];
+        this.active = new boolean[tileRows * tileColumns];
+        this.changed = new boolean[tileRows * tileColumns];
+        this.anabolicBefore = new double[width * height];
+        this.catabolicBefore = new double[width * height];
+        this.fiberBefore = new double[width * height];
+    }
+
+    /**
+     * Number of heap bytes taken by the tracking of a grid of given size.
+     *
+     * @param width number of rows of the grid
+     * @param height number of patches in each row of the grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 24L * width * height;
+    }
+
+    /**
+     * Decide which tiles the next tic evaluates.
+     *
+     * @param lift whether the tic lifts weight
+     */
+    public void beginTic(boolean lift) {
+        for (int r = 0; r < tileRows; r++) {
+            for (int c = 0; c < tileColumns; c++) {
+                active[r * tileColumns + c] = lift || !neighbourhoodStable(r, c);
+            }
+        }
+        Arrays.fill(changed, false);
+    }
+
+    /**
+     * Record which tiles the tic left unchanged.
+     *
+     * @param lift whether the tic lifted weight
+     */
+    public void endTic(boolean lift) {
+        for (int t = 0; t < stable.length; t++) {
+            stable[t] = !lift && !changed[t];
+        }
+    }
+
+    /**
+     * Forget every stable tile, after the state was changed outside of a tic.
+     */
+    public void reset() {
+        Arrays.fill(stable, false);
+    }
+
+    /**
+     * Whether a tile and every tile around it were stable.
+     *
+     * @param r row of the tile
+     * @param c column of the tile
+     * @return true if the neighbourhood of the tile did not change
+     */
+    private boolean neighbourhoodStable(int r, int c) {
+        for (int nr = Math.max(0, r - 1); nr <= Math.min(tileRows - 1, r + 1); nr++) {
+            for (int nc = Math.max(0, c - 1); nc <= Math.min(tileColumns - 1, c + 1); nc++) {
+                if (!stable[nr * tileColumns + nc]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of tiles along each row of the grid.
+     *
+     * @return tile columns
+     */
+    public int getTileColumns() {
+        return this.tileColumns;
+    }
+
+    /**
+     * Whether the current tic evaluates the tile holding a row segment.
+     *
+     * @param i row of the grid
+     * @param c column of the tile
+     * @return true if the tile is active
+     */
+    public boolean isActive(int i, int c) {
+        return active[(i / TILE_SIZE) * tileColumns + c];
+    }
+
+    /**
+     * Copy the state of a range of patches before the tic changes it.
+     *
+     * @param anabolic anabolic hormone levels
+     * @param catabolic catabolic hormone levels
+     * @param fiber fiber sizes
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    public void save(double[] anabolic, double[] catabolic, double[] fiber, int from, int to) {
+        System.arraycopy(anabolic, from, anabolicBefore, from, to - from);
+        System.arraycopy(catabolic, from, catabolicBefore, from, to - from);
+        System.arraycopy(fiber, from, fiberBefore, from, to - from);
+    }
+
+    /**
+     * Compare the state of a segment of a row after the tic with its copy, marking the tile
+     * holding it as changed if any patch differs.
+     *
+     * @param anabolic anabolic hormone levels
+     * @param catabolic catabolic hormone levels
+     * @param fiber fiber sizes
+     * @param i row of the grid
+     * @param c column of the tile
+     */
+    public void compare(double[] anabolic, double[] catabolic, double[] fiber, int i, int c) {
+        int from = i * height + c * TILE_SIZE;
+        int to = i * height + Math.min(height, (c + 1) * TILE_SIZE);
+        for (int k = from; k < to; k++) {
+            if (anabolic[k] != anabolicBefore[k]
+                || catabolic[k] != catabolicBefore[k]
+                || fiber[k] != fiberBefore[k]) {
+                changed[(i / TILE_SIZE) * tileColumns + c] = true;
+                return;
+            }
+        }
+    }
+}
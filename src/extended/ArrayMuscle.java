@@ -0,0 +1,626 @@
+/**
+ * Structure-of-arrays implementation of the muscle.
+ *
+ * Instead of a grid of Patch objects each owning a MuscleFiber, the state of every patch is
+ * kept in one flat primitive array per field. Patch (i, j) lives at index i * height + j so
+ * a phase is a single linear sweep over contiguous memory, visiting the patches in the same
+ * order as {@link Muscle}. Every phase performs exactly the same arithmetic as the
+ * corresponding method of {@link Patch} and {@link MuscleFiber}.
+ *
+ * A full tic fuses the phases into two passes over the rows split around the diffusion, and
+ * the second pass sums the state for the metrics on the way. With active tiles a tic only
+ * evaluates the tiles ActiveTiles cannot prove to stay unchanged, giving the same output.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class ArrayMuscle implements MuscleEngine {
+
+    private Configuration config; // configuration of the simulation
+    private long seed;            // seed of every random draw
+    private boolean fastMath;     // approximate log10 with FastLog10
+    private int liftTic;          // tic of the lift being performed
+    private boolean liftToday;    // whether the fused tic lifts weight
+
+    // run constants of the configuration, read once instead of for every patch
+    private double liftThreshold;  // probability of a patch being lifted
+    private double nutritionDelta; // relative hormone change of eating
+    private boolean eats;          // whether eating changes the hormones at all
+    private double hoursOfSleep;   // hours of sleep between day
+
+    private int width;      // number of rows of the grid
+    private int height;     // number of patches in each row
+    private int totalGrid;  // number of patches in the grid
+
+    // state of the patches, indexed by i * height + j
+    private double[] anabolicHormone;
+    private double[] catabolicHormone;
+    private double[] fiberSize;
+    private int[] maxSize;
+    private LiftSampler sampler; // samples lifted patches by geometric gaps, null if per patch
+    private int[] lifted;        // patches the sampler selected, row by row
+
+    private DiffusionStencil stencil; // padded share buffers used by diffuse
+    private RowStripes stripes;       // runs the phases over stripes of rows
+    private ActiveTiles tiles;        // tiles a tic evaluates, null to evaluate every patch
+
+    // phases bound once so that running them does not allocate
+    private RowStripes.RowTask dailyActivityTask =
+        (fromRow, toRow) -> performDailyActivity(fromRow * height, toRow * height);
+    private RowStripes.RowTask liftWeightTask =
+        (fromRow, toRow) -> liftWeight(fromRow * height, toRow * height);
+    private RowStripes.RowTask eatTask = (fromRow, toRow) -> eat(fromRow * height, toRow * height);
+    private RowStripes.RowTask sleepTask =
+        (fromRow, toRow) -> sleep(fromRow * height, toRow * height);
+    private RowStripes.RowTask storeSharesTask = this::storeShares;
+    private RowStripes.RowTask gatherSharesTask = this::gatherShares;
+    private RowStripes.RowTask regulateHormonesTask =
+        (fromRow, toRow) -> regulateHormones(fromRow * height, toRow * height);
+    private RowStripes.RowTask developMuscleTask =
+        (fromRow, toRow) -> developMuscle(fromRow * height, toRow * height);
+    private RowStripes.RowTask hormonePassTask = this::hormonePass;
+    private RowStripes.RowTask developPassTask = this::developPass;
+
+    // sums of the state, only up to date while sumsValid is set
+    private boolean sumsValid;
+    private double sumAnabolic;
+    private double sumCatabolic;
+    private double sumMass;
+    private CompensatedSums compensatedSums; // per row sums, null unless compensation is on
+
+    /**
+     * Constructor for ArrayMuscle running every phase on the calling thread.
+     *
+     * @param config configuration of the simulation
+     */
+    public ArrayMuscle(Configuration config) {
+        this(config, null);
+    }
+
+    /**
+     * Constructor for ArrayMuscle to allocate the state arrays with grid width and height from
+     * the configuration.
+     *
+     * @param config configuration of the simulation
+     * @param pool pool running the phases over row stripes, or null to run sequentially
+     */
+    public ArrayMuscle(Configuration config, ForkJoinPool pool) {
+        this(config, pool, false);
+    }
+
+    /**
+     * Constructor for ArrayMuscle, optionally skipping the tiles a tic cannot change.
+     *
+     * @param config configuration of the simulation
+     * @param pool pool running the phases over row stripes, or null to run sequentially
+     * @param activeTiles whether a tic only evaluates the tiles that may change
+     */
+    public ArrayMuscle(Configuration config, ForkJoinPool pool, boolean activeTiles) {
+        this.config = config;
+        this.seed = config.getSeed();
+        this.fastMath = config.isFastMath();
+        this.liftThreshold = config.getLiftThreshold();
+        this.nutritionDelta = config.getNutritionDelta();
+        this.eats = nutritionDelta != 0;
+        this.hoursOfSleep = config.getHourseOfSleep();
+        this.width = config.getGridWidth();
+        this.height = config.getGridHeight();
+        this.totalGrid = width * height;
+        this.anabolicHormone = new double[totalGrid];
+        this.catabolicHormone = new double[totalGrid];
+        this.fiberSize = new double[totalGrid];
+        this.maxSize = new int[totalGrid];
+        if (config.isGeometricLift()) {
+            this.sampler = new LiftSampler(config);
+            this.lifted = new int[totalGrid];
+        }
+        this.stencil = new DiffusionStencil(width, height);
+        this.stripes = new RowStripes(pool, width);
+        if (activeTiles) {
+            this.tiles = new ActiveTiles(width, height);
+        }
+        if (config.isCompensatedSums()) {
+            this.compensatedSums = new CompensatedSums(width);
+        }
+        initialise();
+    }
+
+    /**
+     * Number of heap bytes taken by a muscle of given size: three double and one int array
+     * for the state plus the diffusion buffers.
+     *
+     * @param width width of grid
+     * @param height height of grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 28L * width * height + DiffusionStencil.estimateMemory(width, height);
+    }
+
+    /**
+     * Initialise hormones and muscle fiber of each patch, stripe by stripe.
+     */
+    private void initialise() {
+        stripes.forEach(this::initialiseRows);
+    }
+
+    /**
+     * Initialise hormones and muscle fiber of the patches of the given rows. Every draw is
+     * keyed by its patch, so the stripes give the same state on any number of threads.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void initialiseRows(int fromRow, int toRow) {
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            maxSize[k] = FiberSprout.sprout(config, k);
+            fiberSize[k] = FiberSprout.initialSize(seed, k, maxSize[k]);
+            regulateMuscleFiber(k);
+            anabolicHormone[k] = Configuration.ANABOLIC_HORMONE_MIN;
+            catabolicHormone[k] = Configuration.CATABOLIC_HORMONE_MIN;
+        }
+    }
+
+    /**
+     * Run a whole tic in two passes over the grid. The first pass applies every pointwise
+     * phase before the diffusion and stores the shares of each patch, the second gathers the
+     * shares, regulates the hormones, develops the muscle and sums the state for the metrics.
+     */
+    @Override
+    public void triggerTic(int tic, boolean lift) {
+        liftTic = tic;
+        liftToday = lift;
+        sumsValid = false;
+        if (tiles != null) {
+            tiles.beginTic(lift);
+        }
+        stripes.forEach(hormonePassTask);
+        stripes.forEach(developPassTask);
+        if (tiles != null) {
+            tiles.endTic(lift);
+        }
+        if (compensatedSums != null) {
+            storeCompensatedTotals();
+        }
+    }
+
+    @Override
+    public void triggerDailyActivity() {
+        invalidate();
+        stripes.forEach(dailyActivityTask);
+    }
+
+    @Override
+    public void triggerLiftWeight(int tic) {
+        liftTic = tic;
+        invalidate();
+        stripes.forEach(liftWeightTask);
+    }
+
+    @Override
+    public void triggerEat() {
+        invalidate();
+        stripes.forEach(eatTask);
+    }
+
+    @Override
+    public void triggerSleep() {
+        invalidate();
+        stripes.forEach(sleepTask);
+    }
+
+    @Override
+    public void triggerRegulateHormones() {
+        invalidate();
+        diffuse();
+        stripes.forEach(regulateHormonesTask);
+    }
+
+    @Override
+    public void triggerDevelopMuscle() {
+        invalidate();
+        stripes.forEach(developMuscleTask);
+    }
+
+    /**
+     * Mark the sums and the stable tiles out of date after a phase ran on its own.
+     */
+    private void invalidate() {
+        sumsValid = false;
+        if (tiles != null) {
+            tiles.reset();
+        }
+    }
+
+    /**
+     * Daily activity, lifting weight, eating and sleeping applied row by row, followed by
+     * storing the shares the row hands out, so every phase finds the row still in cache.
+     * With active tiles only the segments of the active tiles are processed.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void hormonePass(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            if (tiles == null || liftToday) {
+                // a lift activates every tile, and whole rows keep the lift sampling per row
+                int from = i * height;
+                int to = from + height;
+                if (tiles != null) {
+                    tiles.save(anabolicHormone, catabolicHormone, fiberSize, from, to);
+                }
+                hormonePhases(from, to);
+                stencil.storeShares(anabolicHormone, catabolicHormone, i, i + 1);
+                continue;
+            }
+            for (int c = 0; c < tiles.getTileColumns(); c++) {
+                if (tiles.isActive(i, c)) {
+                    int fromColumn = c * ActiveTiles.TILE_SIZE;
+                    int toColumn = Math.min(height, fromColumn + ActiveTiles.TILE_SIZE);
+                    int from = i * height + fromColumn;
+                    int to = i * height + toColumn;
+                    tiles.save(anabolicHormone, catabolicHormone, fiberSize, from, to);
+                    hormonePhases(from, to);
+                    stencil.storeSegment(
+                        anabolicHormone,
+                        catabolicHormone,
+                        i,
+                        fromColumn,
+                        toColumn
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * Every phase of a tic before the diffusion applied to a range of patches.
+     *
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    private void hormonePhases(int from, int to) {
+        performDailyActivity(from, to);
+        if (liftToday) {
+            liftWeight(from, to);
+        }
+        if (eats) {
+            eat(from, to);
+        }
+        sleep(from, to);
+    }
+
+    /**
+     * Diffusion, hormone regulation and muscle development applied row by row. A pass over
+     * the whole grid also sums the state in index order, so the metrics need no further
+     * scan; stripes of a parallel run leave that to the getters. With compensation every
+     * stripe sums its own rows instead.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developPass(int fromRow, int toRow) {
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+
+        for (int i = fromRow; i < toRow; i++) {
+            if (tiles == null) {
+                stencil.gatherShares(anabolicHormone, catabolicHormone, i, i + 1);
+                regulateHormones(i * height, (i + 1) * height);
+                developMuscle(i * height, (i + 1) * height);
+            } else {
+                developTiles(i);
+            }
+            if (compensatedSums != null) {
+                sumRow(i);
+                continue;
+            }
+            for (int k = i * height; k < (i + 1) * height; k++) {
+                anabolicTotal += anabolicHormone[k];
+                catabolicTotal += catabolicHormone[k];
+                massTotal += fiberSize[k];
+            }
+        }
+
+        if (compensatedSums == null && fromRow == 0 && toRow == width) {
+            sumAnabolic = anabolicTotal;
+            sumCatabolic = catabolicTotal;
+            sumMass = massTotal;
+            sumsValid = true;
+        }
+    }
+
+    /**
+     * Diffusion, hormone regulation and muscle development applied to the segments of a row
+     * in active tiles, marking the tiles they changed.
+     *
+     * @param i row
+     */
+    private void developTiles(int i) {
+        for (int c = 0; c < tiles.getTileColumns(); c++) {
+            if (tiles.isActive(i, c)) {
+                int fromColumn = c * ActiveTiles.TILE_SIZE;
+                int toColumn = Math.min(height, fromColumn + ActiveTiles.TILE_SIZE);
+                stencil.gatherSegment(anabolicHormone, catabolicHormone, i, fromColumn, toColumn);
+                regulateHormones(i * height + fromColumn, i * height + toColumn);
+                developMuscle(i * height + fromColumn, i * height + toColumn);
+                tiles.compare(anabolicHormone, catabolicHormone, fiberSize, i, c);
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of daily activity on a range of patches.
+     *
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    private void performDailyActivity(int from, int to) {
+        for (int k = from; k < to; k++) {
+            anabolicHormone[k] += log10(fiberSize[k]) * 2.5;
+            catabolicHormone[k] += log10(fiberSize[k]) * 2.0;
+        }
+    }
+
+    /**
+     * Hormonal effect of lifting weight on a range of patches. With geometric sampling the
+     * range holds whole rows, each sampled by LiftSampler.
+     *
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    private void liftWeight(int from, int to) {
+        double threshold = liftThreshold;
+        if (sampler != null) {
+            for (int i = from / height; i < to / height; i++) {
+                int count = sampler.sample(liftTic, i, lifted);
+                for (int n = i * height; n < i * height + count; n++) {
+                    int k = lifted[n];
+                    anabolicHormone[k] += log10(fiberSize[k]) * 55;
+                    catabolicHormone[k] += log10(fiberSize[k]) * 44;
+                }
+            }
+            return;
+        }
+        for (int k = from; k < to; k++) {
+            if (CounterRandom.uniform(seed, liftTic, k, 0) < threshold) {
+                anabolicHormone[k] += log10(fiberSize[k]) * 55;
+                catabolicHormone[k] += log10(fiberSize[k]) * 44;
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of quality of nutrition intake on a range of patches.
+     *
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    private void eat(int from, int to) {
+        double delta = nutritionDelta;
+        for (int k = from; k < to; k++) {
+            anabolicHormone[k] += anabolicHormone[k] * delta;
+            catabolicHormone[k] -= catabolicHormone[k] * delta;
+        }
+    }
+
+    /**
+     * Hormonal effect of sleeping on a range of patches.
+     *
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    private void sleep(int from, int to) {
+        double hours = hoursOfSleep;
+        for (int k = from; k < to; k++) {
+            anabolicHormone[k] -= 0.48 * log10(anabolicHormone[k]) * hours;
+            catabolicHormone[k] -= 0.5 * log10(catabolicHormone[k]) * hours;
+        }
+    }
+
+    /**
+     * Clamp the hormone levels of a range of patches to their limits.
+     *
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    private void regulateHormones(int from, int to) {
+        for (int k = from; k < to; k++) {
+            double anabolic = anabolicHormone[k];
+            double catabolic = catabolicHormone[k];
+            anabolic = Math.min(anabolic, Configuration.ANABOLIC_HORMONE_MAX);
+            anabolic = Math.max(anabolic, Configuration.ANABOLIC_HORMONE_MIN);
+            catabolic = Math.min(catabolic, Configuration.CATABOLIC_HORMONE_MAX);
+            catabolic = Math.max(catabolic, Configuration.CATABOLIC_HORMONE_MIN);
+            anabolicHormone[k] = anabolic;
+            catabolicHormone[k] = catabolic;
+        }
+    }
+
+    /**
+     * Grow and regulate the muscle fibers of a range of patches.
+     *
+     * @param from index of the first patch
+     * @param to index after the last patch
+     */
+    private void developMuscle(int from, int to) {
+        for (int k = from; k < to; k++) {
+            fiberSize[k] -= 0.2 * log10(catabolicHormone[k]);
+            fiberSize[k] += 0.2 * Math.min(
+                log10(anabolicHormone[k]),
+                1.05 * log10(catabolicHormone[k])
+            );
+            regulateMuscleFiber(k);
+        }
+    }
+
+    /**
+     * Ensures that the size of the muscle fiber at given index does not exceed its maximum
+     * or fall below 1.
+     *
+     * @param k index of the patch
+     */
+    private void regulateMuscleFiber(int k) {
+        if (fiberSize[k] < 1) {
+            fiberSize[k] = 1;
+        }
+        if (fiberSize[k] > maxSize[k]) {
+            fiberSize[k] = maxSize[k];
+        }
+    }
+
+    /**
+     * Base 10 logarithm, approximated when the configuration asks for fast math.
+     *
+     * @param x argument
+     * @return log10 of x
+     */
+    private double log10(double x) {
+        return fastMath ? FastLog10.log10(x) : Math.log10(x);
+    }
+
+    /**
+     * Implementation of Netlogo's diffuse function, exchanging shares through the padded
+     * buffers of the stencil so the neighbour loop has no bounds checks.
+     *
+     * Every stripe stores its shares before any stripe gathers, so stripes only ever read
+     * the levels from before diffusion.
+     */
+    @Override
+    public void diffuse() {
+        invalidate();
+        stripes.forEach(storeSharesTask);
+        stripes.forEach(gatherSharesTask);
+    }
+
+    /**
+     * Store the shares handed out by the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void storeShares(int fromRow, int toRow) {
+        stencil.storeShares(anabolicHormone, catabolicHormone, fromRow, toRow);
+    }
+
+    /**
+     * Replace the levels of the patches of the given rows with their diffused levels.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void gatherShares(int fromRow, int toRow) {
+        stencil.gatherShares(anabolicHormone, catabolicHormone, fromRow, toRow);
+    }
+
+    @Override
+    public void saveState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        System.arraycopy(anabolicHormone, 0, anabolic, 0, totalGrid);
+        System.arraycopy(catabolicHormone, 0, catabolic, 0, totalGrid);
+        System.arraycopy(this.fiberSize, 0, fiberSize, 0, totalGrid);
+        System.arraycopy(this.maxSize, 0, maxSize, 0, totalGrid);
+    }
+
+    @Override
+    public void loadState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        invalidate();
+        System.arraycopy(anabolic, 0, anabolicHormone, 0, totalGrid);
+        System.arraycopy(catabolic, 0, catabolicHormone, 0, totalGrid);
+        System.arraycopy(fiberSize, 0, this.fiberSize, 0, totalGrid);
+        System.arraycopy(maxSize, 0, this.maxSize, 0, totalGrid);
+    }
+
+    /**
+     * Sum every field of the state in index order in a single scan, or row by row with
+     * compensation.
+     */
+    private void updateSums() {
+        if (compensatedSums != null) {
+            for (int i = 0; i < width; i++) {
+                sumRow(i);
+            }
+            storeCompensatedTotals();
+            return;
+        }
+
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+        for (int k = 0; k < totalGrid; k++) {
+            anabolicTotal += anabolicHormone[k];
+            catabolicTotal += catabolicHormone[k];
+            massTotal += fiberSize[k];
+        }
+        sumAnabolic = anabolicTotal;
+        sumCatabolic = catabolicTotal;
+        sumMass = massTotal;
+        sumsValid = true;
+    }
+
+    /**
+     * Compensated sums of every field of the state over a row.
+     *
+     * @param i row
+     */
+    private void sumRow(int i) {
+        compensatedSums.clearRow(i);
+        for (int k = i * height; k < (i + 1) * height; k++) {
+            compensatedSums.add(i, CompensatedSums.ANABOLIC, anabolicHormone[k]);
+            compensatedSums.add(i, CompensatedSums.CATABOLIC, catabolicHormone[k]);
+            compensatedSums.add(i, CompensatedSums.MASS, fiberSize[k]);
+        }
+    }
+
+    /**
+     * Merge the compensated sums of the rows into the sums of the state.
+     */
+    private void storeCompensatedTotals() {
+        sumAnabolic = compensatedSums.total(CompensatedSums.ANABOLIC);
+        sumCatabolic = compensatedSums.total(CompensatedSums.CATABOLIC);
+        sumMass = compensatedSums.total(CompensatedSums.MASS);
+        sumsValid = true;
+    }
+
+    @Override
+    public double getAverageAnabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumAnabolic / totalGrid;
+    }
+
+    @Override
+    public double getAverageCatabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumCatabolic / totalGrid;
+    }
+
+    @Override
+    public double getMuscleMass() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumMass / 100;
+    }
+}
@@ -0,0 +1,365 @@
+/**
+ * Complete state of a simulation at a tic, saved to resume the run after a restart.
+ *
+ * A checkpoint holds the configuration, the name of the state engine, the tic, the hormone
+ * levels and fiber sizes of every patch, the state of the convergence detector and the
+ * length of the CSV saved up to the tic. Every random draw is keyed by the seed, the tic
+ * and the patch, so the seed and the tic stand for the state of the random numbers.
+ *
+ * The file is a binary stream ending in a CRC32 of its content. It is written next to its
+ * destination, forced to the disk and only then moved over it, so an interrupted write or a
+ * power loss leaves the previous checkpoint intact.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+public class Checkpoint {
+
+    private static final int MAGIC = 0x4d444350; // "MDCP"
+    private static final int VERSION = 1;
+    private static final int STREAM_BUFFER = 1 << 16; // bytes buffered by the file streams
+    private static final int PATCH_BYTES = 3 * Double.BYTES + 1; // saved state of a patch
+    private static final int DETECTOR_SLOT_BYTES = 3 * Double.BYTES; // a tic of every series
+
+    private Configuration config; // configuration of the simulation
+    private String engine;        // name of the state engine
+    private int tic;              // tic the state belongs to
+    private long csvLength;       // bytes of the CSV saved up to and including the tic
+
+    // state of every patch, indexed by i * height + j
+    private double[] anabolicHormone;
+    private double[] catabolicHormone;
+    private double[] fiberSize;
+    private int[] maxSize;
+    private ConvergenceDetector detector; // state of the detector, null if the run has none
+
+    /**
+     * Constructor for an empty Checkpoint with room for the state of a simulation.
+     *
+     * @param config configuration of the simulation
+     * @param engine name of the state engine, null for the object engine
+     */
+    public Checkpoint(Configuration config, String engine) {
+        int totalGrid = config.getGridWidth() * config.getGridHeight();
+        this.config = config;
+        this.engine = engine != null ? engine : "object";
+        this.anabolicHormone = new double[totalGrid];
+        this.catabolicHormone = new double[totalGrid];
+        this.fiberSize = new double[totalGrid];
+        this.maxSize = new int[totalGrid];
+        if (config.getConvergenceWindow() > 0) {
+            this.detector = new ConvergenceDetector(config);
+        }
+    }
+
+    /**
+     * Copy the state of a simulation into the checkpoint, replacing its previous content.
+     *
+     * @param tic tic the state belongs to
+     * @param csvLength bytes of the CSV saved up to and including the tic
+     * @param muscle muscle of the simulation
+     * @param detector convergence detector of the simulation, or null
+     */
+    public void capture(
+        int tic,
+        long csvLength,
+        MuscleEngine muscle,
+        ConvergenceDetector detector
+    ) {
+        this.tic = tic;
+        this.csvLength = csvLength;
+        muscle.saveState(anabolicHormone, catabolicHormone, fiberSize, maxSize);
+        if (detector != null) {
+            this.detector.copyFrom(detector);
+        }
+    }
+
+    /**
+     * Copy the state of the checkpoint into a muscle and a detector of its configuration.
+     *
+     * @param muscle muscle whose state is replaced
+     * @param detector convergence detector whose state is replaced, or null
+     */
+    public void restore(MuscleEngine muscle, ConvergenceDetector detector) {
+        muscle.loadState(anabolicHormone, catabolicHormone, fiberSize, maxSize);
+        if (detector != null) {
+            detector.copyFrom(this.detector);
+        }
+    }
+
+    /**
+     * Save the checkpoint to a file, replacing the previous checkpoint only once the new one
+     * is complete.
+     *
+     * @param path path to the checkpoint file
+     * @throws IOException if writing fails
+     */
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            OutputStream file = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new CheckedOutputStream(file, crc), STREAM_BUFFER)
+            );
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeConfiguration(out);
+            out.writeUTF(engine);
+            out.writeInt(tic);
+            out.writeLong(csvLength);
+            for (int k = 0; k < maxSize.length; k++) {
+                out.writeDouble(anabolicHormone[k]);
+                out.writeDouble(catabolicHormone[k]);
+                out.writeDouble(fiberSize[k]);
+                out.writeByte(maxSize[k]);
+            }
+            if (detector != null) {
+                detector.write(out);
+            }
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+
+            // the content must be on the disk before the rename can be
+            channel.force(true);
+        }
+        Files.move(
+            temporary,
+            path,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Force the entries of a directory to the disk, so a rename within it survives a power
+     * loss. Directories cannot be opened as channels on every platform, where this does
+     * nothing.
+     *
+     * @param directory directory of the checkpoint
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported for directories here, the rename is as durable as it gets
+        }
+    }
+
+    /**
+     * Save every field of the configuration.
+     *
+     * @param out stream the configuration is written to
+     * @throws IOException if writing fails
+     */
+    private void writeConfiguration(DataOutputStream out) throws IOException {
+        out.writeInt(config.getIntensity());
+        out.writeDouble(config.getHourseOfSleep());
+        out.writeInt(config.getDaysBetweenWorkouts());
+        out.writeInt(config.getSlowTwitchFibersPercentage());
+        out.writeBoolean(config.isLift());
+        out.writeDouble(config.getNutritionQuality());
+        out.writeInt(config.getGridWidth());
+        out.writeInt(config.getGridHeight());
+        out.writeInt(config.getMaxTic());
+        out.writeLong(config.getSeed());
+        out.writeBoolean(config.isFastMath());
+        out.writeBoolean(config.isCompensatedSums());
+        out.writeBoolean(config.isSinglePrecision());
+        out.writeInt(config.getConvergenceWindow());
+        out.writeDouble(config.getConvergenceTolerance());
+        out.writeBoolean(config.isFastForward());
+        out.writeBoolean(config.isGeometricLift());
+        out.writeBoolean(config.isBinomialSprout());
+    }
+
+    /**
+     * Load a checkpoint saved by {@link #write}.
+     *
+     * @param path path to the checkpoint file
+     * @return checkpoint read from the file
+     * @throws IOException if reading fails or the file is not an intact checkpoint
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path))) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " is not a checkpoint of this version");
+            }
+            Configuration config;
+            try {
+                config = readConfiguration(in);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + " is corrupted: " + e.getMessage());
+            }
+            String engine = in.readUTF();
+            int tic = in.readInt();
+            long csvLength = in.readLong();
+            checkBounds(path, config, tic, csvLength);
+
+            Checkpoint checkpoint = new Checkpoint(config, engine);
+            checkpoint.tic = tic;
+            checkpoint.csvLength = csvLength;
+            for (int k = 0; k < checkpoint.maxSize.length; k++) {
+                checkpoint.anabolicHormone[k] = in.readDouble();
+                checkpoint.catabolicHormone[k] = in.readDouble();
+                checkpoint.fiberSize[k] = in.readDouble();
+                checkpoint.maxSize[k] = in.readByte();
+            }
+            if (checkpoint.detector != null) {
+                checkpoint.detector.read(in);
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                throw new IOException(path + " is corrupted");
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Check the header of a checkpoint against the length of its file before the state is
+     * allocated, so a corrupt header is reported instead of sizing huge or negative arrays.
+     *
+     * @param path path to the checkpoint file
+     * @param config configuration read from the header
+     * @param tic tic read from the header
+     * @param csvLength length of the CSV read from the header
+     * @throws IOException if the header does not fit the file
+     */
+    private static void checkBounds(Path path, Configuration config, int tic, long csvLength)
+        throws IOException {
+        long size = Files.size(path);
+        long state = (long) config.getGridWidth() * config.getGridHeight() * PATCH_BYTES;
+        long detector = 0;
+        if (config.getConvergenceWindow() > 0) {
+            if (config.isLift() && config.getDaysBetweenWorkouts() < 1) {
+                throw new IOException(path + " is corrupted: no workout period");
+            }
+            long period = config.isLift() ? config.getDaysBetweenWorkouts() : 1;
+            long window = (config.getConvergenceWindow() + period - 1) / period * period;
+            detector = 2 * window * DETECTOR_SLOT_BYTES;
+        }
+        if (state + detector > size) {
+            throw new IOException(
+                path + " is corrupted: the header needs more than its " + size + " bytes"
+            );
+        }
+        if (tic < 0 || tic > config.getMaxTic() || csvLength < 0) {
+            throw new IOException(path + " is corrupted: tic " + tic + " out of range");
+        }
+    }
+
+    /**
+     * Load every field of a configuration saved by writeConfiguration.
+     *
+     * @param in stream the configuration is read from
+     * @return configuration of the checkpoint
+     * @throws IOException if reading fails
+     */
+    private static Configuration readConfiguration(DataInputStream in) throws IOException {
+        int intensity = in.readInt();
+        double hoursOfSleep = in.readDouble();
+        int daysBetweenWorkouts = in.readInt();
+        int slowTwitchFibersPercentage = in.readInt();
+        boolean lift = in.readBoolean();
+        double nutritionQuality = in.readDouble();
+        int gridWidth = in.readInt();
+        int gridHeight = in.readInt();
+        int maxTic = in.readInt();
+        long seed = in.readLong();
+        boolean fastMath = in.readBoolean();
+        boolean compensatedSums = in.readBoolean();
+        boolean singlePrecision = in.readBoolean();
+        int convergenceWindow = in.readInt();
+        double convergenceTolerance = in.readDouble();
+        boolean fastForward = in.readBoolean();
+        boolean geometricLift = in.readBoolean();
+        boolean binomialSprout = in.readBoolean();
+
+        return new Configuration(
+            intensity,
+            hoursOfSleep,
+            daysBetweenWorkouts,
+            slowTwitchFibersPercentage,
+            lift,
+            nutritionQuality,
+            gridWidth,
+            gridHeight,
+            maxTic,
+            seed
+        )
+            .withFastMath(fastMath)
+            .withCompensatedSums(compensatedSums)
+            .withSinglePrecision(singlePrecision)
+            .withConvergence(convergenceWindow, convergenceTolerance, fastForward)
+            .withGeometricLift(geometricLift)
+            .withBinomialSprout(binomialSprout);
+    }
+
+    /**
+     * Getter method for configuration
+     *
+     * @return configuration of the simulation
+     */
+    public Configuration getConfiguration() {
+        return this.config;
+    }
+
+    /**
+     * Getter method for engine
+     *
+     * @return name of the state engine
+     */
+    public String getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * Getter method for tic
+     *
+     * @return tic the state belongs to
+     */
+    public int getTic() {
+        return this.tic;
+    }
+
+    /**
+     * Getter method for the length of the CSV
+     *
+     * @return bytes of the CSV saved up to and including the tic
+     */
+    public long getCsvLength() {
+        return this.csvLength;
+    }
+}
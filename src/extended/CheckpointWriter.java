@@ -0,0 +1,162 @@
+/**
+ * Writer saving checkpoints of a simulation every given number of tics in the background.
+ *
+ * Two checkpoints are allocated up front and handed back and forth with a writer thread:
+ * the simulation copies its state into a free checkpoint and carries on, while the thread
+ * saves the copy to the file and hands it back. The simulation therefore only waits for the
+ * copy, unless the thread is still busy with both checkpoints. A failed write does not stop
+ * the simulation; it is reported by the next save or by close.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class CheckpointWriter implements Closeable {
+
+    public static final int DEFAULT_INTERVAL = 100; // tics between checkpoints
+
+    private static final int BUFFERS = 2; // checkpoints handed between the threads
+
+    private Path path;      // file the checkpoints are saved to
+    private int interval;   // tics between checkpoints
+    private BlockingQueue<Checkpoint> free;    // checkpoints ready to be filled
+    private BlockingQueue<Checkpoint> pending; // checkpoints waiting to be saved
+    private Thread thread;  // thread saving the checkpoints
+    private volatile IOException failure; // first failed write, null if none
+
+    /**
+     * Start the writer thread of a simulation.
+     *
+     * @param path path to the checkpoint file, replaced by every checkpoint
+     * @param interval tics between checkpoints
+     * @param config configuration of the simulation
+     * @param engine name of the state engine of the simulation
+     */
+    public CheckpointWriter(Path path, int interval, Configuration config, String engine) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        this.path = path;
+        this.interval = interval;
+        this.free = new ArrayBlockingQueue<>(BUFFERS);
+        this.pending = new ArrayBlockingQueue<>(BUFFERS);
+        for (int b = 0; b < BUFFERS; b++) {
+            free.add(new Checkpoint(config, engine));
+        }
+        this.thread = new Thread(this::writeLoop, "checkpoint-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Whether a checkpoint is due after a tic.
+     *
+     * @param tic tic just run
+     * @return true if the tic is a positive multiple of the interval
+     */
+    public boolean isDue(int tic) {
+        return tic > 0 && tic % interval == 0;
+    }
+
+    /**
+     * Copy the state of a simulation and queue it to be saved.
+     *
+     * @param simulation simulation whose state is saved
+     * @param csvLength bytes of the CSV saved up to and including the current tic
+     * @throws IOException if an earlier checkpoint failed to be saved
+     */
+    public void save(Simulation simulation, long csvLength) throws IOException {
+        rethrowFailure();
+        Checkpoint checkpoint = take(free);
+        simulation.save(checkpoint, csvLength);
+        pending.add(checkpoint);
+    }
+
+    /**
+     * Wait until every queued checkpoint is saved and stop the writer thread.
+     *
+     * @throws IOException if a checkpoint failed to be saved
+     */
+    @Override
+    public void close() throws IOException {
+        if (!thread.isAlive()) {
+            return;
+        }
+
+        // both checkpoints are back once the thread saved everything queued
+        for (int b = 0; b < BUFFERS; b++) {
+            take(free);
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * Save the queued checkpoints one by one until the thread is interrupted while idle.
+     */
+    private void writeLoop() {
+        while (true) {
+            Checkpoint checkpoint;
+            try {
+                checkpoint = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                checkpoint.write(path);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                free.add(checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Take a checkpoint from a queue, waiting until one is available.
+     *
+     * @param queue queue to take from
+     * @return checkpoint taken
+     * @throws InterruptedIOException if the calling thread is interrupted while waiting
+     */
+    private static Checkpoint take(BlockingQueue<Checkpoint> queue)
+        throws InterruptedIOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a checkpoint");
+        }
+    }
+
+    /**
+     * Throw the first failure of the writer thread, if any.
+     *
+     * @throws IOException if a checkpoint failed to be saved
+     */
+    private void rethrowFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Saving checkpoint to " + path + " failed", failure);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Compensated sums of the hormone levels and fiber sizes of a grid, kept per row.
+ *
+ * Every row accumulates its own Neumaier sum and compensation for each quantity, so rows
+ * can be summed by different threads. The totals then merge the rows in row order with
+ * another Neumaier sum, which makes them independent of how the rows were split between
+ * threads and keeps the error of the averages at a few ulps however large the grid.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+public class CompensatedSums {
+
+    public static final int ANABOLIC = 0;   // quantity of the anabolic hormone levels
+    public static final int CATABOLIC = 1;  // quantity of the catabolic hormone levels
+    public static final int MASS = 2;       // quantity of the fiber sizes
+
+    private static final int QUANTITIES = 3;
+
+    private int rows;               // number of rows of the grid
+    private double[] sums;          // running sum of each row, indexed by row * 3 + quantity
+    private double[] compensations; // lost low order bits of each running sum
+
+    /**
+     * Constructor for CompensatedSums allocating the sums of every row.
+     *
+     * @param rows number of rows of the grid
+     */
+    public CompensatedSums(int rows) {
+        this.rows = rows;
+        this.sums = new double[rows * QUANTITIES];
+        this.compensations = new double[rows * QUANTITIES];
+    }
+
+    /**
+     * Reset the sums of a row before it is summed again.
+     *
+     * @param row row of the grid
+     */
+    public void clearRow(int row) {
+        for (int q = row * QUANTITIES; q < (row + 1) * QUANTITIES; q++) {
+            sums[q] = 0;
+            compensations[q] = 0;
+        }
+    }
+
+    /**
+     * Add a value to the sum of a row.
+     *
+     * @param row row of the grid the value belongs to
+     * @param quantity ANABOLIC, CATABOLIC or MASS
+     * @param value value to add
+     */
+    public void add(int row, int quantity, double value) {
+        int q = row * QUANTITIES + quantity;
+        double sum = sums[q];
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensations[q] += (sum - total) + value;
+        } else {
+            compensations[q] += (value - total) + sum;
+        }
+        sums[q] = total;
+    }
+
+    /**
+     * Total of a quantity over every row.
+     *
+     * @param quantity ANABOLIC, CATABOLIC or MASS
+     * @return compensated sum of the quantity over the grid
+     */
+    public double total(int quantity) {
+        double sum = 0;
+        double compensation = 0;
+        for (int row = 0; row < rows; row++) {
+            int q = row * QUANTITIES + quantity;
+            double value = sums[q] + compensations[q];
+            double total = sum + value;
+            if (Math.abs(sum) >= Math.abs(value)) {
+                compensation += (sum - total) + value;
+            } else {
+                compensation += (value - total) + sum;
+            }
+            sum = total;
+        }
+        return sum + compensation;
+    }
+}
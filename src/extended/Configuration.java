@@ -1,9 +1,10 @@
 /**
  * Configuration for the model that is used for simulation.
  * 
- * The configuration class is a singleton class to ensure every other class use
- * same parameter values. The class contains constant value for the simulation as well as
- * user defined values from command line interface.
+ * A configuration is immutable and is handed to every object of the simulation it belongs
+ * to, so several differently parameterised simulations can run side by side in the same
+ * JVM. The class contains constant value for the simulation as well as user defined values
+ * from command line interface.
  * 
  * @author Dong Hyeog Jang (582238)
  * @author Junheng Chen (1049540)
@@ -16,27 +17,43 @@ package extended;
 
 public class Configuration {
 
-    protected static final int MAX_TIC = 3000;                 // upper bound for tic
-    protected static final int GRID_WIDTH = 17;                // width of grid
-    protected static final int GRID_HEIGHT = 17;               // height of grid
-    protected static final int ANABOLIC_HORMONE_MAX = 200;     // upper bound for anabolic hormone
-    protected static final int ANABOLIC_HORMONE_MIN = 50;      // lower bound for anabolic hormone
-    protected static final int CATABOLIC_HORMONE_MAX = 250;    // upper bound for catabolic hormone
-    protected static final int CATABOLIC_HORMONE_MIN = 52;     // lower bound for catabolic hormone
-    protected static final double HORMONE_DIFFUSE_RATE = 0.75; // diffuse rate of hormones
-    protected static final int MAX_NEIGHBOUR = 8;              // maximum number of patch neighbours
+    protected static final int DEFAULT_MAX_TIC = 3000;         // default upper bound for tic
+    protected static final int DEFAULT_GRID_WIDTH = 17;        // default width of grid
+    protected static final int DEFAULT_GRID_HEIGHT = 17;       // default height of grid
+    protected static final double DEFAULT_CONVERGENCE_TOLERANCE = 1e-6; // default tolerance
+    public static final int ANABOLIC_HORMONE_MAX = 200;        // upper bound for anabolic hormone
+    public static final int ANABOLIC_HORMONE_MIN = 50;         // lower bound for anabolic hormone
+    public static final int CATABOLIC_HORMONE_MAX = 250;       // upper bound for catabolic hormone
+    public static final int CATABOLIC_HORMONE_MIN = 52;        // lower bound for catabolic hormone
+    public static final double HORMONE_DIFFUSE_RATE = 0.75;    // diffuse rate of hormones
+    public static final int MAX_NEIGHBOUR = 8;                 // maximum number of patch neighbours
 
-    private int intensity;                  // intensity of workout
-    private double hoursOfSleep;            // hours of sleep between day
-    private int daysBetweenWorkouts;        // number of days between workout
-    private int slowTwitchFibersPercentage; // percentage of slow twitch fibers in muscle
-    private boolean lift;                   // indication whether subject do workout or not
-    private double nutritionQuality;        // quality of nutrition
+    private final int intensity;                    // intensity of workout
+    private final double hoursOfSleep;              // hours of sleep between day
+    private final int daysBetweenWorkouts;          // number of days between workout
+    private final int slowTwitchFibersPercentage;   // percentage of slow twitch fibers in muscle
+    private final boolean lift;                     // indication whether subject do workout or not
+    private final double nutritionQuality;          // quality of nutrition
+    private final int gridWidth;                    // width of grid
+    private final int gridHeight;                   // height of grid
+    private final int maxTic;                       // upper bound for tic
+    private final double nutritionDelta;            // relative hormone change of eating
+    private final double liftThreshold;             // probability of a patch being lifted
 
-    private static Configuration instance = null; // singleton instance
+    // options of the run, only ever set on a new copy by the with methods
+    private long seed;                              // seed of every random draw
+    private boolean fastMath;                       // approximate log10 with FastLog10
+    private boolean compensatedSums;                // sum the metrics with compensation
+    private boolean singlePrecision;                // store the state in single precision
+    private int convergenceWindow;                  // tics compared to end a run, 0 if never
+    private double convergenceTolerance;            // largest change of a converged mean
+    private boolean fastForward;                    // save the remaining tics of a converged run
+    private boolean geometricLift;                  // sample lifted patches by geometric gaps
+    private boolean binomialSprout;                 // sprout fibers from one binomial draw
 
     /**
-     * Construtor for Configuration setting the user defined values to the instance.
+     * Construtor for Configuration setting the user defined values to the instance. Every
+     * other option takes its default and is changed on a copy by its with method.
      * 
      * @param intensity intensity of workout
      * @param sleepHours hours of sleep between day
@@ -44,14 +61,22 @@ public class Configuration {
      * @param slowTwitchFiberPercentage percentage of slow twitch fibers in muscle
      * @param lift indicate whether a subject do workout or not
      * @param nutritionQuality quality of nutrition
+     * @param gridWidth width of grid
+     * @param gridHeight height of grid
+     * @param maxTic upper bound for tic
+     * @param seed seed of every random draw
      */
-    private Configuration(
+    public Configuration(
         int intensity,
         double sleepHours,
         int workoutInterval,
         int slowTwitchFiberPercentage,
         boolean lift,
-        double nutritionQuality
+        double nutritionQuality,
+        int gridWidth,
+        int gridHeight,
+        int maxTic,
+        long seed
     ) {
         this.intensity = intensity;
         this.hoursOfSleep = sleepHours;
@@ -59,51 +84,56 @@ public class Configuration {
         this.slowTwitchFibersPercentage = slowTwitchFiberPercentage;
         this.lift = lift;
         this.nutritionQuality = nutritionQuality;
-    }
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.maxTic = maxTic;
+        this.seed = seed;
+        this.convergenceTolerance = DEFAULT_CONVERGENCE_TOLERANCE;
 
-    /**
-     * Create and return Configuration instance 
-     * 
-     * @param intensity intensity of workout
-     * @param sleepHours hours of sleep between day
-     * @param workoutInterval number of days between workout
-     * @param slowTwitchFiberPercentage percentage of slow twitch fibers in muscle
-     * @param lift indicate whether a subject do workout or not
-     * @param nutritionQuality quality of nutrition
-     * 
-     * @return singleton Configuration instance
-     */
-    public static Configuration getInstance(
-        int intensity,
-        double sleepHours,
-        int workoutInterval,
-        int slowTwitchFiberPercentage,
-        boolean lift,
-        double nutritionQuality
-    ) {
-        if (instance == null) {
-            instance = new Configuration(
-                intensity,
-                sleepHours,
-                workoutInterval,
-                slowTwitchFiberPercentage,
-                lift,
-                nutritionQuality
+        // run constants of the tic, folded once in the order the model evaluates them so
+        // every engine applies the same bits without recomputing them per patch
+        double offset = 1 / (1 + Math.exp(-0.5));
+        this.nutritionDelta = 0.5 * ((1 / (1 + Math.exp(-nutritionQuality))) - offset);
+        double liftIntensity = (double) intensity / 100;
+        this.liftThreshold = liftIntensity * liftIntensity;
+
+        if (gridWidth < 1 || gridHeight < 1 || maxTic < 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive and maxTic >= 0");
+        }
+        if ((long) gridWidth * gridHeight > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(
+                "Grid of " + gridWidth + "x" + gridHeight + " patches is too large"
             );
         }
-        return instance;
     }
 
     /**
-     * Get singleton instance of the Configuration.
+     * Construtor for a copy of a configuration, which a with method then changes in one
+     * option before handing it out.
      * 
-     * @return singleton Configuration instance
+     * @param other configuration to copy
      */
-    public static Configuration getInstance() {
-        if (instance == null) {
-            throw new IllegalStateException("Instance not created yet.");
-        }
-        return instance;
+    private Configuration(Configuration other) {
+        this.intensity = other.intensity;
+        this.hoursOfSleep = other.hoursOfSleep;
+        this.daysBetweenWorkouts = other.daysBetweenWorkouts;
+        this.slowTwitchFibersPercentage = other.slowTwitchFibersPercentage;
+        this.lift = other.lift;
+        this.nutritionQuality = other.nutritionQuality;
+        this.gridWidth = other.gridWidth;
+        this.gridHeight = other.gridHeight;
+        this.maxTic = other.maxTic;
+        this.nutritionDelta = other.nutritionDelta;
+        this.liftThreshold = other.liftThreshold;
+        this.seed = other.seed;
+        this.fastMath = other.fastMath;
+        this.compensatedSums = other.compensatedSums;
+        this.singlePrecision = other.singlePrecision;
+        this.convergenceWindow = other.convergenceWindow;
+        this.convergenceTolerance = other.convergenceTolerance;
+        this.fastForward = other.fastForward;
+        this.geometricLift = other.geometricLift;
+        this.binomialSprout = other.binomialSprout;
     }
 
     /**
@@ -160,6 +190,239 @@ public class Configuration {
         return this.nutritionQuality;
     }
 
+    /**
+     * Getter method for grid width
+     * 
+     * @return int value of grid width
+     */
+    public int getGridWidth() {
+        return this.gridWidth;
+    }
+
+    /**
+     * Getter method for grid height
+     * 
+     * @return int value of grid height
+     */
+    public int getGridHeight() {
+        return this.gridHeight;
+    }
+
+    /**
+     * Getter method for upper bound of tic
+     * 
+     * @return int value of upper bound for tic
+     */
+    public int getMaxTic() {
+        return this.maxTic;
+    }
+
+    /**
+     * Getter method for seed
+     * 
+     * @return long value of seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Getter method for fast math
+     * 
+     * @return true if log10 is approximated with FastLog10
+     */
+    public boolean isFastMath() {
+        return this.fastMath;
+    }
+
+    /**
+     * Getter method for compensated sums
+     * 
+     * @return true if the metrics are summed with compensation per row
+     */
+    public boolean isCompensatedSums() {
+        return this.compensatedSums;
+    }
+
+    /**
+     * Getter method for single precision
+     * 
+     * @return true if the hormones and fiber sizes are stored as float
+     */
+    public boolean isSinglePrecision() {
+        return this.singlePrecision;
+    }
+
+    /**
+     * Getter method for the convergence window
+     * 
+     * @return number of tics of the two last windows whose means are compared to detect
+     *         convergence, 0 if runs always go on until the upper bound for tic
+     */
+    public int getConvergenceWindow() {
+        return this.convergenceWindow;
+    }
+
+    /**
+     * Getter method for the convergence tolerance
+     * 
+     * @return double value of the largest difference between the means of a series over
+     *         the two last windows of a converged run
+     */
+    public double getConvergenceTolerance() {
+        return this.convergenceTolerance;
+    }
+
+    /**
+     * Getter method for fast forward
+     * 
+     * @return true if the remaining tics of a converged run are saved from its last period
+     *         instead of ending the output at the convergence tic
+     */
+    public boolean isFastForward() {
+        return this.fastForward;
+    }
+
+    /**
+     * Getter method for geometric lift
+     * 
+     * @return true if the patches a lift affects are sampled by geometric gaps with
+     *         LiftSampler instead of one draw per patch
+     */
+    public boolean isGeometricLift() {
+        return this.geometricLift;
+    }
+
+    /**
+     * Getter method for binomial sprout
+     * 
+     * @return true if the maximum fiber sizes are sprouted from a single binomial draw with
+     *         FiberSprout instead of one draw per step
+     */
+    public boolean isBinomialSprout() {
+        return this.binomialSprout;
+    }
+
+    /**
+     * Getter method for the nutrition delta
+     * 
+     * The sigmoid of the nutrition quality offset to be 0 at a quality of 0.5, halved. Eating
+     * raises the anabolic and lowers the catabolic hormone by this fraction of their level.
+     * 
+     * @return double value of the relative hormone change of eating, 0 for average nutrition
+     */
+    public double getNutritionDelta() {
+        return this.nutritionDelta;
+    }
+
+    /**
+     * Getter method for the lift threshold
+     * 
+     * @return double value of the squared intensity as a fraction, the probability that a
+     *         patch is affected by a lift
+     */
+    public double getLiftThreshold() {
+        return this.liftThreshold;
+    }
+
+    /**
+     * Copy of this configuration with the given seed.
+     * 
+     * @param seed seed of all random draws
+     * @return configuration differing from this one only in seed
+     */
+    public Configuration withSeed(long seed) {
+        Configuration copy = new Configuration(this);
+        copy.seed = seed;
+        return copy;
+    }
+
+    /**
+     * Copy of this configuration with the given fast math setting.
+     * 
+     * @param fastMath whether log10 is approximated with FastLog10
+     * @return configuration differing from this one only in fast math
+     */
+    public Configuration withFastMath(boolean fastMath) {
+        Configuration copy = new Configuration(this);
+        copy.fastMath = fastMath;
+        return copy;
+    }
+
+    /**
+     * Copy of this configuration with the given summation of the metrics.
+     * 
+     * @param compensatedSums whether the metrics are summed with compensation
+     * @return configuration differing from this one only in the summation of the metrics
+     */
+    public Configuration withCompensatedSums(boolean compensatedSums) {
+        Configuration copy = new Configuration(this);
+        copy.compensatedSums = compensatedSums;
+        return copy;
+    }
+
+    /**
+     * Copy of this configuration with the given precision of the state.
+     * 
+     * @param singlePrecision whether the hormones and fiber sizes are stored as float
+     * @return configuration differing from this one only in precision
+     */
+    public Configuration withSinglePrecision(boolean singlePrecision) {
+        Configuration copy = new Configuration(this);
+        copy.singlePrecision = singlePrecision;
+        return copy;
+    }
+
+    /**
+     * Copy of this configuration with the given convergence settings.
+     * 
+     * @param convergenceWindow tics of the windows compared to end a run, 0 to never end early
+     * @param convergenceTolerance largest change of the mean of a converged series
+     * @param fastForward whether the remaining tics of a converged run are saved
+     * @return configuration differing from this one only in the convergence settings
+     */
+    public Configuration withConvergence(
+        int convergenceWindow,
+        double convergenceTolerance,
+        boolean fastForward
+    ) {
+        if (convergenceWindow < 0 || !(convergenceTolerance >= 0)) {
+            throw new IllegalArgumentException(
+                "Convergence window and tolerance must not be negative"
+            );
+        }
+
+        Configuration copy = new Configuration(this);
+        copy.convergenceWindow = convergenceWindow;
+        copy.convergenceTolerance = convergenceTolerance;
+        copy.fastForward = fastForward;
+        return copy;
+    }
+
+    /**
+     * Copy of this configuration with the given sampling of lifted patches.
+     * 
+     * @param geometricLift whether lifted patches are sampled by geometric gaps
+     * @return configuration differing from this one only in lift sampling
+     */
+    public Configuration withGeometricLift(boolean geometricLift) {
+        Configuration copy = new Configuration(this);
+        copy.geometricLift = geometricLift;
+        return copy;
+    }
+
+    /**
+     * Copy of this configuration with the given sprouting of fibers.
+     * 
+     * @param binomialSprout whether fibers are sprouted from a single binomial draw
+     * @return configuration differing from this one only in fiber sprouting
+     */
+    public Configuration withBinomialSprout(boolean binomialSprout) {
+        Configuration copy = new Configuration(this);
+        copy.binomialSprout = binomialSprout;
+        return copy;
+    }
+
     /**
      * Format user defined configuration value in a form that will be saved in CSV
      * 
@@ -185,9 +448,6 @@ public class Configuration {
      */
     public void printConfiguration() {
         System.out.println("Static Variables:");
-        System.out.println("  MAX_TIC: " + MAX_TIC);
-        System.out.println("  GRID_WIDTH: " + GRID_WIDTH);
-        System.out.println("  GRID_HEIGHT: " + GRID_HEIGHT);
         System.out.println("  ANABOLIC_HORMONE_MAX: " + ANABOLIC_HORMONE_MAX);
         System.out.println("  ANABOLIC_HORMONE_MIN: " + ANABOLIC_HORMONE_MIN);
         System.out.println("  CATABOLIC_HORMONE_MAX: " + CATABOLIC_HORMONE_MAX);
@@ -199,5 +459,18 @@ public class Configuration {
         System.out.println("  Days Between Workouts: " + daysBetweenWorkouts);
         System.out.println("  Slow Twitch Fibers Percentage: " + slowTwitchFibersPercentage);
         System.out.println("  Lift: " + lift);
+        System.out.println("  Nutrition Quality: " + nutritionQuality);
+        System.out.println("  Grid Width: " + gridWidth);
+        System.out.println("  Grid Height: " + gridHeight);
+        System.out.println("  Max Tic: " + maxTic);
+        System.out.println("  Seed: " + seed);
+        System.out.println("  Fast Math: " + fastMath);
+        System.out.println("  Compensated Sums: " + compensatedSums);
+        System.out.println("  Single Precision: " + singlePrecision);
+        System.out.println("  Convergence Window: " + convergenceWindow);
+        System.out.println("  Convergence Tolerance: " + convergenceTolerance);
+        System.out.println("  Fast Forward: " + fastForward);
+        System.out.println("  Geometric Lift: " + geometricLift);
+        System.out.println("  Binomial Sprout: " + binomialSprout);
     }
 }
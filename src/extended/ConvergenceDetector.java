@@ -0,0 +1,225 @@
+/**
+ * Detector of the steady state of a simulation.
+ *
+ * The muscle mass and the average hormone levels are observed tic by tic, and the mean of
+ * each series over the last window of tics is compared with its mean over the window
+ * before. Lifting drives the muscle every daysBetweenWorkouts tics, so a steady state
+ * repeats with that period rather than staying constant, and the random lifts make each
+ * period differ a little. The window is therefore rounded up to whole periods: the means of
+ * a periodic or noisy steady state agree, while a series still drifting, however slowly,
+ * shows its drift over a whole window. Once the means of every series agree within the
+ * tolerance the simulation has converged, and the last period observed stands for every
+ * later tic.
+ *
+ * The values of the two windows are kept in ring buffers with running sums, so observing a
+ * tic allocates nothing and takes constant time.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class ConvergenceDetector {
+
+    private static final int SERIES = 3;    // muscle mass, anabolic and catabolic hormone
+
+    private int period;          // tics the steady state repeats after
+    private int window;          // tics in each window, a multiple of the period
+    private double tolerance;    // largest difference between the means of the windows
+    private int observed;        // number of tics observed
+    private int convergenceTic;  // tic the simulation converged at, -1 if it did not yet
+
+    // values of the last two windows, the value of tic t at [series][t % (2 * window)]
+    private double[][] values;
+    private double[] recentSum;  // sum of each series over the last window
+    private double[] olderSum;   // sum of each series over the window before
+
+    /**
+     * Constructor for ConvergenceDetector using the convergence settings of a configuration.
+     *
+     * @param config configuration of the simulation, with a positive convergence window
+     */
+    public ConvergenceDetector(Configuration config) {
+        this.period = config.isLift() ? config.getDaysBetweenWorkouts() : 1;
+        this.window = (config.getConvergenceWindow() + period - 1) / period * period;
+        this.tolerance = config.getConvergenceTolerance();
+        this.convergenceTic = -1;
+        this.values = new double[SERIES][2 * window];
+        this.recentSum = new double[SERIES];
+        this.olderSum = new double[SERIES];
+    }
+
+    /**
+     * Observe the metrics of the next tic.
+     *
+     * @param tic tic of the metrics, one after the previously observed tic
+     * @param mass muscle mass
+     * @param anabolic average anabolic hormone level
+     * @param catabolic average catabolic hormone level
+     * @return true if the simulation has converged at this or an earlier tic
+     */
+    public boolean observe(int tic, double mass, double anabolic, double catabolic) {
+        if (convergenceTic >= 0) {
+            return true;
+        }
+
+        push(0, tic, mass);
+        push(1, tic, anabolic);
+        push(2, tic, catabolic);
+        observed++;
+
+        if (observed >= 2 * window && meansAgree()) {
+            convergenceTic = tic;
+        }
+        return convergenceTic >= 0;
+    }
+
+    /**
+     * Add the value of a tic to the last window of a series, moving the oldest value of the
+     * last window to the window before and dropping the oldest value of that one.
+     *
+     * @param series index of the series
+     * @param tic tic of the value
+     * @param value value of the series
+     */
+    private void push(int series, int tic, double value) {
+        double[] ring = values[series];
+        int slot = tic % ring.length;
+        int middle = (tic + window) % ring.length; // slot leaving the last window
+        if (observed >= window) {
+            recentSum[series] -= ring[middle];
+            olderSum[series] += ring[middle];
+        }
+        if (observed >= 2 * window) {
+            olderSum[series] -= ring[slot];
+        }
+        ring[slot] = value;
+        recentSum[series] += value;
+    }
+
+    /**
+     * Whether the means of every series over the last two windows agree within tolerance.
+     *
+     * @return true if no series changed its mean by more than the tolerance
+     */
+    private boolean meansAgree() {
+        for (int series = 0; series < SERIES; series++) {
+            if (Math.abs(recentSum[series] - olderSum[series]) > tolerance * window) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the observations of another detector of the same configuration.
+     *
+     * @param other detector whose state replaces this one
+     */
+    public void copyFrom(ConvergenceDetector other) {
+        observed = other.observed;
+        convergenceTic = other.convergenceTic;
+        for (int series = 0; series < SERIES; series++) {
+            System.arraycopy(other.values[series], 0, values[series], 0, values[series].length);
+            recentSum[series] = other.recentSum[series];
+            olderSum[series] = other.olderSum[series];
+        }
+    }
+
+    /**
+     * Save the observations, for a checkpoint.
+     *
+     * @param out stream the state is written to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(observed);
+        out.writeInt(convergenceTic);
+        for (int series = 0; series < SERIES; series++) {
+            for (double value : values[series]) {
+                out.writeDouble(value);
+            }
+            out.writeDouble(recentSum[series]);
+            out.writeDouble(olderSum[series]);
+        }
+    }
+
+    /**
+     * Replace the observations with those saved by {@link #write} from a detector of the
+     * same configuration.
+     *
+     * @param in stream the state is read from
+     * @throws IOException if reading fails
+     */
+    public void read(DataInput in) throws IOException {
+        observed = in.readInt();
+        convergenceTic = in.readInt();
+        for (int series = 0; series < SERIES; series++) {
+            for (int t = 0; t < values[series].length; t++) {
+                values[series][t] = in.readDouble();
+            }
+            recentSum[series] = in.readDouble();
+            olderSum[series] = in.readDouble();
+        }
+    }
+
+    /**
+     * Getter method for the convergence tic
+     *
+     * @return tic the simulation converged at, or -1 if it did not converge
+     */
+    public int getConvergenceTic() {
+        return this.convergenceTic;
+    }
+
+    /**
+     * Slot of the ring holding the value a tic after convergence repeats. The last period
+     * observed, ending at the convergence tic, stands for every later period, so tic
+     * convergenceTic + k takes the value of tic convergenceTic - period + 1 + (k - 1) % period.
+     *
+     * @param tic tic after the convergence tic
+     * @return slot of the value in the ring buffers
+     */
+    private int steadySlot(int tic) {
+        int repeated = convergenceTic - period + 1 + (tic - convergenceTic - 1) % period;
+        return repeated % (2 * window);
+    }
+
+    /**
+     * Muscle mass of a tic after convergence, repeating the last period observed.
+     *
+     * @param tic tic after the convergence tic
+     * @return muscle mass of the steady state
+     */
+    public double getMuscleMass(int tic) {
+        return values[0][steadySlot(tic)];
+    }
+
+    /**
+     * Average anabolic hormone level of a tic after convergence.
+     *
+     * @param tic tic after the convergence tic
+     * @return average anabolic hormone level of the steady state
+     */
+    public double getAverageAnabolic(int tic) {
+        return values[1][steadySlot(tic)];
+    }
+
+    /**
+     * Average catabolic hormone level of a tic after convergence.
+     *
+     * @param tic tic after the convergence tic
+     * @return average catabolic hormone level of the steady state
+     */
+    public double getAverageCatabolic(int tic) {
+        return values[2][steadySlot(tic)];
+    }
+}
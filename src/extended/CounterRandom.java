@@ -0,0 +1,70 @@
+/**
+ * Counter-based random number generator used for every stochastic decision of the model.
+ *
+ * A draw is a pure function of (seed, tic, patch index, draw number): the four values are
+ * mixed through rounds of the SplitMix64 finaliser and the top 53 bits of the result form a
+ * uniform double in [0, 1). There is no generator state to share or advance, so patches can
+ * be processed in any order or on any number of threads with bit-identical results, and the
+ * draws of any tic can be reproduced without replaying the tics before it.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.Random;
+
+public class CounterRandom {
+
+    public static final int SETUP_TIC = -1; // tic of the draws made while initialising patches
+
+    // odd constants spreading each key over the 64 bits before mixing
+    private static final long TIC_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final long INDEX_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+    private static final long DRAW_MULTIPLIER = 0x165667B19E3779F9L;
+
+    private CounterRandom() {
+    }
+
+    /**
+     * Uniform draw for given key.
+     *
+     * @param seed seed of the simulation
+     * @param tic tic the draw belongs to, or SETUP_TIC while initialising
+     * @param index index of the patch, i * height + j
+     * @param draw number of the draw for this patch within the tic
+     * @return double value uniformly distributed in [0, 1)
+     */
+    public static double uniform(long seed, long tic, long index, int draw) {
+        long z = mix(seed + tic * TIC_MULTIPLIER);
+        z = mix(z + index * INDEX_MULTIPLIER);
+        z = mix(z + draw * DRAW_MULTIPLIER);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Pick a seed for a run that was not given one, to be reported so the run can be
+     * reproduced.
+     *
+     * @return new seed
+     */
+    public static long newSeed() {
+        return new Random().nextLong();
+    }
+
+    /**
+     * SplitMix64 finaliser, a bijection of 64 bit values with full avalanche.
+     *
+     * @param z value to mix
+     * @return mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,403 @@
+/**
+ * Buffered writer saving the results of a simulation to CSV.
+ *
+ * Numbers are formatted straight into a reusable byte buffer which is written to a file
+ * channel once it is full, so saving a tic neither allocates nor makes a system call. The
+ * bytes are the same as those produced with String.format("%d") and String.format("%f"),
+ * always using '.' as decimal separator: a value is rounded half up to six decimals from its
+ * shortest decimal representation. The few values too close to a rounding tie to decide
+ * with double arithmetic, or out of the range of the fast path, go through String.format.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+public class CsvSink implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20; // bytes buffered between writes
+
+    private static final int MAX_ROW_LENGTH = 128;   // upper bound of a row on the fast path
+    private static final double FAST_PATH_LIMIT = 1e9; // larger values lose decimal precision
+    private static final long SCALE = 1_000_000;      // six decimals of %f
+
+    private static final byte[] CONFIGURATION_HEADER = (
+        "MODEL SETTING\n" +
+        "SlowTwitchFibersPercentage, DaysBetweenWorkout, HourseOfSleep, " +
+        "Intensity, Lift, NutritionQualitry\n"
+    ).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STATUS_HEADER =
+        "Tic, MuscleMass, Anabolic, Catabolic\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONVERGENCE_HEADER =
+        "\nCONVERGENCE\nTic\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENSEMBLE_HEADER =
+        "ENSEMBLE\nReplicas, Seed\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ENSEMBLE_STATUS_HEADER = (
+        "Tic, MuscleMassMean, MuscleMassVariance, MuscleMassMin, MuscleMassMax, " +
+        "MuscleMassLow, MuscleMassHigh, AnabolicMean, AnabolicVariance, AnabolicMin, " +
+        "AnabolicMax, AnabolicLow, AnabolicHigh, CatabolicMean, CatabolicVariance, " +
+        "CatabolicMin, CatabolicMax, CatabolicLow, CatabolicHigh\n"
+    ).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    private FileChannel channel;    // file the CSV is saved to
+    private byte[] bytes;           // bytes not written to the channel yet
+    private ByteBuffer buffer;      // view of bytes handed to the channel
+    private int position;           // number of bytes used in bytes
+    private byte[] digits = new byte[20]; // scratch space for the digits of a long
+
+    /**
+     * Create the file at the given path, replacing any existing file, with the default buffer.
+     *
+     * @param path path to the CSV file
+     * @throws IOException if the file cannot be created
+     */
+    public CsvSink(String path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create the file at the given path, replacing any existing file.
+     *
+     * @param path path to the CSV file
+     * @param bufferSize number of bytes buffered between writes
+     * @throws IOException if the file cannot be created
+     */
+    public CsvSink(String path, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(
+            Paths.get(path),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        );
+        this.bytes = new byte[Math.max(bufferSize, MAX_ROW_LENGTH)];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Open an existing file at the given path to append to it after its first bytes, dropping
+     * everything behind them, so a resumed run continues the CSV where its checkpoint was
+     * taken.
+     *
+     * @param path path to the CSV file
+     * @param length number of bytes of the file to keep
+     * @throws IOException if the file cannot be opened or is shorter than length
+     */
+    public CsvSink(String path, long length) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.WRITE);
+        if (channel.size() < length) {
+            long size = channel.size();
+            channel.close();
+            throw new IOException(
+                path + " has " + size + " bytes, the checkpoint expects " + length
+            );
+        }
+        channel.truncate(length);
+        channel.position(length);
+        this.bytes = new byte[DEFAULT_BUFFER_SIZE];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Save the user defined configuration values, in the same form as
+     * Configuration.formatConfiguration.
+     *
+     * @param config configuration of the simulation
+     * @throws IOException if writing fails
+     */
+    public void writeConfiguration(Configuration config) throws IOException {
+        write(CONFIGURATION_HEADER);
+        ensure(MAX_ROW_LENGTH);
+        putLong(config.getSlowTwitchFibersPercentage());
+        putSeparator();
+        putLong(config.getDaysBetweenWorkouts());
+        putSeparator();
+        putDouble(config.getHourseOfSleep());
+        putSeparator();
+        putLong(config.getIntensity());
+        putSeparator();
+        write(config.isLift() ? TRUE : FALSE);
+        putSeparator();
+        putDouble(config.getNutritionQuality());
+        bytes[position++] = '\n';
+        bytes[position++] = '\n';
+    }
+
+    /**
+     * Save the header of the per tic status rows.
+     *
+     * @throws IOException if writing fails
+     */
+    public void writeStatusHeader() throws IOException {
+        write(STATUS_HEADER);
+    }
+
+    /**
+     * Save the status of a tic as the tic, muscle mass, average anabolic and average
+     * catabolic hormone, formatted as %d, %f, %f, %f.
+     *
+     * @param tic current tic
+     * @param muscleMass sum of muscle fiber size divided by 100
+     * @param averageAnabolic average anabolic hormone level
+     * @param averageCatabolic average catabolic hormone level
+     * @throws IOException if writing fails
+     */
+    public void writeStatus(
+        int tic,
+        double muscleMass,
+        double averageAnabolic,
+        double averageCatabolic
+    ) throws IOException {
+        ensure(MAX_ROW_LENGTH);
+        putLong(tic);
+        putSeparator();
+        putDouble(muscleMass);
+        putSeparator();
+        putDouble(averageAnabolic);
+        putSeparator();
+        putDouble(averageCatabolic);
+        bytes[position++] = '\n';
+    }
+
+    /**
+     * Save the tic a converged simulation reached its steady state at, after the status rows.
+     *
+     * @param tic convergence tic
+     * @throws IOException if writing fails
+     */
+    public void writeConvergence(int tic) throws IOException {
+        write(CONVERGENCE_HEADER);
+        ensure(MAX_ROW_LENGTH);
+        putLong(tic);
+        bytes[position++] = '\n';
+    }
+
+    /**
+     * Save the number of replicas and the seed of the first one, followed by the header of
+     * the per tic statistics rows.
+     *
+     * @param replicas number of replicas of the ensemble
+     * @param seed seed of the first replica, the others counting up from it
+     * @throws IOException if writing fails
+     */
+    public void writeEnsembleHeader(long replicas, long seed) throws IOException {
+        write(ENSEMBLE_HEADER);
+        ensure(MAX_ROW_LENGTH);
+        putLong(replicas);
+        putSeparator();
+        write(Long.toString(seed).getBytes(StandardCharsets.US_ASCII));
+        bytes[position++] = '\n';
+        bytes[position++] = '\n';
+        write(ENSEMBLE_STATUS_HEADER);
+    }
+
+    /**
+     * Save the statistics of a tic: for the muscle mass, the anabolic and the catabolic
+     * hormone in turn, the mean, variance, minimum, maximum and the bounds of the 95%
+     * confidence interval of the mean.
+     *
+     * @param tic tic of the statistics
+     * @param statistics statistics of the ensemble
+     * @throws IOException if writing fails
+     */
+    public void writeEnsembleStatus(int tic, EnsembleStatistics statistics) throws IOException {
+        ensure(MAX_ROW_LENGTH);
+        putLong(tic);
+        for (int series = 0; series < EnsembleStatistics.SERIES; series++) {
+            double mean = statistics.getMean(series, tic);
+            double halfWidth = statistics.getHalfWidth(series, tic);
+            ensure(MAX_ROW_LENGTH);
+            putSeparator();
+            putDouble(mean);
+            putSeparator();
+            putDouble(statistics.getVariance(series, tic));
+            putSeparator();
+            putDouble(statistics.getMin(series, tic));
+            putSeparator();
+            putDouble(statistics.getMax(series, tic));
+            putSeparator();
+            putDouble(mean - halfWidth);
+            putSeparator();
+            putDouble(mean + halfWidth);
+        }
+        bytes[position++] = '\n';
+    }
+
+    /**
+     * Write every buffered byte to the file.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+    /**
+     * Write every buffered byte to the file and force the file to the disk, so a checkpoint
+     * counting these bytes never outlives them after a power loss.
+     *
+     * @throws IOException if writing or forcing fails
+     */
+    public void force() throws IOException {
+        flush();
+        channel.force(false);
+    }
+
+    /**
+     * Number of bytes saved so far, including those still buffered.
+     *
+     * @return length the file has once flushed
+     * @throws IOException if the position of the file cannot be read
+     */
+    public long getLength() throws IOException {
+        return channel.position() + position;
+    }
+
+    /**
+     * Flush the buffered bytes and close the file. The file is closed even if the last
+     * write fails.
+     *
+     * @throws IOException if writing or closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Make room for the given number of bytes, flushing the buffer if needed.
+     *
+     * @param length number of bytes about to be buffered
+     * @throws IOException if writing fails
+     */
+    private void ensure(int length) throws IOException {
+        if (bytes.length - position < length) {
+            flush();
+        }
+    }
+
+    /**
+     * Buffer the given bytes, writing them straight to the file if they do not fit in the
+     * buffer.
+     *
+     * @param data bytes to buffer
+     * @throws IOException if writing fails
+     */
+    private void write(byte[] data) throws IOException {
+        if (data.length > bytes.length) {
+            flush();
+            ByteBuffer direct = ByteBuffer.wrap(data);
+            while (direct.hasRemaining()) {
+                channel.write(direct);
+            }
+            return;
+        }
+        ensure(data.length);
+        System.arraycopy(data, 0, bytes, position, data.length);
+        position += data.length;
+    }
+
+    /**
+     * Buffer the separator between two columns.
+     */
+    private void putSeparator() {
+        bytes[position++] = ',';
+        bytes[position++] = ' ';
+    }
+
+    /**
+     * Buffer a long the same way as %d. Only called with values of an int or with positive
+     * values, so the value can always be negated.
+     *
+     * @param value value to buffer
+     */
+    private void putLong(long value) {
+        if (value < 0) {
+            bytes[position++] = '-';
+            value = -value;
+        }
+
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        while (count > 0) {
+            bytes[position++] = digits[--count];
+        }
+    }
+
+    /**
+     * Buffer a double the same way as %f.
+     *
+     * The value scaled by 10^6 is split into whole units and a fraction. Unless the fraction
+     * is within the rounding error of the scaling from a tie, both the exact value and its
+     * shortest decimal representation round to the same unit, which is what %f prints.
+     *
+     * @param value value to buffer
+     * @throws IOException if writing fails
+     */
+    private void putDouble(double value) throws IOException {
+        if (!(value >= 0 && value < FAST_PATH_LIMIT) || Double.doubleToRawLongBits(value) < 0) {
+            putSlow(value);
+            return;
+        }
+
+        double scaled = value * SCALE;
+        double whole = Math.floor(scaled);
+        double fraction = scaled - whole;
+        if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+            putSlow(value);
+            return;
+        }
+
+        long units = (long) whole + (fraction > 0.5 ? 1 : 0);
+        putLong(units / SCALE);
+        bytes[position++] = '.';
+
+        long decimals = units % SCALE;
+        for (long unit = SCALE / 10; unit > 0; unit /= 10) {
+            bytes[position++] = (byte) ('0' + decimals / unit % 10);
+        }
+    }
+
+    /**
+     * Buffer a double through String.format, for the values the fast path cannot decide.
+     *
+     * @param value value to buffer
+     * @throws IOException if writing fails
+     */
+    private void putSlow(double value) throws IOException {
+        byte[] text = String.format(Locale.ROOT, "%f", value).getBytes(StandardCharsets.US_ASCII);
+        ensure(text.length + MAX_ROW_LENGTH);
+        System.arraycopy(text, 0, bytes, position, text.length);
+        position += text.length;
+    }
+}
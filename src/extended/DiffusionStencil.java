@@ -0,0 +1,236 @@
+/**
+ * Padded share buffers and neighbour table used to diffuse hormones between patches.
+ *
+ * The shares handed out by each patch are stored in a buffer with a one-cell halo around the
+ * real grid. The halo always holds a zero share, so every patch can gather from all eight
+ * neighbour slots without bounds checks: a missing neighbour contributes nothing, exactly
+ * like the non-periodic edge of Netlogo's diffuse. The amount a patch gives away depends on
+ * how many real neighbours it has, which is precomputed once per patch.
+ *
+ * Shares are gathered in the order a patch-by-patch scatter would apply them, so diffusing
+ * through the stencil is bit-identical to the original implementation.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+public class DiffusionStencil {
+
+    private int width;      // number of rows of the real grid
+    private int height;     // number of patches in each row of the real grid
+    private int stride;     // number of slots in each row of the padded buffers
+
+    // shares handed out to each neighbour, indexed by (i + 1) * stride + (j + 1)
+    private double[] anabolicShares;
+    private double[] catabolicShares;
+
+    // number of real neighbours of each patch, indexed by i * height + j
+    private int[] neighbourCount;
+
+    /**
+     * Constructor for DiffusionStencil to allocate padded buffers for the given grid.
+     *
+     * @param width number of rows of the grid
+     * @param height number of patches in each row of the grid
+     */
+    public DiffusionStencil(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = height + 2;
+        this.anabolicShares = new double[(width + 2) * stride];
+        this.catabolicShares = new double[(width + 2) * stride];
+        this.neighbourCount = new int[width * height];
+
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                int rows = 1 + (i > 0 ? 1 : 0) + (i < width - 1 ? 1 : 0);
+                int cols = 1 + (j > 0 ? 1 : 0) + (j < height - 1 ? 1 : 0);
+                neighbourCount[i * height + j] = rows * cols - 1;
+            }
+        }
+    }
+
+    /**
+     * Number of heap bytes taken by the stencil of a grid of given size.
+     *
+     * @param width number of rows of the grid
+     * @param height number of patches in each row of the grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 16L * (width + 2) * (height + 2) + 4L * width * height;
+    }
+
+    /**
+     * Calculate amount to be shared to each neighbour for given hormone level
+     *
+     * @param level hormone level of the patch before diffusion
+     * @return amount handed to each neighbour
+     */
+    public static double share(double level) {
+        return level * Configuration.HORMONE_DIFFUSE_RATE / Configuration.MAX_NEIGHBOUR;
+    }
+
+    /**
+     * Store the shares a patch hands out, computed from its levels before diffusion.
+     *
+     * @param i x coordinate of the patch
+     * @param j y coordinate of the patch
+     * @param anabolicLevel anabolic hormone level before diffusion
+     * @param catabolicLevel catabolic hormone level before diffusion
+     */
+    public void storeShares(int i, int j, double anabolicLevel, double catabolicLevel) {
+        int p = (i + 1) * stride + (j + 1);
+        anabolicShares[p] = share(anabolicLevel);
+        catabolicShares[p] = share(catabolicLevel);
+    }
+
+    /**
+     * Diffused anabolic hormone level of a patch once the stored shares are exchanged.
+     *
+     * @param i x coordinate of the patch
+     * @param j y coordinate of the patch
+     * @param level anabolic hormone level of the patch before diffusion
+     * @return anabolic hormone level after diffusion
+     */
+    public double diffuseAnabolic(int i, int j, double level) {
+        return gather(anabolicShares, (i + 1) * stride + (j + 1), neighbourCount[i * height + j],
+            level);
+    }
+
+    /**
+     * Diffused catabolic hormone level of a patch once the stored shares are exchanged.
+     *
+     * @param i x coordinate of the patch
+     * @param j y coordinate of the patch
+     * @param level catabolic hormone level of the patch before diffusion
+     * @return catabolic hormone level after diffusion
+     */
+    public double diffuseCatabolic(int i, int j, double level) {
+        return gather(catabolicShares, (i + 1) * stride + (j + 1), neighbourCount[i * height + j],
+            level);
+    }
+
+    /**
+     * Diffuse hormone levels held in row-major arrays in place.
+     *
+     * @param anabolic anabolic hormone levels, indexed by i * height + j
+     * @param catabolic catabolic hormone levels, indexed by i * height + j
+     */
+    public void diffuse(double[] anabolic, double[] catabolic) {
+        storeShares(anabolic, catabolic, 0, width);
+        gatherShares(anabolic, catabolic, 0, width);
+    }
+
+    /**
+     * Store the shares handed out by the patches of the given rows. Only reads the levels, so
+     * it must finish for every row before any row gathers.
+     *
+     * @param anabolic anabolic hormone levels, indexed by i * height + j
+     * @param catabolic catabolic hormone levels, indexed by i * height + j
+     * @param fromRow first row to store
+     * @param toRow row after the last row to store
+     */
+    public void storeShares(double[] anabolic, double[] catabolic, int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int k = i * height;
+            int p = (i + 1) * stride + 1;
+            for (int j = 0; j < height; j++, k++, p++) {
+                anabolicShares[p] = share(anabolic[k]);
+                catabolicShares[p] = share(catabolic[k]);
+            }
+        }
+    }
+
+    /**
+     * Replace the levels of the patches of the given rows with their diffused levels. Only
+     * reads the stored shares, so rows can be gathered in any order or concurrently.
+     *
+     * @param anabolic anabolic hormone levels, indexed by i * height + j
+     * @param catabolic catabolic hormone levels, indexed by i * height + j
+     * @param fromRow first row to gather
+     * @param toRow row after the last row to gather
+     */
+    public void gatherShares(double[] anabolic, double[] catabolic, int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int k = i * height;
+            int p = (i + 1) * stride + 1;
+            for (int j = 0; j < height; j++, k++, p++) {
+                anabolic[k] = gather(anabolicShares, p, neighbourCount[k], anabolic[k]);
+                catabolic[k] = gather(catabolicShares, p, neighbourCount[k], catabolic[k]);
+            }
+        }
+    }
+
+    /**
+     * Store the shares handed out by the patches of a segment of a row.
+     *
+     * @param anabolic anabolic hormone levels, indexed by i * height + j
+     * @param catabolic catabolic hormone levels, indexed by i * height + j
+     * @param i row of the segment
+     * @param fromColumn first column of the segment
+     * @param toColumn column after the last column of the segment
+     */
+    public void storeSegment(
+        double[] anabolic,
+        double[] catabolic,
+        int i,
+        int fromColumn,
+        int toColumn
+    ) {
+        int k = i * height + fromColumn;
+        int p = (i + 1) * stride + 1 + fromColumn;
+        for (int j = fromColumn; j < toColumn; j++, k++, p++) {
+            anabolicShares[p] = share(anabolic[k]);
+            catabolicShares[p] = share(catabolic[k]);
+        }
+    }
+
+    /**
+     * Replace the levels of the patches of a segment of a row with their diffused levels.
+     *
+     * @param anabolic anabolic hormone levels, indexed by i * height + j
+     * @param catabolic catabolic hormone levels, indexed by i * height + j
+     * @param i row of the segment
+     * @param fromColumn first column of the segment
+     * @param toColumn column after the last column of the segment
+     */
+    public void gatherSegment(
+        double[] anabolic,
+        double[] catabolic,
+        int i,
+        int fromColumn,
+        int toColumn
+    ) {
+        int k = i * height + fromColumn;
+        int p = (i + 1) * stride + 1 + fromColumn;
+        for (int j = fromColumn; j < toColumn; j++, k++, p++) {
+            anabolic[k] = gather(anabolicShares, p, neighbourCount[k], anabolic[k]);
+            catabolic[k] = gather(catabolicShares, p, neighbourCount[k], catabolic[k]);
+        }
+    }
+
+    /**
+     * Apply the shares of the 3x3 block around a padded slot, in row-major order of the
+     * patches handing them out. Halo slots hold zero, which leaves the level unchanged.
+     *
+     * @param shares padded share buffer
+     * @param p padded index of the patch
+     * @param neighbours number of real neighbours of the patch
+     * @param level hormone level of the patch before diffusion
+     * @return hormone level after diffusion
+     */
+    private double gather(double[] shares, int p, int neighbours, double level) {
+        int above = p - stride;
+        int below = p + stride;
+        return level
+            + shares[above - 1] + shares[above] + shares[above + 1]
+            + shares[p - 1] - shares[p] * neighbours + shares[p + 1]
+            + shares[below - 1] + shares[below] + shares[below + 1];
+    }
+}
@@ -0,0 +1,417 @@
+/**
+ * Ensemble class responsible for running replicas of one configuration in one JVM.
+ *
+ * A single run is one sample of a stochastic model: the fibers sprouted and the patches
+ * lifted depend on the seed. An ensemble runs the same configuration with the seeds seed,
+ * seed + 1, ... on a bounded pool of worker threads and saves, for every tic, the mean,
+ * variance, minimum, maximum and 95% confidence interval of the muscle mass and of both
+ * hormone averages over the replicas.
+ *
+ * The replicas are grouped into chunks of consecutive seeds that the workers take in turn.
+ * Each chunk folds its replicas into its own EnsembleStatistics tic by tic, and finished
+ * chunks are merged into the total in the order of their seeds. No trajectory is kept, only
+ * the statistics of the chunks in flight, and the result does not depend on the number of
+ * workers or on which chunk finishes first.
+ *
+ * The interleaved engine advances the replicas of whole chunks together as the lanes of an
+ * InterleavedSimulation. Each lane gives the same metrics as the array engine and the
+ * chunks fold them in the same order, so the result is the same as with the array engine.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Ensemble {
+
+    public static final int DEFAULT_LANES = 16;  // replicas interleaved by default
+
+    private static final int CHUNK_REPLICAS = 4; // replicas folded into the same statistics
+
+    private Configuration config;           // configuration of the first replica
+    private int replicas;                   // number of replicas
+    private String engine;                  // name of the state engine
+    private int batchChunks;                // chunks a worker runs at once
+    private EnsembleStatistics total;       // statistics of the chunks merged so far
+    private EnsembleStatistics[] finished;  // chunks finished but not merged yet
+    private int merged;                     // number of chunks merged into the total
+    private AtomicInteger nextChunk = new AtomicInteger(); // next chunk to run
+    private AtomicInteger done = new AtomicInteger();      // number of replicas finished
+
+    /**
+     * Constructor for Ensemble of the replicas of a configuration.
+     *
+     * @param config configuration of the first replica, its convergence settings are
+     *               ignored as every replica runs until the upper bound for tic
+     * @param replicas number of replicas, at least 1
+     * @param engine name of the state engine: "object", "array", "active", "vector",
+     *               "offheap" or "interleaved"
+     */
+    public Ensemble(Configuration config, int replicas, String engine) {
+        this(config, replicas, engine, DEFAULT_LANES);
+    }
+
+    /**
+     * Constructor for Ensemble of the replicas of a configuration.
+     *
+     * @param config configuration of the first replica, its convergence settings are
+     *               ignored as every replica runs until the upper bound for tic
+     * @param replicas number of replicas, at least 1
+     * @param engine name of the state engine: "object", "array", "active", "vector",
+     *               "offheap" or "interleaved"
+     * @param lanes replicas the interleaved engine advances together, rounded up to whole
+     *              chunks. Ignored by the other engines.
+     */
+    public Ensemble(Configuration config, int replicas, String engine, int lanes) {
+        this.batchChunks = "interleaved".equals(engine)
+            ? Math.max(1, (lanes + CHUNK_REPLICAS - 1) / CHUNK_REPLICAS)
+            : 1;
+        this.config = config.withConvergence(0, config.getConvergenceTolerance(), false);
+        this.replicas = replicas;
+        this.engine = engine;
+        this.total = new EnsembleStatistics(config.getMaxTic());
+        this.finished = new EnsembleStatistics[(replicas + CHUNK_REPLICAS - 1) / CHUNK_REPLICAS];
+    }
+
+    /**
+     * Run every replica on a pool of worker threads.
+     *
+     * @param workers number of replicas running at the same time
+     * @return statistics of the replicas
+     * @throws InterruptedException if interrupted while waiting for the replicas
+     */
+    public EnsembleStatistics run(int workers) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            tasks.add(() -> {
+                runBatches();
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replica failed: " + e.getCause(), e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        return total;
+    }
+
+    /**
+     * Run batches of chunks of replicas until none is left.
+     */
+    private void runBatches() {
+        for (int chunk = nextChunk.getAndAdd(batchChunks); chunk < finished.length;
+            chunk = nextChunk.getAndAdd(batchChunks)) {
+            int toChunk = Math.min(finished.length, chunk + batchChunks);
+            EnsembleStatistics[] statistics = new EnsembleStatistics[toChunk - chunk];
+            for (int c = 0; c < statistics.length; c++) {
+                statistics[c] = new EnsembleStatistics(config.getMaxTic());
+            }
+
+            int from = chunk * CHUNK_REPLICAS;
+            int to = Math.min(replicas, toChunk * CHUNK_REPLICAS);
+            if ("interleaved".equals(engine)) {
+                runInterleaved(from, to, statistics);
+            } else {
+                for (int r = from; r < to; r++) {
+                    runReplica(r, statistics[(r - from) / CHUNK_REPLICAS]);
+                }
+            }
+            for (int c = 0; c < statistics.length; c++) {
+                merge(chunk + c, statistics[c]);
+            }
+        }
+    }
+
+    /**
+     * Run a replica on its own and fold its tics into the statistics of its chunk.
+     *
+     * @param r index of the replica
+     * @param statistics statistics of its chunk
+     */
+    private void runReplica(int r, EnsembleStatistics statistics) {
+        Simulation simulation = new Simulation(replica(r), engine);
+        int ordinal = r % CHUNK_REPLICAS;
+        statistics.observe(
+            ordinal,
+            simulation.getTic(),
+            simulation.getMuscleMass(),
+            simulation.getAverageAnabolic(),
+            simulation.getAverageCatabolic()
+        );
+        while (!simulation.isFinished()) {
+            simulation.go();
+            statistics.observe(
+                ordinal,
+                simulation.getTic(),
+                simulation.getMuscleMass(),
+                simulation.getAverageAnabolic(),
+                simulation.getAverageCatabolic()
+            );
+        }
+        reportProgress(1);
+    }
+
+    /**
+     * Run consecutive replicas together as the lanes of an interleaved simulation, folding
+     * every tic of each lane into the statistics of its chunk.
+     *
+     * @param from index of the first replica, the first of a chunk
+     * @param to index after the last replica
+     * @param statistics statistics of the chunks of the replicas
+     */
+    private void runInterleaved(int from, int to, EnsembleStatistics[] statistics) {
+        Configuration[] lanes = new Configuration[to - from];
+        for (int l = 0; l < lanes.length; l++) {
+            lanes[l] = replica(from + l);
+        }
+        InterleavedSimulation simulation = new InterleavedSimulation(lanes, null);
+        observeLanes(simulation, statistics);
+        while (!simulation.isFinished()) {
+            simulation.go();
+            observeLanes(simulation, statistics);
+        }
+        reportProgress(lanes.length);
+    }
+
+    /**
+     * Fold the current tic of every lane into the statistics of its chunk, in lane order.
+     *
+     * @param simulation lanes of consecutive replicas
+     * @param statistics statistics of the chunks of the lanes
+     */
+    private void observeLanes(InterleavedSimulation simulation, EnsembleStatistics[] statistics) {
+        for (int l = 0; l < simulation.getLanes(); l++) {
+            statistics[l / CHUNK_REPLICAS].observe(
+                l % CHUNK_REPLICAS,
+                simulation.getTic(),
+                simulation.getMuscleMass(l),
+                simulation.getAverageAnabolic(l),
+                simulation.getAverageCatabolic(l)
+            );
+        }
+    }
+
+    /**
+     * Configuration of a replica, with the seed of the ensemble counted up by its index.
+     *
+     * @param r index of the replica
+     * @return configuration of the replica
+     */
+    private Configuration replica(int r) {
+        return config.withSeed(config.getSeed() + r);
+    }
+
+    /**
+     * Count finished replicas and print the progress every twentieth of the ensemble.
+     *
+     * @param count number of replicas just finished
+     */
+    private void reportProgress(int count) {
+        int step = Math.max(1, replicas / 20);
+        int before = done.getAndAdd(count);
+        int after = before + count;
+        if (after / step > before / step || after == replicas) {
+            System.out.printf("Finished %d/%d replicas%n", after, replicas);
+        }
+    }
+
+    /**
+     * Hand over the statistics of a finished chunk and merge every chunk that is next in
+     * order of seeds into the total.
+     *
+     * @param chunk index of the finished chunk
+     * @param statistics statistics of its replicas
+     */
+    private synchronized void merge(int chunk, EnsembleStatistics statistics) {
+        finished[chunk] = statistics;
+        while (merged < finished.length && finished[merged] != null) {
+            total.merge(finished[merged]);
+            finished[merged] = null;
+            merged++;
+        }
+    }
+
+    /**
+     * Save the configuration and the statistics of every tic in CSV form.
+     *
+     * @param statistics statistics of the replicas
+     * @param sink sink the CSV is saved to
+     * @throws IOException if writing fails
+     */
+    public void write(EnsembleStatistics statistics, CsvSink sink) throws IOException {
+        sink.writeConfiguration(config);
+        sink.writeEnsembleHeader(statistics.getCount(), config.getSeed());
+        for (int tic = 0; tic <= statistics.getMaxTic(); tic++) {
+            sink.writeEnsembleStatus(tic, statistics);
+        }
+    }
+
+    /**
+     * Runs an ensemble of replicas of the simulation.
+     *
+     * Command line arguments:
+     *  --output=[filePath]                        Path to the output file, defaults to
+     *                                             ensemble.csv
+     *  --replicas=[replicas]                      Number of replicas, defaults to 100
+     *  --intensity=[intensityLevel]               Workout intensity as an integer
+     *  --hoursOfSleep=[hours]                     Average hours of sleep per night as a double
+     *  --daysBwWorkouts=[daysBetweenWorkouts]     Days between workouts as an integer
+     *  --slowTwitchFibersPercentage=[percentage]  Slow twitch fibers % in muscle as an integer
+     *  --lift=[true|false]                        Indicates whether a subject do lift or not
+     *  --nutritionQuality=[nutritionQuality]      Quality of nutrition as double
+     *  --engine=[object|array|active|vector|offheap|interleaved]
+     *                                             State engine, defaults to object
+     *  --lanes=[lanes]                            Replicas the interleaved engine advances
+     *                                             together, defaults to 16
+     *  --workers=[workers]                        Replicas run at the same time, defaults
+     *                                             to the number of processors
+     *  --gridWidth=[width]                        Width of grid, defaults to 17
+     *  --gridHeight=[height]                      Height of grid, defaults to 17
+     *  --maxTic=[tics]                            Number of tics to simulate, defaults to 3000
+     *  --seed=[seed]                              Seed of the first replica, the others
+     *                                             counting up from it, random if not given
+     *  --precision=[double|float]                 Precision the state is stored in, defaults
+     *                                             to double
+     *  --liftSampling=[bernoulli|geometric]       Draw each patch of a lift or skip between
+     *                                             the lifted patches by geometric gaps,
+     *                                             defaults to bernoulli
+     *  --sproutSampling=[bernoulli|binomial]      Sprout each fiber from 20 draws or from a
+     *                                             single binomial draw, defaults to bernoulli
+     *
+     * Parameters of the model that are not given take the values 95, 8, 5, 50, true and 0.5.
+     *
+     * @param args the command line arguments used to configure the ensemble.
+     */
+    public static void main(String[] args) {
+        String path = "ensemble.csv";
+        int replicas = 100;
+        int intensity = 95;
+        double hoursOfSleep = 8;
+        int daysBwWorkouts = 5;
+        int slowTwitchFibersPercentage = 50;
+        boolean lift = true;
+        double nutritionQuality = 0.5;
+        String engine = null;
+        int lanes = DEFAULT_LANES;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int gridWidth = Configuration.DEFAULT_GRID_WIDTH;
+        int gridHeight = Configuration.DEFAULT_GRID_HEIGHT;
+        int maxTic = Configuration.DEFAULT_MAX_TIC;
+        long seed = CounterRandom.newSeed();
+        String precision = "double";
+        String liftSampling = "bernoulli";
+        String sproutSampling = "bernoulli";
+
+        // parse command line arguments.
+        for (String arg : args) {
+            if (arg.startsWith("--output=")) {
+                path = arg.split("=")[1];
+            } else if (arg.startsWith("--replicas=")) {
+                replicas = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--intensity=")) {
+                intensity = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--hoursOfSleep=")) {
+                hoursOfSleep = Double.parseDouble(arg.split("=")[1]);
+            } else if (arg.startsWith("--daysBwWorkouts=")) {
+                daysBwWorkouts = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--slowTwitchFibersPercentage=")) {
+                slowTwitchFibersPercentage = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--lift=")) {
+                lift = Boolean.parseBoolean(arg.split("=")[1]);
+            } else if (arg.startsWith("--nutritionQuality=")) {
+                nutritionQuality = Double.parseDouble(arg.split("=")[1]);
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.split("=")[1];
+            } else if (arg.startsWith("--lanes=")) {
+                lanes = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--workers=")) {
+                workers = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--gridWidth=")) {
+                gridWidth = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--gridHeight=")) {
+                gridHeight = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--maxTic=")) {
+                maxTic = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.split("=")[1]);
+            } else if (arg.startsWith("--precision=")) {
+                precision = arg.split("=")[1];
+            } else if (arg.startsWith("--liftSampling=")) {
+                liftSampling = arg.split("=")[1];
+            } else if (arg.startsWith("--sproutSampling=")) {
+                sproutSampling = arg.split("=")[1];
+            }
+        }
+
+        if (replicas < 1) {
+            throw new IllegalArgumentException("Replicas must be positive: " + replicas);
+        }
+        if (!precision.equals("double") && !precision.equals("float")) {
+            throw new IllegalArgumentException("Unknown precision: " + precision);
+        }
+        if ("interleaved".equals(engine) && precision.equals("float")) {
+            throw new IllegalArgumentException("The interleaved engine keeps double state");
+        }
+        if (!liftSampling.equals("bernoulli") && !liftSampling.equals("geometric")) {
+            throw new IllegalArgumentException("Unknown lift sampling: " + liftSampling);
+        }
+        if (!sproutSampling.equals("bernoulli") && !sproutSampling.equals("binomial")) {
+            throw new IllegalArgumentException("Unknown sprout sampling: " + sproutSampling);
+        }
+
+        Configuration config = new Configuration(
+            intensity,
+            hoursOfSleep,
+            daysBwWorkouts,
+            slowTwitchFibersPercentage,
+            lift,
+            nutritionQuality,
+            gridWidth,
+            gridHeight,
+            maxTic,
+            seed
+        )
+            .withSinglePrecision(precision.equals("float"))
+            .withGeometricLift(liftSampling.equals("geometric"))
+            .withBinomialSprout(sproutSampling.equals("binomial"));
+        System.out.println("Seed: " + config.getSeed());
+
+        Ensemble ensemble = new Ensemble(config, replicas, engine, lanes);
+        long start = System.nanoTime();
+        try (CsvSink sink = new CsvSink(path)) {
+            EnsembleStatistics statistics = ensemble.run(workers);
+            ensemble.write(statistics, sink);
+            System.out.printf(
+                "Ensemble of %d replicas finished in %.1f s%n",
+                replicas,
+                (System.nanoTime() - start) / 1e9
+            );
+        } catch (IOException e) {
+            System.out.println("Ensemble failed to save " + path + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Ensemble interrupted");
+        }
+    }
+}
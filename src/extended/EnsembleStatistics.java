@@ -0,0 +1,225 @@
+/**
+ * Streaming statistics of the metrics of an ensemble of replicas, tic by tic.
+ *
+ * The muscle mass and the average hormone levels of each replica are folded into running
+ * sums as the replica runs, using Welford's update of the mean and of the sum of squared
+ * deviations, so the statistics take memory proportional to the number of tics and not to
+ * the number of replicas. Statistics gathered apart, e.g. on different threads, are combined
+ * with the pairwise update of Chan, Golub and LeVeque. The confidence interval of the mean
+ * is the 95% interval of the Student t distribution.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.Arrays;
+
+public class EnsembleStatistics {
+
+    public static final int MUSCLE_MASS = 0; // series of the muscle mass
+    public static final int ANABOLIC = 1;    // series of the average anabolic hormone
+    public static final int CATABOLIC = 2;   // series of the average catabolic hormone
+    public static final int SERIES = 3;      // number of series
+
+    private static final double Z = 1.959963984540054; // 97.5% quantile of the normal
+
+    // 97.5% quantiles of the Student t distribution for 1 to 30 degrees of freedom
+    private static final double[] T_QUANTILES = {
+        12.7062, 4.3027, 3.1824, 2.7764, 2.5706, 2.4469, 2.3646, 2.3060, 2.2622, 2.2281,
+        2.2010, 2.1788, 2.1604, 2.1448, 2.1314, 2.1199, 2.1098, 2.1009, 2.0930, 2.0860,
+        2.0796, 2.0739, 2.0687, 2.0639, 2.0595, 2.0555, 2.0518, 2.0484, 2.0452, 2.0423
+    };
+
+    private long count;  // number of replicas observed at every tic
+
+    // statistics of tic t of each series at [series][t]
+    private double[][] mean;  // mean over the replicas
+    private double[][] m2;    // sum of squared deviations from the mean
+    private double[][] min;   // smallest value of any replica
+    private double[][] max;   // largest value of any replica
+
+    /**
+     * Constructor for EnsembleStatistics of no replica yet.
+     *
+     * @param maxTic upper bound for tic, every tic from 0 to maxTic is recorded
+     */
+    public EnsembleStatistics(int maxTic) {
+        this.mean = new double[SERIES][maxTic + 1];
+        this.m2 = new double[SERIES][maxTic + 1];
+        this.min = new double[SERIES][maxTic + 1];
+        this.max = new double[SERIES][maxTic + 1];
+        for (int series = 0; series < SERIES; series++) {
+            Arrays.fill(min[series], Double.POSITIVE_INFINITY);
+            Arrays.fill(max[series], Double.NEGATIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Fold the metrics of a tic of a replica into the statistics. The replicas are numbered
+     * from 0 in the order they are folded in, which may interleave their tics as long as
+     * each tic sees the replicas in that order. A replica counts once its last tic is
+     * observed.
+     *
+     * @param replica number of replicas folded in before this one
+     * @param tic tic of the metrics
+     * @param mass muscle mass
+     * @param anabolic average anabolic hormone level
+     * @param catabolic average catabolic hormone level
+     */
+    public void observe(int replica, int tic, double mass, double anabolic, double catabolic) {
+        long n = replica + 1;
+        update(MUSCLE_MASS, tic, n, mass);
+        update(ANABOLIC, tic, n, anabolic);
+        update(CATABOLIC, tic, n, catabolic);
+        if (tic == mean[0].length - 1) {
+            count = Math.max(count, n);
+        }
+    }
+
+    /**
+     * Welford update of the statistics of a tic with the value of one more replica.
+     *
+     * @param series index of the series
+     * @param tic tic of the value
+     * @param n number of replicas including this one
+     * @param value value of the replica
+     */
+    private void update(int series, int tic, long n, double value) {
+        double delta = value - mean[series][tic];
+        mean[series][tic] += delta / n;
+        m2[series][tic] += delta * (value - mean[series][tic]);
+        min[series][tic] = Math.min(min[series][tic], value);
+        max[series][tic] = Math.max(max[series][tic], value);
+    }
+
+    /**
+     * Combine the statistics of other replicas into these, as if they had been observed
+     * after the replicas of these statistics.
+     *
+     * @param other statistics of the same number of tics
+     */
+    public void merge(EnsembleStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long n = count + other.count;
+        for (int series = 0; series < SERIES; series++) {
+            for (int tic = 0; tic < mean[series].length; tic++) {
+                double delta = other.mean[series][tic] - mean[series][tic];
+                if (count == 0) {
+                    mean[series][tic] = other.mean[series][tic];
+                    m2[series][tic] = other.m2[series][tic];
+                } else {
+                    mean[series][tic] += delta * other.count / n;
+                    m2[series][tic] += other.m2[series][tic]
+                        + delta * delta * count * other.count / n;
+                }
+                min[series][tic] = Math.min(min[series][tic], other.min[series][tic]);
+                max[series][tic] = Math.max(max[series][tic], other.max[series][tic]);
+            }
+        }
+        count = n;
+    }
+
+    /**
+     * 97.5% quantile of the Student t distribution, from a table up to 30 degrees of freedom
+     * and from its Cornish-Fisher expansion around the normal quantile beyond.
+     *
+     * @param degrees degrees of freedom, at least 1
+     * @return quantile bounding the two sided 95% interval
+     */
+    public static double tQuantile(long degrees) {
+        if (degrees <= T_QUANTILES.length) {
+            return T_QUANTILES[(int) degrees - 1];
+        }
+        double z3 = Z * Z * Z;
+        double z5 = z3 * Z * Z;
+        double z7 = z5 * Z * Z;
+        double v = degrees;
+        return Z
+            + (z3 + Z) / (4 * v)
+            + (5 * z5 + 16 * z3 + 3 * Z) / (96 * v * v)
+            + (3 * z7 + 19 * z5 + 17 * z3 - 15 * Z) / (384 * v * v * v);
+    }
+
+    /**
+     * Getter method for the number of replicas
+     *
+     * @return number of replicas observed
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Upper bound for tic of the statistics.
+     *
+     * @return last tic recorded
+     */
+    public int getMaxTic() {
+        return mean[0].length - 1;
+    }
+
+    /**
+     * Mean of a series at a tic over the replicas.
+     *
+     * @param series index of the series
+     * @param tic tic of the statistics
+     * @return mean
+     */
+    public double getMean(int series, int tic) {
+        return mean[series][tic];
+    }
+
+    /**
+     * Sample variance of a series at a tic over the replicas.
+     *
+     * @param series index of the series
+     * @param tic tic of the statistics
+     * @return unbiased variance, 0 for fewer than two replicas
+     */
+    public double getVariance(int series, int tic) {
+        return count > 1 ? m2[series][tic] / (count - 1) : 0;
+    }
+
+    /**
+     * Smallest value of a series at a tic over the replicas.
+     *
+     * @param series index of the series
+     * @param tic tic of the statistics
+     * @return minimum
+     */
+    public double getMin(int series, int tic) {
+        return min[series][tic];
+    }
+
+    /**
+     * Largest value of a series at a tic over the replicas.
+     *
+     * @param series index of the series
+     * @param tic tic of the statistics
+     * @return maximum
+     */
+    public double getMax(int series, int tic) {
+        return max[series][tic];
+    }
+
+    /**
+     * Half the width of the 95% confidence interval of the mean of a series at a tic.
+     *
+     * @param series index of the series
+     * @param tic tic of the statistics
+     * @return half width, 0 for fewer than two replicas
+     */
+    public double getHalfWidth(int series, int tic) {
+        if (count < 2) {
+            return 0;
+        }
+        return tQuantile(count - 1) * Math.sqrt(getVariance(series, tic) / count);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Table driven log10 used by the fast math mode of the simulation.
+ *
+ * A positive double x = 2^e * m with m in [1, 2) is split on the top TABLE_BITS bits of its
+ * mantissa. Each interval starts at a knot c with log10(c) and 1 / c tabulated, so
+ * log10(x) = e * log10(2) + log10(c) + log10(1 + r) with r = m / c - 1. As r is below
+ * 2^-TABLE_BITS a cubic of r gives log10(1 + r) to about 1e-12, which is far below the
+ * precision the model needs while avoiding the full range reduction of Math.log10. Powers
+ * of two, including the fiber size 1 every clamped fiber falls back to, are exact.
+ *
+ * Zero, negative, subnormal and non-finite arguments go to Math.log10, so the result
+ * only differs from Math.log10 by the approximation error.
+ *
+ * The float overload does the same in single precision straight from the bits of a float,
+ * for state stored as float, so that no conversion to double sits on the path of every
+ * patch.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+public class FastLog10 {
+
+    private static final int TABLE_BITS = 9;                 // mantissa bits indexing the table
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;   // number of intervals
+    private static final int INDEX_SHIFT = 52 - TABLE_BITS;  // shift bringing the index bits down
+
+    private static final long MANTISSA_MASK = 0x000FFFFFFFFFFFFFL;
+    private static final long ONE_BITS = 0x3FF0000000000000L; // exponent bits of [1, 2)
+    private static final int EXPONENT_BIAS = 1023;
+
+    private static final double LOG10_2 = Math.log10(2);
+    private static final double C1 = 1 / Math.log(10);      // coefficients of log10(1 + r)
+    private static final double C2 = -1 / (2 * Math.log(10));
+    private static final double C3 = 1 / (3 * Math.log(10));
+
+    // log10 and reciprocal of the knot starting each interval of [1, 2)
+    private static final double[] LOG10_KNOT = new double[TABLE_SIZE];
+    private static final double[] INVERSE_KNOT = new double[TABLE_SIZE];
+
+    // single precision counterparts for the float overload
+    private static final int FLOAT_INDEX_SHIFT = 23 - TABLE_BITS;
+    private static final int FLOAT_MANTISSA_MASK = 0x007FFFFF;
+    private static final int FLOAT_ONE_BITS = 0x3F800000;
+    private static final int FLOAT_EXPONENT_BIAS = 127;
+    private static final float FLOAT_LOG10_2 = (float) LOG10_2;
+    private static final float FLOAT_C1 = (float) C1;
+    private static final float FLOAT_C2 = (float) C2;
+    private static final float FLOAT_C3 = (float) C3;
+    private static final float[] FLOAT_LOG10_KNOT = new float[TABLE_SIZE];
+    private static final float[] FLOAT_INVERSE_KNOT = new float[TABLE_SIZE];
+
+    static {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            double knot = 1 + (double) i / TABLE_SIZE;
+            LOG10_KNOT[i] = Math.log10(knot);
+            INVERSE_KNOT[i] = 1 / knot;
+            FLOAT_LOG10_KNOT[i] = (float) LOG10_KNOT[i];
+            FLOAT_INVERSE_KNOT[i] = (float) INVERSE_KNOT[i];
+        }
+    }
+
+    private FastLog10() {
+    }
+
+    /**
+     * Approximate base 10 logarithm.
+     *
+     * @param x argument
+     * @return log10(x) within about 1e-12, or exactly Math.log10(x) outside the normal
+     *         positive range
+     */
+    public static double log10(double x) {
+        long bits = Double.doubleToRawLongBits(x);
+        int exponent = (int) (bits >>> 52);
+        if (exponent == 0 || exponent >= 0x7FF) {
+            // zero, subnormal, negative (sign bit set), infinite or NaN
+            return Math.log10(x);
+        }
+
+        int index = (int) ((bits & MANTISSA_MASK) >>> INDEX_SHIFT);
+        double mantissa = Double.longBitsToDouble((bits & MANTISSA_MASK) | ONE_BITS);
+        double r = mantissa * INVERSE_KNOT[index] - 1;
+
+        return (exponent - EXPONENT_BIAS) * LOG10_2
+            + LOG10_KNOT[index]
+            + r * (C1 + r * (C2 + r * C3));
+    }
+
+    /**
+     * Approximate base 10 logarithm in single precision.
+     *
+     * @param x argument
+     * @return log10(x) within about 5e-7, or Math.log10(x) rounded to float outside the
+     *         normal positive range
+     */
+    public static float log10(float x) {
+        int bits = Float.floatToRawIntBits(x);
+        int exponent = bits >>> 23;
+        if (exponent == 0 || exponent >= 0xFF) {
+            // zero, subnormal, negative (sign bit set), infinite or NaN
+            return (float) Math.log10(x);
+        }
+
+        int index = (bits & FLOAT_MANTISSA_MASK) >>> FLOAT_INDEX_SHIFT;
+        float mantissa = Float.intBitsToFloat((bits & FLOAT_MANTISSA_MASK) | FLOAT_ONE_BITS);
+        float r = mantissa * FLOAT_INVERSE_KNOT[index] - 1;
+
+        return (exponent - FLOAT_EXPONENT_BIAS) * FLOAT_LOG10_2
+            + FLOAT_LOG10_KNOT[index]
+            + r * (FLOAT_C1 + r * (FLOAT_C2 + r * FLOAT_C3));
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Accuracy report of the fast math mode against the exact Math.log10 path.
+ *
+ * Two simulations of the same configuration and seed, one exact and one using FastLog10,
+ * are advanced in lockstep so they see the same random draws, and the largest differences
+ * of their metrics are recorded tic by tic. The error of FastLog10 itself is sampled over
+ * the domains the model evaluates log10 on: fiber sizes and the clamped hormone levels.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class FastMathReport {
+
+    private static final int MAX_FIBER_SIZE = 24; // sprouted maximum size is at most 4 + 20
+    private static final int SAMPLES = 1_000_000; // log10 arguments sampled for each domain
+
+    private int tics;                // number of tics compared
+    private double exactMass;        // muscle mass of the exact run at the last tic
+    private double fastMass;         // muscle mass of the fast run at the last tic
+    private double maxMassDrift;     // largest difference in muscle mass
+    private int maxMassDriftTic;     // tic of the largest difference in muscle mass
+    private double maxAnabolicDrift; // largest difference in average anabolic hormone
+    private double maxCatabolicDrift; // largest difference in average catabolic hormone
+
+    /**
+     * Run the exact and the fast simulation of the configuration until its upper bound for
+     * tic and compare their metrics.
+     *
+     * @param config configuration for simulation, fast math setting is ignored
+     * @param engine name of the state engine: "object", "array", "active", "vector" or "offheap"
+     * @param pool pool running each phase over row stripes, or null to run sequentially
+     */
+    public FastMathReport(Configuration config, String engine, ForkJoinPool pool) {
+        Simulation exact = new Simulation(config.withFastMath(false), engine, pool);
+        Simulation fast = new Simulation(config.withFastMath(true), engine, pool);
+
+        compare(exact, fast);
+        while (!exact.isFinished()) {
+            exact.go();
+            fast.go();
+            compare(exact, fast);
+        }
+
+        this.tics = exact.getTic();
+        this.exactMass = exact.getMuscleMass();
+        this.fastMass = fast.getMuscleMass();
+    }
+
+    /**
+     * Record the differences between the metrics of the current tic.
+     *
+     * @param exact simulation using Math.log10
+     * @param fast simulation using FastLog10
+     */
+    private void compare(Simulation exact, Simulation fast) {
+        double massDrift = Math.abs(fast.getMuscleMass() - exact.getMuscleMass());
+        if (massDrift > maxMassDrift) {
+            maxMassDrift = massDrift;
+            maxMassDriftTic = exact.getTic();
+        }
+        maxAnabolicDrift = Math.max(
+            maxAnabolicDrift,
+            Math.abs(fast.getAverageAnabolic() - exact.getAverageAnabolic())
+        );
+        maxCatabolicDrift = Math.max(
+            maxCatabolicDrift,
+            Math.abs(fast.getAverageCatabolic() - exact.getAverageCatabolic())
+        );
+    }
+
+    /**
+     * Largest absolute error of FastLog10 over evenly spaced arguments of an interval.
+     *
+     * @param from lower bound of the interval
+     * @param to upper bound of the interval
+     * @return largest absolute difference to Math.log10
+     */
+    public static double maxLog10Error(double from, double to) {
+        double maxError = 0;
+        for (int i = 0; i <= SAMPLES; i++) {
+            double x = from + (to - from) * i / SAMPLES;
+            maxError = Math.max(maxError, Math.abs(FastLog10.log10(x) - Math.log10(x)));
+        }
+        return maxError;
+    }
+
+    /**
+     * Print the report to the console.
+     */
+    public void print() {
+        System.out.println("Fast math accuracy against Math.log10:");
+        System.out.printf(
+            "  log10 error: %.3e on fiber sizes [1, %d], %.3e on anabolic [%d, %d], "
+                + "%.3e on catabolic [%d, %d]%n",
+            maxLog10Error(1, MAX_FIBER_SIZE),
+            MAX_FIBER_SIZE,
+            maxLog10Error(Configuration.ANABOLIC_HORMONE_MIN, Configuration.ANABOLIC_HORMONE_MAX),
+            Configuration.ANABOLIC_HORMONE_MIN,
+            Configuration.ANABOLIC_HORMONE_MAX,
+            maxLog10Error(Configuration.CATABOLIC_HORMONE_MIN, Configuration.CATABOLIC_HORMONE_MAX),
+            Configuration.CATABOLIC_HORMONE_MIN,
+            Configuration.CATABOLIC_HORMONE_MAX
+        );
+        System.out.printf(
+            "  muscle mass after %d tics: %.9f exact, %.9f fast, drift %.3e%n",
+            tics,
+            exactMass,
+            fastMass,
+            Math.abs(fastMass - exactMass)
+        );
+        System.out.printf(
+            "  max drift: muscle mass %.3e at tic %d, anabolic %.3e, catabolic %.3e%n",
+            maxMassDrift,
+            maxMassDriftTic,
+            maxAnabolicDrift,
+            maxCatabolicDrift
+        );
+    }
+
+    /**
+     * Getter method for the largest difference in muscle mass
+     *
+     * @return largest absolute difference in muscle mass over every tic
+     */
+    public double getMaxMassDrift() {
+        return this.maxMassDrift;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Sprouting of the maximum size of the muscle fibers.
+ *
+ * A fiber starts from a size of 4 and grows by one for each of 20 draws that falls above the
+ * percentage of slow twitch fibers, so its maximum size is 4 plus a Binomial(20, 1 - slow /
+ * 100) variable. By default the 20 draws are made one by one. Binomial sprouting instead
+ * inverts the binomial distribution function, tabulated once for every percentage, at a
+ * single draw. The sizes have the same distribution but are not the same sizes, so the
+ * output differs from the default while being reproducible under a fixed seed.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+public class FiberSprout {
+
+    public static final int SPROUT_DRAWS = 20; // draws deciding the maximum size
+    public static final int MIN_SIZE = 4;      // maximum size before any draw
+
+    // BINOMIAL_CDF[s][n] probability of at most n of the draws falling above percentage s
+    private static final double[][] BINOMIAL_CDF = tabulate();
+
+    private FiberSprout() {
+    }
+
+    /**
+     * Maximum size of the fiber of a patch, sprouted as the configuration asks for.
+     *
+     * @param config configuration of the simulation
+     * @param index index of the patch, i * height + j
+     * @return the sprouted maximum size of the muscle fiber
+     */
+    public static int sprout(Configuration config, int index) {
+        long seed = config.getSeed();
+        int percentage = config.getSlowTwitchFibersPercentage();
+        if (config.isBinomialSprout()) {
+            return binomial(seed, percentage, index);
+        }
+        int size = MIN_SIZE;
+        for (int i = 0; i < SPROUT_DRAWS; i++) {
+            double draw = CounterRandom.uniform(seed, CounterRandom.SETUP_TIC, index, i);
+            if (draw * 100 > percentage) {
+                size += 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Initial size of the fiber of a patch before it is regulated, between 0.2 and 0.6 of
+     * its maximum size, from the draw after the sprout draws.
+     *
+     * @param seed seed of the simulation
+     * @param index index of the patch, i * height + j
+     * @param maxSize maximum size of the muscle fiber
+     * @return the initial size of the muscle fiber
+     */
+    public static double initialSize(long seed, int index, int maxSize) {
+        double draw = CounterRandom.uniform(seed, CounterRandom.SETUP_TIC, index, SPROUT_DRAWS);
+        return (0.2 + draw * 0.4) * maxSize;
+    }
+
+    /**
+     * Maximum size of a fiber from a single draw of the binomial distribution.
+     *
+     * @param seed seed of the simulation
+     * @param percentage percentage of slow twitch fibers
+     * @param index index of the patch, i * height + j
+     * @return the sprouted maximum size of the muscle fiber
+     */
+    private static int binomial(long seed, int percentage, int index) {
+        double[] cdf = BINOMIAL_CDF[Math.max(0, Math.min(100, percentage))];
+        double draw = CounterRandom.uniform(seed, CounterRandom.SETUP_TIC, index, 0);
+        int grown = 0;
+        while (grown < SPROUT_DRAWS && cdf[grown] <= draw) {
+            grown++;
+        }
+        return MIN_SIZE + grown;
+    }
+
+    /**
+     * Binomial distribution function of the draws falling above every percentage.
+     *
+     * @return distribution function by percentage and number of draws
+     */
+    private static double[][] tabulate() {
+        double[][] cdf = new double[101][SPROUT_DRAWS + 1];
+        for (int s = 0; s <= 100; s++) {
+            double p = 1 - s / 100.0;
+            double total = 0;
+            for (int n = 0; n <= SPROUT_DRAWS; n++) {
+                double grown = Math.pow(p, n) * Math.pow(1 - p, SPROUT_DRAWS - n);
+                total += choose(SPROUT_DRAWS, n) * grown;
+                cdf[s][n] = total;
+            }
+        }
+        return cdf;
+    }
+
+    /**
+     * Binomial coefficient.
+     *
+     * @param n number of draws
+     * @param k number of draws chosen
+     * @return n choose k
+     */
+    private static double choose(int n, int k) {
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,593 @@
+/**
+ * Single precision implementation of the muscle.
+ *
+ * The layout is the one of {@link ArrayMuscle}, but the hormone levels, fiber sizes and
+ * diffusion shares are stored as float and the maximum fiber size, at most 24, as a byte.
+ * That halves the memory every phase streams through, and the phases are evaluated in
+ * single precision too, so a vector instruction covers twice the patches. Mixing in double
+ * arithmetic would put a conversion on every value, which costs more than it saves.
+ * Math.log10 is the only step taken in double precision and rounded, while fast math uses
+ * the single precision FastLog10. The output therefore drifts from the double precision
+ * engines by the rounding of every step, which PrecisionReport measures for a configuration.
+ *
+ * The random draws are the same as in the other engines, and the metrics are summed in
+ * double precision.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class FloatMuscle implements MuscleEngine {
+
+    private Configuration config; // configuration of the simulation
+    private long seed;            // seed of every random draw
+    private boolean fastMath;     // approximate log10 with FastLog10
+    private int liftTic;          // tic of the lift being performed
+    private boolean liftToday;    // whether the fused tic lifts weight
+
+    // run constants of the configuration, read once instead of for every patch
+    private double liftThreshold;  // probability of a patch being lifted
+    private double nutritionDelta; // relative hormone change of eating
+    private boolean eats;          // whether eating changes the hormones at all
+    private double hoursOfSleep;   // hours of sleep between day
+
+    private int width;      // number of rows of the grid
+    private int height;     // number of patches in each row
+    private int stride;     // number of slots in each row of the padded share buffers
+    private int totalGrid;  // number of patches in the grid
+
+    // state of the patches, indexed by i * height + j
+    private float[] anabolicHormone;
+    private float[] catabolicHormone;
+    private float[] fiberSize;
+    private byte[] maxSize;
+    private LiftSampler sampler; // samples lifted patches by geometric gaps, null if per patch
+    private int[] lifted;        // patches the sampler selected, row by row
+
+    // shares handed out to each neighbour, indexed by (i + 1) * stride + (j + 1)
+    private float[] anabolicShares;
+    private float[] catabolicShares;
+
+    private RowStripes stripes; // runs the phases over stripes of rows
+
+    // phases bound once so that running them does not allocate
+    private RowStripes.RowTask dailyActivityTask = this::performDailyActivity;
+    private RowStripes.RowTask liftWeightTask = this::liftWeight;
+    private RowStripes.RowTask eatTask = this::eat;
+    private RowStripes.RowTask sleepTask = this::sleep;
+    private RowStripes.RowTask storeSharesTask = this::storeShares;
+    private RowStripes.RowTask gatherSharesTask = this::gatherShares;
+    private RowStripes.RowTask regulateHormonesTask = this::regulateHormones;
+    private RowStripes.RowTask developMuscleTask = this::developMuscle;
+    private RowStripes.RowTask hormonePassTask = this::hormonePass;
+    private RowStripes.RowTask developPassTask = this::developPass;
+
+    // sums of the state, only up to date while sumsValid is set
+    private boolean sumsValid;
+    private double sumAnabolic;
+    private double sumCatabolic;
+    private double sumMass;
+    private CompensatedSums compensatedSums; // per row sums, null unless compensation is on
+
+    /**
+     * Constructor for FloatMuscle running every phase on the calling thread.
+     *
+     * @param config configuration of the simulation
+     */
+    public FloatMuscle(Configuration config) {
+        this(config, null);
+    }
+
+    /**
+     * Constructor for FloatMuscle to allocate the state arrays with grid width and height from
+     * the configuration.
+     *
+     * @param config configuration of the simulation
+     * @param pool pool running the phases over row stripes, or null to run sequentially
+     */
+    public FloatMuscle(Configuration config, ForkJoinPool pool) {
+        this.config = config;
+        this.seed = config.getSeed();
+        this.fastMath = config.isFastMath();
+        this.liftThreshold = config.getLiftThreshold();
+        this.nutritionDelta = config.getNutritionDelta();
+        this.eats = nutritionDelta != 0;
+        this.hoursOfSleep = config.getHourseOfSleep();
+        this.width = config.getGridWidth();
+        this.height = config.getGridHeight();
+        this.stride = height + 2;
+        this.totalGrid = width * height;
+        this.anabolicHormone = new float[totalGrid];
+        this.catabolicHormone = new float[totalGrid];
+        this.fiberSize = new float[totalGrid];
+        this.maxSize = new byte[totalGrid];
+        if (config.isGeometricLift()) {
+            this.sampler = new LiftSampler(config);
+            this.lifted = new int[totalGrid];
+        }
+        this.anabolicShares = new float[(width + 2) * stride];
+        this.catabolicShares = new float[(width + 2) * stride];
+        this.stripes = new RowStripes(pool, width);
+        if (config.isCompensatedSums()) {
+            this.compensatedSums = new CompensatedSums(width);
+        }
+        initialise();
+    }
+
+    /**
+     * Number of heap bytes taken by a muscle of given size: three float and one byte array
+     * for the state plus the padded share buffers.
+     *
+     * @param width width of grid
+     * @param height height of grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 13L * width * height + 8L * (width + 2) * (height + 2);
+    }
+
+    /**
+     * Initialise hormones and muscle fiber of each patch, stripe by stripe.
+     */
+    private void initialise() {
+        stripes.forEach(this::initialiseRows);
+    }
+
+    /**
+     * Initialise hormones and muscle fiber of the patches of the given rows. Every draw is
+     * keyed by its patch, so the stripes give the same state on any number of threads.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void initialiseRows(int fromRow, int toRow) {
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            int sprouted = FiberSprout.sprout(config, k);
+            float initial = (float) FiberSprout.initialSize(seed, k, sprouted);
+            maxSize[k] = (byte) sprouted;
+            fiberSize[k] = regulateMuscleFiber(initial, sprouted);
+            anabolicHormone[k] = Configuration.ANABOLIC_HORMONE_MIN;
+            catabolicHormone[k] = Configuration.CATABOLIC_HORMONE_MIN;
+        }
+    }
+
+    /**
+     * Run a whole tic in two passes over the grid. The first pass applies every pointwise
+     * phase before the diffusion and stores the shares of each patch, the second gathers the
+     * shares, regulates the hormones, develops the muscle and sums the state for the metrics.
+     */
+    @Override
+    public void triggerTic(int tic, boolean lift) {
+        liftTic = tic;
+        liftToday = lift;
+        sumsValid = false;
+        stripes.forEach(hormonePassTask);
+        stripes.forEach(developPassTask);
+        if (compensatedSums != null) {
+            storeCompensatedTotals();
+        }
+    }
+
+    @Override
+    public void triggerDailyActivity() {
+        sumsValid = false;
+        stripes.forEach(dailyActivityTask);
+    }
+
+    @Override
+    public void triggerLiftWeight(int tic) {
+        liftTic = tic;
+        sumsValid = false;
+        stripes.forEach(liftWeightTask);
+    }
+
+    @Override
+    public void triggerEat() {
+        sumsValid = false;
+        stripes.forEach(eatTask);
+    }
+
+    @Override
+    public void triggerSleep() {
+        sumsValid = false;
+        stripes.forEach(sleepTask);
+    }
+
+    @Override
+    public void triggerRegulateHormones() {
+        sumsValid = false;
+        diffuse();
+        stripes.forEach(regulateHormonesTask);
+    }
+
+    @Override
+    public void triggerDevelopMuscle() {
+        sumsValid = false;
+        stripes.forEach(developMuscleTask);
+    }
+
+    /**
+     * Daily activity, lifting weight, eating and sleeping applied row by row, followed by
+     * storing the shares the row hands out.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void hormonePass(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            performDailyActivity(i, i + 1);
+            if (liftToday) {
+                liftWeight(i, i + 1);
+            }
+            if (eats) {
+                eat(i, i + 1);
+            }
+            sleep(i, i + 1);
+            storeShares(i, i + 1);
+        }
+    }
+
+    /**
+     * Diffusion, hormone regulation and muscle development applied row by row. A pass over
+     * the whole grid also sums the state in index order, so the metrics need no further
+     * scan; stripes of a parallel run leave that to the getters. With compensation every
+     * stripe sums its own rows instead.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developPass(int fromRow, int toRow) {
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+
+        for (int i = fromRow; i < toRow; i++) {
+            gatherShares(i, i + 1);
+            regulateHormones(i, i + 1);
+            developMuscle(i, i + 1);
+            if (compensatedSums != null) {
+                sumRow(i);
+                continue;
+            }
+            for (int k = i * height; k < (i + 1) * height; k++) {
+                anabolicTotal += anabolicHormone[k];
+                catabolicTotal += catabolicHormone[k];
+                massTotal += fiberSize[k];
+            }
+        }
+
+        if (compensatedSums == null && fromRow == 0 && toRow == width) {
+            sumAnabolic = anabolicTotal;
+            sumCatabolic = catabolicTotal;
+            sumMass = massTotal;
+            sumsValid = true;
+        }
+    }
+
+    /**
+     * Hormonal effect of daily activity on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void performDailyActivity(int fromRow, int toRow) {
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            float log = log10(fiberSize[k]);
+            anabolicHormone[k] += log * 2.5f;
+            catabolicHormone[k] += log * 2.0f;
+        }
+    }
+
+    /**
+     * Hormonal effect of lifting weight on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void liftWeight(int fromRow, int toRow) {
+        double threshold = liftThreshold;
+        if (sampler != null) {
+            for (int i = fromRow; i < toRow; i++) {
+                int count = sampler.sample(liftTic, i, lifted);
+                for (int n = i * height; n < i * height + count; n++) {
+                    int k = lifted[n];
+                    float log = log10(fiberSize[k]);
+                    anabolicHormone[k] += log * 55;
+                    catabolicHormone[k] += log * 44;
+                }
+            }
+            return;
+        }
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            if (CounterRandom.uniform(seed, liftTic, k, 0) < threshold) {
+                float log = log10(fiberSize[k]);
+                anabolicHormone[k] += log * 55;
+                catabolicHormone[k] += log * 44;
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of quality of nutrition intake on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void eat(int fromRow, int toRow) {
+        float delta = (float) nutritionDelta;
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            anabolicHormone[k] += anabolicHormone[k] * delta;
+            catabolicHormone[k] -= catabolicHormone[k] * delta;
+        }
+    }
+
+    /**
+     * Hormonal effect of sleeping on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void sleep(int fromRow, int toRow) {
+        float hours = (float) hoursOfSleep;
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            anabolicHormone[k] -= 0.48f * log10(anabolicHormone[k]) * hours;
+            catabolicHormone[k] -= 0.5f * log10(catabolicHormone[k]) * hours;
+        }
+    }
+
+    /**
+     * Clamp the hormone levels of the patches of the given rows to their limits.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void regulateHormones(int fromRow, int toRow) {
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            float anabolic = anabolicHormone[k];
+            float catabolic = catabolicHormone[k];
+            anabolic = Math.min(anabolic, Configuration.ANABOLIC_HORMONE_MAX);
+            anabolic = Math.max(anabolic, Configuration.ANABOLIC_HORMONE_MIN);
+            catabolic = Math.min(catabolic, Configuration.CATABOLIC_HORMONE_MAX);
+            catabolic = Math.max(catabolic, Configuration.CATABOLIC_HORMONE_MIN);
+            anabolicHormone[k] = anabolic;
+            catabolicHormone[k] = catabolic;
+        }
+    }
+
+    /**
+     * Grow and regulate the muscle fibers of the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developMuscle(int fromRow, int toRow) {
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            float catabolicLog = log10(catabolicHormone[k]);
+            float size = fiberSize[k];
+            size -= 0.2f * catabolicLog;
+            size += 0.2f * Math.min(log10(anabolicHormone[k]), 1.05f * catabolicLog);
+            fiberSize[k] = regulateMuscleFiber(size, maxSize[k]);
+        }
+    }
+
+    /**
+     * Ensures that the size of a muscle fiber does not exceed its maximum or fall below 1.
+     *
+     * @param size size of the muscle fiber
+     * @param max maximum size of the muscle fiber
+     * @return regulated size
+     */
+    private static float regulateMuscleFiber(float size, int max) {
+        if (size < 1) {
+            size = 1;
+        }
+        if (size > max) {
+            size = max;
+        }
+        return size;
+    }
+
+    /**
+     * Base 10 logarithm, approximated in single precision when the configuration asks for
+     * fast math. Math.log10 is taken in double precision and rounded.
+     *
+     * @param x argument
+     * @return log10 of x
+     */
+    private float log10(float x) {
+        return fastMath ? FastLog10.log10(x) : (float) Math.log10(x);
+    }
+
+    /**
+     * Implementation of Netlogo's diffuse function, exchanging shares through the padded
+     * share buffers so the neighbour loop has no bounds checks.
+     *
+     * Every stripe stores its shares before any stripe gathers, so stripes only ever read
+     * the levels from before diffusion.
+     */
+    @Override
+    public void diffuse() {
+        sumsValid = false;
+        stripes.forEach(storeSharesTask);
+        stripes.forEach(gatherSharesTask);
+    }
+
+    /**
+     * Store the shares handed out by the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void storeShares(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int k = i * height;
+            int p = (i + 1) * stride + 1;
+            for (int j = 0; j < height; j++, k++, p++) {
+                anabolicShares[p] = share(anabolicHormone[k]);
+                catabolicShares[p] = share(catabolicHormone[k]);
+            }
+        }
+    }
+
+    /**
+     * Replace the levels of the patches of the given rows with their diffused levels.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void gatherShares(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int rows = 1 + (i > 0 ? 1 : 0) + (i < width - 1 ? 1 : 0);
+            int k = i * height;
+            int p = (i + 1) * stride + 1;
+            for (int j = 0; j < height; j++, k++, p++) {
+                int columns = 1 + (j > 0 ? 1 : 0) + (j < height - 1 ? 1 : 0);
+                int neighbours = rows * columns - 1;
+                anabolicHormone[k] = gather(anabolicShares, p, neighbours, anabolicHormone[k]);
+                catabolicHormone[k] = gather(catabolicShares, p, neighbours, catabolicHormone[k]);
+            }
+        }
+    }
+
+    /**
+     * Amount a patch hands to each neighbour, in single precision.
+     *
+     * @param level hormone level of the patch before diffusion
+     * @return amount handed to each neighbour
+     */
+    private static float share(float level) {
+        return level * (float) Configuration.HORMONE_DIFFUSE_RATE / Configuration.MAX_NEIGHBOUR;
+    }
+
+    /**
+     * Apply the shares of the 3x3 block around a padded slot, in row-major order of the
+     * patches handing them out. Halo slots hold zero, which leaves the level unchanged.
+     *
+     * @param shares padded share buffer
+     * @param p padded index of the patch
+     * @param neighbours number of real neighbours of the patch
+     * @param level hormone level of the patch before diffusion
+     * @return hormone level after diffusion
+     */
+    private float gather(float[] shares, int p, int neighbours, float level) {
+        int above = p - stride;
+        int below = p + stride;
+        return level
+            + shares[above - 1] + shares[above] + shares[above + 1]
+            + shares[p - 1] - shares[p] * neighbours + shares[p + 1]
+            + shares[below - 1] + shares[below] + shares[below + 1];
+    }
+
+    @Override
+    public void saveState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        for (int k = 0; k < totalGrid; k++) {
+            anabolic[k] = anabolicHormone[k];
+            catabolic[k] = catabolicHormone[k];
+            fiberSize[k] = this.fiberSize[k];
+            maxSize[k] = this.maxSize[k];
+        }
+    }
+
+    @Override
+    public void loadState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        sumsValid = false;
+        for (int k = 0; k < totalGrid; k++) {
+            anabolicHormone[k] = (float) anabolic[k];
+            catabolicHormone[k] = (float) catabolic[k];
+            this.fiberSize[k] = (float) fiberSize[k];
+            this.maxSize[k] = (byte) maxSize[k];
+        }
+    }
+
+    /**
+     * Sum every field of the state in index order in a single scan, or row by row with
+     * compensation.
+     */
+    private void updateSums() {
+        if (compensatedSums != null) {
+            for (int i = 0; i < width; i++) {
+                sumRow(i);
+            }
+            storeCompensatedTotals();
+            return;
+        }
+
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+        for (int k = 0; k < totalGrid; k++) {
+            anabolicTotal += anabolicHormone[k];
+            catabolicTotal += catabolicHormone[k];
+            massTotal += fiberSize[k];
+        }
+        sumAnabolic = anabolicTotal;
+        sumCatabolic = catabolicTotal;
+        sumMass = massTotal;
+        sumsValid = true;
+    }
+
+    /**
+     * Compensated sums of every field of the state over a row.
+     *
+     * @param i row
+     */
+    private void sumRow(int i) {
+        compensatedSums.clearRow(i);
+        for (int k = i * height; k < (i + 1) * height; k++) {
+            compensatedSums.add(i, CompensatedSums.ANABOLIC, anabolicHormone[k]);
+            compensatedSums.add(i, CompensatedSums.CATABOLIC, catabolicHormone[k]);
+            compensatedSums.add(i, CompensatedSums.MASS, fiberSize[k]);
+        }
+    }
+
+    /**
+     * Merge the compensated sums of the rows into the sums of the state.
+     */
+    private void storeCompensatedTotals() {
+        sumAnabolic = compensatedSums.total(CompensatedSums.ANABOLIC);
+        sumCatabolic = compensatedSums.total(CompensatedSums.CATABOLIC);
+        sumMass = compensatedSums.total(CompensatedSums.MASS);
+        sumsValid = true;
+    }
+
+    @Override
+    public double getAverageAnabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumAnabolic / totalGrid;
+    }
+
+    @Override
+    public double getAverageCatabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumCatabolic / totalGrid;
+    }
+
+    @Override
+    public double getMuscleMass() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumMass / 100;
+    }
+}
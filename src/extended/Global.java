@@ -13,98 +13,56 @@
 
 package extended;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
 
 public class Global {
 
-    private static int tic;                 // indicate iteration step of simulation
-    private static double muscleMass;       // sum of muscle fiber size divided by 100
-    private static double averageAnabolic;  // average anabolic hormone level in muscle
-    private static double averageCatabolic; // average catabolic hormone level in muscle
-    private static Configuration config;    // configuration for simulation
-
-    /**
-     * Set up the simulation to be run.
-     * 
-     * @return muscle object will be inspected.
-     */
-    public static Muscle setUp() {
-        tic = 0;
-    
-        Muscle muscle = new Muscle();
-        muscle.triggerRegulateHormones();
-        
-        muscleMass = muscle.getMuscleMass();
-        averageAnabolic = muscle.getAverageAnabolicHormone();
-        averageCatabolic = muscle.getAverageCatabolicHormone();
-
-        return muscle;
-    }
-
     /**
-     * Run the simulation.
+     * Estimate the heap needed by the grid state of the requested engine and report it
+     * against the maximum heap of the JVM before anything is allocated. The state of the
+     * off-heap engine is reported against the limit of direct memory instead, unless it is
+     * mapped from a file.
      * 
-     * @param muscle the muscle which will be inspected.
+     * @param config configuration for simulation
+     * @param engine name of the state engine: "object", "array", "active", "vector" or "offheap"
+     * @param stateFile file the off-heap engine maps its state from, or null
      */
-    public static void go(Muscle muscle) {
-        muscle.triggerDailyActivity();
+    public static void reportMemory(Configuration config, String engine, Path stateFile) {
+        long required = Simulation.estimateMemory(config, engine);
+        long available = Runtime.getRuntime().maxMemory();
 
-        if (config.isLift() && tic % config.getDaysBetweenWorkouts() == 0) {
-            muscle.triggerLiftWeight();
+        if ("offheap".equals(engine) && !config.isSinglePrecision()) {
+            System.out.printf(
+                "Grid %dx%d for %d tics: about %.1f MiB of state off the heap%s%n",
+                config.getGridWidth(),
+                config.getGridHeight(),
+                config.getMaxTic(),
+                required / 1048576.0,
+                stateFile != null ? ", mapped from " + stateFile : ""
+            );
+            if (stateFile == null && required > OffHeapMuscle.maxDirectMemory()) {
+                System.out.println(
+                    "Warning: the grid is unlikely to fit in direct memory, "
+                        + "raise -XX:MaxDirectMemorySize or give a --stateFile"
+                );
+            }
+            return;
         }
 
-        muscle.triggerEat();
-        muscle.triggerSleep();
-        muscle.triggerRegulateHormones();
-        muscle.triggerDevelopMuscle();
-
-        muscleMass = muscle.getMuscleMass();
-        averageAnabolic = muscle.getAverageAnabolicHormone();
-        averageCatabolic = muscle.getAverageCatabolicHormone();
-    }
-
-    /**
-     * Create singleton insatnce of Configuration
-     * 
-     * @param intensity intensity of workout
-     * @param sleepHours hours of sleep between day
-     * @param workoutInterval number of days between workout
-     * @param slowTwitchFiberPercentage percentage of slow twitch fibers in muscle
-     * @param lift indicate whether a subject do workout or not
-     * @param nutritionQuality quality of nutrition
-     */
-    public static void loadConfig(
-        int intensity,
-        double hoursOfSleep,
-        int daysBwWorkouts,
-        int slowTwitchFibersPercentage,
-        boolean lift,
-        double nutritionQuality
-    ) {
-        config = Configuration.getInstance(
-            intensity,
-            hoursOfSleep,
-            daysBwWorkouts,
-            slowTwitchFibersPercentage,
-            lift,
-            nutritionQuality
-        );
-    }
-
-    /**
-     * Format the current tic, muscleMass, average anabolic and catabolic into String to
-     * save it into CSV.
-     * 
-     * @return formatted string with tic, muscleMass, averageAnabolic, averageCatabolic
-     */
-    public static String formatCurrentStatus() {
-        return String.format(
-            "%d, %f, %f, %f\n",
-            tic, muscleMass,
-            averageAnabolic,
-            averageCatabolic
+        System.out.printf(
+            "Grid %dx%d for %d tics: about %.1f MiB of state, %.1f MiB max heap%n",
+            config.getGridWidth(),
+            config.getGridHeight(),
+            config.getMaxTic(),
+            required / 1048576.0,
+            available / 1048576.0
         );
+        if (required > available) {
+            System.out.println("Warning: the grid is unlikely to fit in the heap, raise -Xmx");
+        }
     }
 
     /**
@@ -120,6 +78,44 @@ public class Global {
      *  --slowTwitchFibersPercentage=[percentage]  Slow twitch fibers % in muscle as an integer
      *  --lift=[true|false]                        Indicates whether a subject do lift or not
      *  --nutritionQuality=[nutritionQuality]      Quality of nutrition as double
+     *  --engine=[object|array|active|vector|offheap]
+     *                                             State engine, defaults to object
+     *  --stateFile=[filePath]                     File the offheap engine maps its state
+     *                                             from, created anew and refused if it
+     *                                             exists, direct memory if not given
+     *  --gridWidth=[width]                        Width of grid, defaults to 17
+     *  --gridHeight=[height]                      Height of grid, defaults to 17
+     *  --maxTic=[tics]                            Number of tics to simulate, defaults to 3000
+     *  --threads=[threads]                        Threads running each phase, defaults to 1
+     *  --seed=[seed]                              Seed of all random draws, random if not given
+     *  --fastMath=[true|false]                    Approximate log10 with a table, defaults to false
+     *  --accuracyReport=[true|false]              Compare fast math against exact log10 after
+     *                                             the run, defaults to false
+     *  --compensatedSums=[true|false]             Sum the metrics with compensation per row,
+     *                                             defaults to false
+     *  --precision=[double|float]                 Precision the hormones and fiber sizes
+     *                                             are stored in, defaults to double
+     *  --precisionReport=[true|false]             Compare float against double state after
+     *                                             the run, defaults to false
+     *  --convergenceWindow=[tics]                 End the run once the means of the metrics
+     *                                             over the last two windows of this many
+     *                                             tics agree, defaults to 0 which never
+     *                                             ends early
+     *  --convergenceTolerance=[tolerance]         Largest change of the mean of a converged
+     *                                             metric, defaults to 1e-6
+     *  --fastForward=[true|false]                 Save the remaining tics of a converged run
+     *                                             from its steady state, defaults to false
+     *  --liftSampling=[bernoulli|geometric]       Draw each patch of a lift or skip between
+     *                                             the lifted patches by geometric gaps,
+     *                                             defaults to bernoulli
+     *  --sproutSampling=[bernoulli|binomial]      Sprout each fiber from 20 draws or from a
+     *                                             single binomial draw, defaults to bernoulli
+     *  --checkpoint=[filePath]                    File the state is checkpointed to, no
+     *                                             checkpoints if not given
+     *  --checkpointEvery=[tics]                   Tics between checkpoints, defaults to 100
+     *  --resume=[filePath]                        Continue from a checkpoint with its
+     *                                             configuration and engine, appending to
+     *                                             the output file
      *
      * @param args the command line arguments used to configure the simulation parameters.
      */
@@ -132,6 +128,26 @@ public class Global {
         Integer slowTwitchFibersPercentage = null;
         Boolean lift = null;
         Double nutritionQuality = null;
+        String engine = null;
+        int gridWidth = Configuration.DEFAULT_GRID_WIDTH;
+        int gridHeight = Configuration.DEFAULT_GRID_HEIGHT;
+        int maxTic = Configuration.DEFAULT_MAX_TIC;
+        int threads = 1;
+        long seed = CounterRandom.newSeed();
+        boolean fastMath = false;
+        boolean accuracyReport = false;
+        boolean compensatedSums = false;
+        String precision = "double";
+        boolean precisionReport = false;
+        int convergenceWindow = 0;
+        double convergenceTolerance = Configuration.DEFAULT_CONVERGENCE_TOLERANCE;
+        boolean fastForward = false;
+        String liftSampling = "bernoulli";
+        String sproutSampling = "bernoulli";
+        Path stateFile = null;
+        Path checkpointPath = null;
+        int checkpointEvery = CheckpointWriter.DEFAULT_INTERVAL;
+        Path resumePath = null;
 
         // parse command line arguments.
         for (String arg : args) {
@@ -149,43 +165,151 @@ public class Global {
                 lift = Boolean.parseBoolean(arg.split("=")[1]);
             } else if (arg.startsWith("--nutritionQuality=")) {
                 nutritionQuality = Double.parseDouble(arg.split("=")[1]);
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.split("=")[1];
+            } else if (arg.startsWith("--gridWidth=")) {
+                gridWidth = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--gridHeight=")) {
+                gridHeight = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--maxTic=")) {
+                maxTic = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.split("=")[1]);
+            } else if (arg.startsWith("--fastMath=")) {
+                fastMath = Boolean.parseBoolean(arg.split("=")[1]);
+            } else if (arg.startsWith("--accuracyReport=")) {
+                accuracyReport = Boolean.parseBoolean(arg.split("=")[1]);
+            } else if (arg.startsWith("--compensatedSums=")) {
+                compensatedSums = Boolean.parseBoolean(arg.split("=")[1]);
+            } else if (arg.startsWith("--precision=")) {
+                precision = arg.split("=")[1];
+            } else if (arg.startsWith("--precisionReport=")) {
+                precisionReport = Boolean.parseBoolean(arg.split("=")[1]);
+            } else if (arg.startsWith("--convergenceWindow=")) {
+                convergenceWindow = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--convergenceTolerance=")) {
+                convergenceTolerance = Double.parseDouble(arg.split("=")[1]);
+            } else if (arg.startsWith("--fastForward=")) {
+                fastForward = Boolean.parseBoolean(arg.split("=")[1]);
+            } else if (arg.startsWith("--liftSampling=")) {
+                liftSampling = arg.split("=")[1];
+            } else if (arg.startsWith("--sproutSampling=")) {
+                sproutSampling = arg.split("=")[1];
+            } else if (arg.startsWith("--stateFile=")) {
+                stateFile = Paths.get(arg.split("=")[1]);
+            } else if (arg.startsWith("--checkpoint=")) {
+                checkpointPath = Paths.get(arg.split("=")[1]);
+            } else if (arg.startsWith("--checkpointEvery=")) {
+                checkpointEvery = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--resume=")) {
+                resumePath = Paths.get(arg.split("=")[1]);
             }
         }
 
-        // create Configuration with parameters obtained from CLI.
-        loadConfig(
-            intensity,
-            hoursOfSleep,
-            daysBwWorkouts, 
-            slowTwitchFibersPercentage,
-            lift,
-            nutritionQuality
-        );
+        if (!precision.equals("double") && !precision.equals("float")) {
+            throw new IllegalArgumentException("Unknown precision: " + precision);
+        }
+        if (!liftSampling.equals("bernoulli") && !liftSampling.equals("geometric")) {
+            throw new IllegalArgumentException("Unknown lift sampling: " + liftSampling);
+        }
+        if (!sproutSampling.equals("bernoulli") && !sproutSampling.equals("binomial")) {
+            throw new IllegalArgumentException("Unknown sprout sampling: " + sproutSampling);
+        }
+
+        // a resumed run takes its configuration and engine from the checkpoint
+        Checkpoint checkpoint = null;
+        if (resumePath != null) {
+            try {
+                checkpoint = Checkpoint.read(resumePath);
+            } catch (IOException e) {
+                System.out.println("Cannot resume from " + resumePath + ": " + e.getMessage());
+                return;
+            }
+            engine = checkpoint.getEngine();
+            System.out.println("Resuming from tic " + checkpoint.getTic());
+        }
 
-        // set up the simulation
-        Muscle muscle = setUp();
+        // create Configuration with parameters obtained from CLI.
+        Configuration config;
+        if (checkpoint != null) {
+            config = checkpoint.getConfiguration();
+        } else {
+            config = new Configuration(
+                intensity,
+                hoursOfSleep,
+                daysBwWorkouts, 
+                slowTwitchFibersPercentage,
+                lift,
+                nutritionQuality,
+                gridWidth,
+                gridHeight,
+                maxTic,
+                seed
+            )
+                .withFastMath(fastMath)
+                .withCompensatedSums(compensatedSums)
+                .withSinglePrecision(precision.equals("float"))
+                .withConvergence(convergenceWindow, convergenceTolerance, fastForward)
+                .withGeometricLift(liftSampling.equals("geometric"))
+                .withBinomialSprout(sproutSampling.equals("binomial"));
+        }
+        System.out.println("Seed: " + config.getSeed());
+        reportMemory(config, engine, stateFile);
 
-        try {
-            // prepare writer to save results for each stage.
-            FileWriter writer = new FileWriter(path);
-            writer.append(config.formatConfiguration());
-            writer.append("Tic, MuscleMass, Anabolic, Catabolic\n");
-            writer.append(formatCurrentStatus());
+        // set up the simulation, timed apart from running it
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        long setupStart = System.nanoTime();
+        Simulation simulation = checkpoint != null
+            ? new Simulation(checkpoint, pool, stateFile)
+            : new Simulation(config, engine, pool, stateFile);
+        long setupNanos = System.nanoTime() - setupStart;
 
+        // prepare sink to save results for each stage, closed even if the simulation fails.
+        // A resumed run appends to the CSV from the end of the checkpointed tic.
+        try (
+            CsvSink sink = checkpoint != null
+                ? new CsvSink(path, checkpoint.getCsvLength())
+                : new CsvSink(path);
+            CheckpointWriter writer = checkpointPath != null
+                ? new CheckpointWriter(checkpointPath, checkpointEvery, config, engine)
+                : null
+        ) {
             // Run the simulation
-            while (tic < Configuration.MAX_TIC) {
-                go(muscle);
-                tic++;
-                
-                // save the current status to output file
-                writer.append(formatCurrentStatus());
+            long runStart = System.nanoTime();
+            if (checkpoint != null) {
+                simulation.resume(sink, writer);
+            } else {
+                simulation.run(sink, writer);
+            }
+            long runNanos = System.nanoTime() - runStart;
+            if (simulation.hasConverged()) {
+                System.out.println("Converged at tic " + simulation.getConvergenceTic());
             }
+            System.out.printf(
+                "Setup took %.3f s, simulation %.3f s%n",
+                setupNanos / 1e9,
+                runNanos / 1e9
+            );
 
-            writer.close();
+            // rerun both ways with the same seed to report the drift of fast math
+            if (accuracyReport) {
+                new FastMathReport(config, engine, pool).print();
+            }
+
+            // rerun in both precisions with the same seed to report the drift of float state
+            if (precisionReport) {
+                new PrecisionReport(config, engine, pool).print();
+            }
         
         } catch(IOException e) {
-            System.out.println("IO Exception occured during creating/saving/closing FileWriter");
+            System.out.println("IO Exception occured during creating/saving/closing CsvSink");
             e.getStackTrace();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
         }
     }
 }
\ No newline at end of file
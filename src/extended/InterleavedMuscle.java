@@ -0,0 +1,552 @@
+/**
+ * Muscles of several simulations interleaved in the same primitive arrays.
+ *
+ * A small grid gives a phase too few patches to keep the vector units and the caches busy,
+ * and running thousands of small simulations one by one spends much of the time on the
+ * overhead of each. This engine keeps the state of K simulations of the same grid size, its
+ * lanes, patch-major and lane-minor: lane l of patch (i, j) lives at index
+ * (i * height + j) * K + l. Every phase runs over the lanes of a patch in its innermost loop,
+ * so the loop walks contiguous memory with the same arithmetic in every iteration, which the
+ * JIT compiles to SIMD instructions where the phase has no logarithm or random draw.
+ *
+ * Each lane has its own configuration: seed, intensity, sleep, nutrition, fast math and
+ * sampling may differ, only the grid size is shared. Every lane performs exactly the same
+ * arithmetic in the same order as {@link ArrayMuscle} with its configuration, so its
+ * metrics are bit-identical to those of a simulation of its own. Single precision state
+ * and compensated sums are only offered by the engines of a single simulation.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class InterleavedMuscle {
+
+    private Configuration[] configs; // configuration of each lane
+    private int lanes;               // number of simulations interleaved
+    private int liftTic;             // tic of the lift being performed
+    private boolean[] liftToday;     // whether each lane lifts weight in the current tic
+    private boolean anyLift;         // whether any lane lifts weight in the current tic
+
+    // run constants of the configuration of each lane, indexed by lane
+    private long[] seed;
+    private boolean[] fastMath;
+    private boolean uniformMath;  // whether every lane agrees on fast math
+    private double[] liftThreshold;
+    private double[] nutritionDelta;
+    private double[] hoursOfSleep;
+    private LiftSampler[] samplers; // samples lifted patches by geometric gaps, null if per patch
+    private int[] lifted;           // patches a sampler selected, row by row
+
+    private int width;      // number of rows of the grid
+    private int height;     // number of patches in each row
+    private int totalGrid;  // number of patches in the grid
+    private int stride;     // number of slots in each row of the padded share buffers
+
+    // state of the patches, indexed by (i * height + j) * lanes + l
+    private double[] anabolicHormone;
+    private double[] catabolicHormone;
+    private double[] fiberSize;
+    private int[] maxSize;
+
+    // shares handed out to each neighbour, indexed by ((i + 1) * stride + (j + 1)) * lanes + l
+    private double[] anabolicShares;
+    private double[] catabolicShares;
+    private int[] neighbourCount; // number of real neighbours, indexed by i * height + j
+
+    private RowStripes stripes; // runs the phases over stripes of rows
+
+    // phases bound once so that running them does not allocate
+    private RowStripes.RowTask hormonePassTask = this::hormonePass;
+    private RowStripes.RowTask developPassTask = this::developPass;
+    private RowStripes.RowTask storeSharesTask = this::storeShares;
+    private RowStripes.RowTask regulateTask = this::regulate;
+
+    // sums of the state of each lane, only up to date while sumsValid is set
+    private boolean sumsValid;
+    private double[] sumAnabolic;
+    private double[] sumCatabolic;
+    private double[] sumMass;
+
+    /**
+     * Constructor for InterleavedMuscle allocating and initialising the lanes of the given
+     * configurations.
+     *
+     * @param configs configuration of each lane, all with the same grid size
+     * @param pool pool running the phases over row stripes, or null to run sequentially
+     */
+    public InterleavedMuscle(Configuration[] configs, ForkJoinPool pool) {
+        this.configs = configs.clone();
+        this.lanes = configs.length;
+        this.width = configs[0].getGridWidth();
+        this.height = configs[0].getGridHeight();
+        this.totalGrid = width * height;
+        this.stride = height + 2;
+
+        this.liftToday = new boolean[lanes];
+        this.seed = new long[lanes];
+        this.fastMath = new boolean[lanes];
+        this.liftThreshold = new double[lanes];
+        this.nutritionDelta = new double[lanes];
+        this.hoursOfSleep = new double[lanes];
+        this.samplers = new LiftSampler[lanes];
+        for (int l = 0; l < lanes; l++) {
+            Configuration config = configs[l];
+            if (config.getGridWidth() != width || config.getGridHeight() != height) {
+                throw new IllegalArgumentException("Lanes must share the grid size");
+            }
+            if (config.isSinglePrecision() || config.isCompensatedSums()) {
+                throw new IllegalArgumentException(
+                    "Lanes support neither single precision nor compensated sums"
+                );
+            }
+            seed[l] = config.getSeed();
+            fastMath[l] = config.isFastMath();
+            liftThreshold[l] = config.getLiftThreshold();
+            nutritionDelta[l] = config.getNutritionDelta();
+            hoursOfSleep[l] = config.getHourseOfSleep();
+            if (config.isGeometricLift()) {
+                samplers[l] = new LiftSampler(config);
+                lifted = new int[totalGrid];
+            }
+        }
+
+        this.anabolicHormone = new double[totalGrid * lanes];
+        this.catabolicHormone = new double[totalGrid * lanes];
+        this.fiberSize = new double[totalGrid * lanes];
+        this.maxSize = new int[totalGrid * lanes];
+        this.anabolicShares = new double[(width + 2) * stride * lanes];
+        this.catabolicShares = new double[(width + 2) * stride * lanes];
+        this.neighbourCount = new int[totalGrid];
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                int rows = 1 + (i > 0 ? 1 : 0) + (i < width - 1 ? 1 : 0);
+                int cols = 1 + (j > 0 ? 1 : 0) + (j < height - 1 ? 1 : 0);
+                neighbourCount[i * height + j] = rows * cols - 1;
+            }
+        }
+        this.sumAnabolic = new double[lanes];
+        this.sumCatabolic = new double[lanes];
+        this.sumMass = new double[lanes];
+        this.uniformMath = true;
+        for (int l = 1; l < lanes; l++) {
+            uniformMath &= fastMath[l] == fastMath[0];
+        }
+        this.stripes = new RowStripes(pool, width);
+        stripes.forEach(this::initialiseRows);
+    }
+
+    /**
+     * Initialise hormones and muscle fiber of every lane of the patches of the given rows,
+     * with the same draws as a simulation of each lane on its own.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void initialiseRows(int fromRow, int toRow) {
+        for (int k = fromRow * height; k < toRow * height; k++) {
+            for (int l = 0; l < lanes; l++) {
+                int q = k * lanes + l;
+                maxSize[q] = FiberSprout.sprout(configs[l], k);
+                fiberSize[q] = FiberSprout.initialSize(seed[l], k, maxSize[q]);
+                regulateMuscleFiber(q);
+                anabolicHormone[q] = Configuration.ANABOLIC_HORMONE_MIN;
+                catabolicHormone[q] = Configuration.CATABOLIC_HORMONE_MIN;
+            }
+        }
+    }
+
+    /**
+     * Run a whole tic of every lane in two passes over the grid, split around the diffusion
+     * like {@link ArrayMuscle#triggerTic}.
+     *
+     * @param tic current tic, which keys the random draws of the lift
+     * @param lift whether each lane lifts weight in this tic
+     */
+    public void triggerTic(int tic, boolean[] lift) {
+        liftTic = tic;
+        anyLift = false;
+        for (int l = 0; l < lanes; l++) {
+            liftToday[l] = lift[l];
+            anyLift |= lift[l];
+        }
+        sumsValid = false;
+        stripes.forEach(hormonePassTask);
+        stripes.forEach(developPassTask);
+    }
+
+    /**
+     * Diffuse the hormones of every lane and clamp them to their limits, as the setup of a
+     * simulation does before its first metrics.
+     */
+    public void triggerRegulateHormones() {
+        sumsValid = false;
+        stripes.forEach(storeSharesTask);
+        stripes.forEach(regulateTask);
+    }
+
+    /**
+     * Daily activity, lifting weight, eating and sleeping applied row by row, followed by
+     * storing the shares the row hands out.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void hormonePass(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int from = i * height * lanes;
+            int to = from + height * lanes;
+            performDailyActivity(from, to);
+            if (anyLift) {
+                liftWeight(i);
+            }
+            eat(from, to);
+            sleep(from, to);
+            storeShares(i, i + 1);
+        }
+    }
+
+    /**
+     * Diffusion, hormone regulation and muscle development applied row by row. A pass over
+     * the whole grid also sums the state of every lane in patch order, so the metrics need
+     * no further scan; stripes of a parallel run leave that to the getters.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developPass(int fromRow, int toRow) {
+        boolean whole = fromRow == 0 && toRow == width;
+        if (whole) {
+            for (int l = 0; l < lanes; l++) {
+                sumAnabolic[l] = 0;
+                sumCatabolic[l] = 0;
+                sumMass[l] = 0;
+            }
+        }
+
+        for (int i = fromRow; i < toRow; i++) {
+            int from = i * height * lanes;
+            int to = from + height * lanes;
+            gatherShares(i);
+            regulateHormones(from, to);
+            developMuscle(from, to);
+            if (whole) {
+                sumRange(from, to);
+            }
+        }
+        if (whole) {
+            sumsValid = true;
+        }
+    }
+
+    /**
+     * Diffusion and hormone regulation of the given rows, once every row stored its shares.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void regulate(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            gatherShares(i);
+            regulateHormones(i * height * lanes, (i + 1) * height * lanes);
+        }
+    }
+
+    /**
+     * Hormonal effect of daily activity on a range of interleaved indices.
+     *
+     * @param from first index
+     * @param to index after the last
+     */
+    private void performDailyActivity(int from, int to) {
+        for (int k = from; k < to; k += lanes) {
+            for (int l = 0; l < lanes; l++) {
+                double fiber = log10(l, fiberSize[k + l]);
+                anabolicHormone[k + l] += fiber * 2.5;
+                catabolicHormone[k + l] += fiber * 2.0;
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of lifting weight on the lanes lifting in the current tic, for the
+     * patches of a row.
+     *
+     * @param i row
+     */
+    private void liftWeight(int i) {
+        for (int l = 0; l < lanes; l++) {
+            if (!liftToday[l]) {
+                continue;
+            }
+            if (samplers[l] != null) {
+                int count = samplers[l].sample(liftTic, i, lifted);
+                for (int n = i * height; n < i * height + count; n++) {
+                    lift(lifted[n] * lanes + l);
+                }
+                continue;
+            }
+            double threshold = liftThreshold[l];
+            for (int k = i * height; k < (i + 1) * height; k++) {
+                if (CounterRandom.uniform(seed[l], liftTic, k, 0) < threshold) {
+                    lift(k * lanes + l);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of lifting weight on a lane of a patch.
+     *
+     * @param q interleaved index
+     */
+    private void lift(int q) {
+        double fiber = log10(q % lanes, fiberSize[q]);
+        anabolicHormone[q] += fiber * 55;
+        catabolicHormone[q] += fiber * 44;
+    }
+
+    /**
+     * Hormonal effect of quality of nutrition intake on a range of interleaved indices. A
+     * lane of neutral nutrition adds zero, which leaves its levels unchanged.
+     *
+     * @param from first index
+     * @param to index after the last
+     */
+    private void eat(int from, int to) {
+        for (int k = from; k < to; k += lanes) {
+            for (int l = 0; l < lanes; l++) {
+                anabolicHormone[k + l] += anabolicHormone[k + l] * nutritionDelta[l];
+                catabolicHormone[k + l] -= catabolicHormone[k + l] * nutritionDelta[l];
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of sleeping on a range of interleaved indices.
+     *
+     * @param from first index
+     * @param to index after the last
+     */
+    private void sleep(int from, int to) {
+        for (int k = from; k < to; k += lanes) {
+            for (int l = 0; l < lanes; l++) {
+                double hours = hoursOfSleep[l];
+                anabolicHormone[k + l] -= 0.48 * log10(l, anabolicHormone[k + l]) * hours;
+                catabolicHormone[k + l] -= 0.5 * log10(l, catabolicHormone[k + l]) * hours;
+            }
+        }
+    }
+
+    /**
+     * Clamp the hormone levels of a range of interleaved indices to their limits.
+     *
+     * @param from first index
+     * @param to index after the last
+     */
+    private void regulateHormones(int from, int to) {
+        for (int q = from; q < to; q++) {
+            double anabolic = anabolicHormone[q];
+            double catabolic = catabolicHormone[q];
+            anabolic = Math.min(anabolic, Configuration.ANABOLIC_HORMONE_MAX);
+            anabolic = Math.max(anabolic, Configuration.ANABOLIC_HORMONE_MIN);
+            catabolic = Math.min(catabolic, Configuration.CATABOLIC_HORMONE_MAX);
+            catabolic = Math.max(catabolic, Configuration.CATABOLIC_HORMONE_MIN);
+            anabolicHormone[q] = anabolic;
+            catabolicHormone[q] = catabolic;
+        }
+    }
+
+    /**
+     * Grow and regulate the muscle fibers of a range of interleaved indices.
+     *
+     * @param from first index
+     * @param to index after the last
+     */
+    private void developMuscle(int from, int to) {
+        for (int k = from; k < to; k += lanes) {
+            for (int l = 0; l < lanes; l++) {
+                int q = k + l;
+                double catabolic = log10(l, catabolicHormone[q]);
+                fiberSize[q] -= 0.2 * catabolic;
+                fiberSize[q] += 0.2 * Math.min(log10(l, anabolicHormone[q]), 1.05 * catabolic);
+                regulateMuscleFiber(q);
+            }
+        }
+    }
+
+    /**
+     * Ensures that the size of the muscle fiber at given interleaved index does not exceed
+     * its maximum or fall below 1.
+     *
+     * @param q interleaved index
+     */
+    private void regulateMuscleFiber(int q) {
+        if (fiberSize[q] < 1) {
+            fiberSize[q] = 1;
+        }
+        if (fiberSize[q] > maxSize[q]) {
+            fiberSize[q] = maxSize[q];
+        }
+    }
+
+    /**
+     * Base 10 logarithm, approximated when the configuration of the lane asks for fast math.
+     * When the lanes agree the choice does not depend on the lane, which lets the JIT hoist
+     * it out of the loops.
+     *
+     * @param l lane
+     * @param x argument
+     * @return log10 of x
+     */
+    private double log10(int l, double x) {
+        boolean fast = uniformMath ? fastMath[0] : fastMath[l];
+        return fast ? FastLog10.log10(x) : Math.log10(x);
+    }
+
+    /**
+     * Store the shares handed out by every lane of the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void storeShares(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int q = i * height * lanes;
+            int p = ((i + 1) * stride + 1) * lanes;
+            for (int n = 0; n < height * lanes; n++) {
+                anabolicShares[p + n] = DiffusionStencil.share(anabolicHormone[q + n]);
+                catabolicShares[p + n] = DiffusionStencil.share(catabolicHormone[q + n]);
+            }
+        }
+    }
+
+    /**
+     * Replace the levels of every lane of the patches of a row with their diffused levels,
+     * gathering the shares in the same order as {@link DiffusionStencil}.
+     *
+     * @param i row
+     */
+    private void gatherShares(int i) {
+        int rowSlots = stride * lanes;
+        for (int j = 0; j < height; j++) {
+            int neighbours = neighbourCount[i * height + j];
+            int q = (i * height + j) * lanes;
+            int p = ((i + 1) * stride + (j + 1)) * lanes;
+            gather(anabolicHormone, anabolicShares, q, p, rowSlots, neighbours);
+            gather(catabolicHormone, catabolicShares, q, p, rowSlots, neighbours);
+        }
+    }
+
+    /**
+     * Apply the shares of the 3x3 block around a padded slot to every lane of a patch, in
+     * row-major order of the patches handing them out.
+     *
+     * @param levels hormone levels, updated in place
+     * @param shares padded share buffer
+     * @param q interleaved index of the first lane of the patch
+     * @param p padded index of the first lane of the patch
+     * @param rowSlots distance between two rows of the padded buffer
+     * @param neighbours number of real neighbours of the patch
+     */
+    private void gather(
+        double[] levels,
+        double[] shares,
+        int q,
+        int p,
+        int rowSlots,
+        int neighbours
+    ) {
+        int above = p - rowSlots;
+        int below = p + rowSlots;
+        for (int l = 0; l < lanes; l++) {
+            levels[q + l] = levels[q + l]
+                + shares[above - lanes + l] + shares[above + l] + shares[above + lanes + l]
+                + shares[p - lanes + l] - shares[p + l] * neighbours + shares[p + lanes + l]
+                + shares[below - lanes + l] + shares[below + l] + shares[below + lanes + l];
+        }
+    }
+
+    /**
+     * Add a range of interleaved indices to the sums of their lanes.
+     *
+     * @param from first index
+     * @param to index after the last
+     */
+    private void sumRange(int from, int to) {
+        for (int k = from; k < to; k += lanes) {
+            for (int l = 0; l < lanes; l++) {
+                sumAnabolic[l] += anabolicHormone[k + l];
+                sumCatabolic[l] += catabolicHormone[k + l];
+                sumMass[l] += fiberSize[k + l];
+            }
+        }
+    }
+
+    /**
+     * Sum every field of the state of every lane in patch order in a single scan.
+     */
+    private void updateSums() {
+        for (int l = 0; l < lanes; l++) {
+            sumAnabolic[l] = 0;
+            sumCatabolic[l] = 0;
+            sumMass[l] = 0;
+        }
+        sumRange(0, totalGrid * lanes);
+        sumsValid = true;
+    }
+
+    /**
+     * Getter method for the number of lanes
+     *
+     * @return number of simulations interleaved
+     */
+    public int getLanes() {
+        return this.lanes;
+    }
+
+    /**
+     * Calculate average anabolic hormone level of a lane
+     *
+     * @param l lane
+     * @return current average anabolic hormone level of its patches
+     */
+    public double getAverageAnabolicHormone(int l) {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumAnabolic[l] / totalGrid;
+    }
+
+    /**
+     * Calculate average catabolic hormone level of a lane
+     *
+     * @param l lane
+     * @return current average catabolic hormone level of its patches
+     */
+    public double getAverageCatabolicHormone(int l) {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumCatabolic[l] / totalGrid;
+    }
+
+    /**
+     * Calculate total size of muscle fibers of a lane
+     *
+     * @param l lane
+     * @return total size of its muscle fibers divided by 100
+     */
+    public double getMuscleMass(int l) {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumMass[l] / 100;
+    }
+}
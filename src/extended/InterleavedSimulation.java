@@ -0,0 +1,230 @@
+/**
+ * Several runs of the muscle development model advanced together on an InterleavedMuscle.
+ *
+ * Every lane follows its own configuration, lift schedule and convergence detector and
+ * gives the same metrics and the same CSV as a {@link Simulation} of that configuration.
+ * The lanes share the tic counter, so a lane that finished early keeps being advanced with
+ * the others but no longer reports.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+public class InterleavedSimulation {
+
+    private Configuration[] configs;  // configuration of each lane
+    private InterleavedMuscle muscle; // muscles of every lane
+    private int tic;                  // iteration step shared by every lane
+    private boolean[] lift;           // whether each lane lifts weight in the next tic
+
+    // metrics of the current tic, indexed by lane
+    private double[] muscleMass;
+    private double[] averageAnabolic;
+    private double[] averageCatabolic;
+    private ConvergenceDetector[] detectors; // detector of each lane, null if it never ends early
+
+    /**
+     * Set up the lanes to be run.
+     *
+     * @param configs configuration of each lane, all with the same grid size
+     * @param pool pool running each phase over row stripes, or null to run sequentially. The
+     *             pool may be shared and is not shut down by the simulation.
+     */
+    public InterleavedSimulation(Configuration[] configs, ForkJoinPool pool) {
+        int lanes = configs.length;
+        this.configs = configs.clone();
+        this.tic = 0;
+        this.lift = new boolean[lanes];
+        this.muscleMass = new double[lanes];
+        this.averageAnabolic = new double[lanes];
+        this.averageCatabolic = new double[lanes];
+        this.detectors = new ConvergenceDetector[lanes];
+        for (int l = 0; l < lanes; l++) {
+            if (configs[l].getConvergenceWindow() > 0) {
+                detectors[l] = new ConvergenceDetector(configs[l]);
+            }
+        }
+        this.muscle = new InterleavedMuscle(configs, pool);
+        muscle.triggerRegulateHormones();
+        updateMetrics();
+    }
+
+    /**
+     * Run one tic of every lane and advance the tic counter.
+     */
+    public void go() {
+        for (int l = 0; l < configs.length; l++) {
+            lift[l] = configs[l].isLift() && tic % configs[l].getDaysBetweenWorkouts() == 0;
+        }
+        muscle.triggerTic(tic, lift);
+
+        tic++;
+        updateMetrics();
+    }
+
+    /**
+     * Run every lane until it reached its upper bound for tic or converged, saving its
+     * configuration and the status of its tics to its own sink, in the same form as
+     * {@link Simulation#run}.
+     *
+     * @param sinks sink of each lane
+     * @throws IOException if writing fails
+     */
+    public void run(CsvSink[] sinks) throws IOException {
+        for (int l = 0; l < configs.length; l++) {
+            sinks[l].writeConfiguration(configs[l]);
+            sinks[l].writeStatusHeader();
+            sinks[l].writeStatus(tic, muscleMass[l], averageAnabolic[l], averageCatabolic[l]);
+        }
+
+        while (!isFinished()) {
+            int previous = tic;
+            go();
+            for (int l = 0; l < configs.length; l++) {
+                if (previous < configs[l].getMaxTic() && !hasConverged(l, previous)) {
+                    sinks[l].writeStatus(
+                        tic,
+                        muscleMass[l],
+                        averageAnabolic[l],
+                        averageCatabolic[l]
+                    );
+                }
+            }
+        }
+
+        for (int l = 0; l < configs.length; l++) {
+            if (!hasConverged(l)) {
+                continue;
+            }
+            ConvergenceDetector detector = detectors[l];
+            if (configs[l].isFastForward()) {
+                for (int next = detector.getConvergenceTic() + 1;
+                    next <= configs[l].getMaxTic(); next++) {
+                    sinks[l].writeStatus(
+                        next,
+                        detector.getMuscleMass(next),
+                        detector.getAverageAnabolic(next),
+                        detector.getAverageCatabolic(next)
+                    );
+                }
+            }
+            sinks[l].writeConvergence(detector.getConvergenceTic());
+        }
+    }
+
+    /**
+     * Whether every lane reached its upper bound for tic or converged.
+     *
+     * @return true if no lane has a tic left to run
+     */
+    public boolean isFinished() {
+        for (int l = 0; l < configs.length; l++) {
+            if (!isFinished(l)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a lane reached its upper bound for tic or converged.
+     *
+     * @param l lane
+     * @return true if the lane has no tic left to run
+     */
+    public boolean isFinished(int l) {
+        return tic >= configs[l].getMaxTic() || hasConverged(l);
+    }
+
+    /**
+     * Whether a lane reached its steady state.
+     *
+     * @param l lane
+     * @return true if the lane converged
+     */
+    public boolean hasConverged(int l) {
+        return detectors[l] != null && detectors[l].getConvergenceTic() >= 0;
+    }
+
+    /**
+     * Whether a lane had reached its steady state by a tic.
+     *
+     * @param l lane
+     * @param at tic
+     * @return true if the lane converged at or before the tic
+     */
+    private boolean hasConverged(int l, int at) {
+        return hasConverged(l) && detectors[l].getConvergenceTic() <= at;
+    }
+
+    /**
+     * Read the metrics of the current tic of every lane and hand them to the detectors of
+     * the lanes that did not reach their upper bound for tic.
+     */
+    private void updateMetrics() {
+        for (int l = 0; l < configs.length; l++) {
+            muscleMass[l] = muscle.getMuscleMass(l);
+            averageAnabolic[l] = muscle.getAverageAnabolicHormone(l);
+            averageCatabolic[l] = muscle.getAverageCatabolicHormone(l);
+            if (detectors[l] != null && tic <= configs[l].getMaxTic()) {
+                detectors[l].observe(tic, muscleMass[l], averageAnabolic[l], averageCatabolic[l]);
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of lanes
+     *
+     * @return number of runs advanced together
+     */
+    public int getLanes() {
+        return configs.length;
+    }
+
+    /**
+     * Getter method for tic
+     *
+     * @return number of tics run so far
+     */
+    public int getTic() {
+        return this.tic;
+    }
+
+    /**
+     * Getter method for muscle mass of a lane
+     *
+     * @param l lane
+     * @return sum of muscle fiber size divided by 100 at current tic
+     */
+    public double getMuscleMass(int l) {
+        return this.muscleMass[l];
+    }
+
+    /**
+     * Getter method for average anabolic hormone of a lane
+     *
+     * @param l lane
+     * @return average anabolic hormone level at current tic
+     */
+    public double getAverageAnabolic(int l) {
+        return this.averageAnabolic[l];
+    }
+
+    /**
+     * Getter method for average catabolic hormone of a lane
+     *
+     * @param l lane
+     * @return average catabolic hormone level at current tic
+     */
+    public double getAverageCatabolic(int l) {
+        return this.averageCatabolic[l];
+    }
+}
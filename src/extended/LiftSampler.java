@@ -0,0 +1,157 @@
+/**
+ * Geometric skip sampling of the patches a lift affects.
+ *
+ * Each patch of a lifted grid is affected independently with the lift threshold as
+ * probability, so within a row the number of patches passed over before the next affected
+ * one follows a geometric distribution. Drawing those gaps instead of one uniform per patch
+ * visits only the affected patches, and the random draws scale with the number of hits
+ * rather than the size of the grid. Above a probability of one half the gaps between the
+ * patches left out are drawn instead, as those are the fewer.
+ *
+ * A gap is the inverse of the geometric distribution function at a uniform draw. The
+ * distribution function is tabulated once per configuration together with a guide table
+ * pointing each interval of the draw at its smallest gap, so inverting a draw takes a lookup
+ * and on average about one comparison. Only draws beyond the tabulated gaps take the
+ * logarithm.
+ *
+ * Sampling starts afresh at each row. The n-th gap of row i is drawn from CounterRandom with
+ * index -1 - i and draw number n, which no patch uses, so the result only depends on the seed
+ * and the tic, not on the order or the threads the rows are processed in. The patches
+ * selected have the same distribution as the per patch draws but are not the same patches,
+ * so the output differs from the default Bernoulli sampling while being reproducible under a
+ * fixed seed.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.Arrays;
+
+public class LiftSampler {
+
+    private static final int MAX_GAPS = 4096;     // largest number of tabulated gaps
+    private static final double TAIL = 0x1.0p-12; // probability left beyond tabulated gaps
+
+    private long seed;            // seed of every random draw
+    private int height;           // number of patches in each row of the grid
+    private boolean sampleMisses; // gaps are drawn between the patches left out
+    private boolean never;        // the event the gaps lead to never happens
+    private double scale;         // 1 / log(1 - probability) of the event
+
+    private double[] cdf;  // cdf[g] probability of a gap of at most g
+    private int[] guide;   // guide[m] smallest gap with cdf[g] above m / guide.length
+
+    /**
+     * Constructor for LiftSampler tabulating the gaps for the lift threshold of a
+     * configuration.
+     *
+     * @param config configuration of the simulation
+     */
+    public LiftSampler(Configuration config) {
+        this.seed = config.getSeed();
+        this.height = config.getGridHeight();
+        double threshold = config.getLiftThreshold();
+        this.sampleMisses = threshold > 0.5;
+        double probability = sampleMisses ? 1 - threshold : threshold;
+        this.never = !(probability > 0);
+        if (never) {
+            return;
+        }
+        this.scale = 1 / Math.log1p(-probability);
+
+        // probability of no event over g + 1 patches, until the tail is small enough
+        double[] table = new double[MAX_GAPS];
+        int gaps = 0;
+        double none = 1;
+        do {
+            none *= 1 - probability;
+            table[gaps++] = 1 - none;
+        } while (none > TAIL && gaps < MAX_GAPS);
+        this.cdf = Arrays.copyOf(table, gaps);
+
+        this.guide = new int[gaps];
+        int g = 0;
+        for (int m = 0; m < gaps; m++) {
+            while (g < gaps - 1 && cdf[g] <= (double) m / gaps) {
+                g++;
+            }
+            guide[m] = g;
+        }
+    }
+
+    /**
+     * Number of heap bytes an engine takes to hold the sampled patches of a grid, one int
+     * per patch so that rows can be sampled in parallel.
+     *
+     * @param width number of rows of the grid
+     * @param height number of patches in each row of the grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 4L * width * height;
+    }
+
+    /**
+     * Sample the patches of a row a lift affects.
+     *
+     * @param tic tic of the lift
+     * @param row row of the grid
+     * @param lifted receives the indices i * height + j of the affected patches in
+     *               increasing order, from position row * height on
+     * @return number of affected patches
+     */
+    public int sample(int tic, int row, int[] lifted) {
+        int from = row * height;
+        int to = from + height;
+        long key = -1L - row; // negative, unlike the index of any patch
+        int count = 0;
+        int draw = 0;
+        if (!sampleMisses) {
+            int k = from + gap(tic, key, draw++, height);
+            while (k < to) {
+                lifted[from + count++] = k;
+                k += 1 + gap(tic, key, draw++, to - k - 1);
+            }
+        } else {
+            int k = from;
+            while (k < to) {
+                int miss = k + gap(tic, key, draw++, to - k);
+                for (; k < miss; k++) {
+                    lifted[from + count++] = k;
+                }
+                k = miss + 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Number of patches passed over before the first one the event happens to.
+     *
+     * @param tic tic of the lift
+     * @param key index keying the draws of the row
+     * @param draw number of the gap within the row
+     * @param left patches left in the row
+     * @return gap, or the patches left if the event does not happen to any of them
+     */
+    private int gap(int tic, long key, int draw, int left) {
+        if (left <= 0 || never) {
+            return left;
+        }
+        double u = CounterRandom.uniform(seed, tic, key, draw);
+        if (u >= cdf[cdf.length - 1]) {
+            // beyond the table, 1 - u is exact for the 53 bit draws
+            return (int) Math.min(Math.floor(Math.log(1 - u) * scale), left);
+        }
+        int gap = guide[(int) (u * guide.length)];
+        while (cdf[gap] <= u) {
+            gap++;
+        }
+        return Math.min(gap, left);
+    }
+}
@@ -15,74 +15,282 @@
 
 package extended;
 
-import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 
-public class Muscle {
+public class Muscle implements MuscleEngine {
     
     private Patch[][] patches; // 2D array of patches for the muscle.
+    private Configuration config;
+    private int width;
+    private int height;
     private int totalGrid;
+    private DiffusionStencil stencil; // padded share buffers used by diffuse
+    private RowStripes stripes;       // runs the phases over stripes of rows
+
+    private int liftTic;              // tic of the lift being performed
+    private boolean liftToday;        // whether the fused tic lifts weight
+    private boolean eats;             // whether eating changes the hormones, false on average
+                                      // nutrition where its delta is exactly 0
+    private Consumer<Patch> liftWeightAction = patch -> patch.liftWeight(liftTic);
+    private LiftSampler sampler;      // samples lifted patches by geometric gaps, null if
+                                      // drawn per patch
+    private int[] lifted;             // patches the sampler selected, row by row
+
+    // passes and diffusion steps bound once so that running them does not allocate
+    private RowStripes.RowTask hormonePassTask = this::hormonePass;
+    private RowStripes.RowTask developPassTask = this::developPass;
+    private RowStripes.RowTask storeSharesTask = this::storeShares;
+    private RowStripes.RowTask gatherSharesTask = this::gatherShares;
+    private RowStripes.RowTask liftRowsTask = this::liftRows;
+
+    // sums over the patches, only up to date while sumsValid is set
+    private boolean sumsValid;
+    private double sumAnabolic;
+    private double sumCatabolic;
+    private double sumMass;
+    private CompensatedSums compensatedSums; // per row sums, null unless compensation is on
+
+    /**
+     * Constructor for Muscle running every phase on the calling thread.
+     * 
+     * @param config configuration of the simulation
+     */
+    public Muscle(Configuration config) {
+        this(config, null);
+    }
 
     /**
      * Constructor for Muscle to initilise the pathces with grid width and height from
      * the configuration.
+     * 
+     * @param config configuration of the simulation
+     * @param pool pool running the phases over row stripes, or null to run sequentially
      */
-    public Muscle() {
-        this.patches = new Patch[Configuration.GRID_WIDTH][Configuration.GRID_HEIGHT];
-        this.totalGrid = Configuration.GRID_WIDTH * Configuration.GRID_HEIGHT;
+    public Muscle(Configuration config, ForkJoinPool pool) {
+        this.config = config;
+        this.width = config.getGridWidth();
+        this.height = config.getGridHeight();
+        this.patches = new Patch[width][height];
+        this.totalGrid = width * height;
+        this.stencil = new DiffusionStencil(width, height);
+        this.stripes = new RowStripes(pool, width);
+        this.eats = config.getNutritionDelta() != 0;
+        if (config.isGeometricLift()) {
+            this.sampler = new LiftSampler(config);
+            this.lifted = new int[totalGrid];
+        }
+        if (config.isCompensatedSums()) {
+            this.compensatedSums = new CompensatedSums(width);
+        }
         initialise();
     }
 
     /**
-     * Initialise patches for each coordinate.
+     * Rough number of heap bytes taken by a muscle of given size, counting the Patch and
+     * MuscleFiber objects of every patch and the diffusion buffers.
+     * 
+     * @param width width of grid
+     * @param height height of grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 96L * width * height + DiffusionStencil.estimateMemory(width, height);
+    }
+
+    /**
+     * Initialise patches for each coordinate, stripe by stripe.
      */
     private void initialise() {
-        for (int i = 0; i < Configuration.GRID_WIDTH; i++) {
-            for (int j = 0; j < Configuration.GRID_HEIGHT; j++) {
-                patches[i][j] = new Patch(this, i, j);
+        stripes.forEach(this::initialiseRows);
+    }
+
+    /**
+     * Initialise the patches of the given rows. Every draw is keyed by its patch, so the
+     * stripes give the same patches on any number of threads.
+     * 
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void initialiseRows(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = 0; j < height; j++) {
+                patches[i][j] = new Patch(this, config, i, j);
+            }
+        }
+    }
+
+    /**
+     * Run a whole tic in two passes over the patches. The first pass applies every pointwise
+     * phase before the diffusion and stores the shares of each patch, the second gathers the
+     * shares, regulates the hormones, develops the muscle and sums the patches for the
+     * metrics.
+     * 
+     * @param tic current tic, which keys the random draws of the lift
+     * @param lift whether weight is lifted in this tic
+     */
+    @Override
+    public void triggerTic(int tic, boolean lift) {
+        liftTic = tic;
+        liftToday = lift;
+        sumsValid = false;
+        stripes.forEach(hormonePassTask);
+        stripes.forEach(developPassTask);
+        if (compensatedSums != null) {
+            storeCompensatedTotals();
+        }
+    }
+
+    /**
+     * Daily activity, lifting weight, eating and sleeping fused into a single visit of each
+     * patch of the given rows, followed by storing the shares the patch hands out.
+     * 
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void hormonePass(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int next = i * height; // position of the next sampled patch in lifted
+            int end = next;
+            if (liftToday && sampler != null) {
+                end += sampler.sample(liftTic, i, lifted);
+            }
+            for (int j = 0; j < height; j++) {
+                Patch patch = patches[i][j];
+                patch.performDailyActivity();
+                if (liftToday && sampler == null) {
+                    patch.liftWeight(liftTic);
+                } else if (next < end && lifted[next] == i * height + j) {
+                    patch.lift();
+                    next++;
+                }
+                if (eats) {
+                    patch.eat();
+                }
+                patch.sleep();
+                stencil.storeShares(i, j, patch.getAnabolicHormone(), patch.getCatabolicHormone());
+            }
+        }
+    }
+
+    /**
+     * Diffusion, hormone regulation and muscle development fused into a single visit of each
+     * patch of the given rows. A pass over the whole grid also sums the patches in order, so
+     * the metrics need no further scan; stripes of a parallel run leave that to the getters.
+     * With compensation every stripe sums its own rows instead.
+     * 
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developPass(int fromRow, int toRow) {
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+
+        for (int i = fromRow; i < toRow; i++) {
+            if (compensatedSums != null) {
+                compensatedSums.clearRow(i);
+            }
+            for (int j = 0; j < height; j++) {
+                Patch patch = patches[i][j];
+                patch.setAnabolicHormone(stencil.diffuseAnabolic(i, j, patch.getAnabolicHormone()));
+                patch.setCatabolicHormone(
+                    stencil.diffuseCatabolic(i, j, patch.getCatabolicHormone())
+                );
+                patch.regulateHormones();
+                patch.developMuscle();
+
+                if (compensatedSums != null) {
+                    addToRow(i, patch);
+                } else {
+                    anabolicTotal += patch.getAnabolicHormone();
+                    catabolicTotal += patch.getCatabolicHormone();
+                    massTotal += patch.getMuscleFiber().getFiberSize();
+                }
             }
         }
+
+        if (compensatedSums == null && fromRow == 0 && toRow == width) {
+            sumAnabolic = anabolicTotal;
+            sumCatabolic = catabolicTotal;
+            sumMass = massTotal;
+            sumsValid = true;
+        }
     }
 
     /**
      * Trigger hormonal effect of daily activity on each patches
      */
+    @Override
     public void triggerDailyActivity() {
+        sumsValid = false;
         forEachPatch(Patch::performDailyActivity);
     }
 
     /**
      * Trigger hormonal effect of lifting weight on each patches
+     * 
+     * @param tic tic the lift happens at, which keys the random draws
      */
-    public void triggerLiftWeight() {
-        forEachPatch(Patch::liftWeight);
+    @Override
+    public void triggerLiftWeight(int tic) {
+        liftTic = tic;
+        sumsValid = false;
+        if (sampler != null) {
+            stripes.forEach(liftRowsTask);
+        } else {
+            forEachPatch(liftWeightAction);
+        }
+    }
+
+    /**
+     * Lift weight on the patches of the given rows sampled geometrically.
+     * 
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void liftRows(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            int count = sampler.sample(liftTic, i, lifted);
+            for (int n = i * height; n < i * height + count; n++) {
+                patches[i][lifted[n] - i * height].lift();
+            }
+        }
     }
 
     /**
      * Trigger hormonal effect of quality of nutrition intake
      */
+    @Override
     public void triggerEat() {
+        sumsValid = false;
         forEachPatch(Patch::eat);
     }
 
     /**
      * Trigger hormonal effect of sleeping on each patches
      */
+    @Override
     public void triggerSleep() {
+        sumsValid = false;
         forEachPatch(Patch::sleep);
     }
 
     /**
      * Trigger muscle development on muscles fibers in each patch
      */
+    @Override
     public void triggerDevelopMuscle() {
+        sumsValid = false;
         forEachPatch(Patch::developMuscle);
     }
 
     /**
      * Trigger hormone regulation on patches
      */
+    @Override
     public void triggerRegulateHormones() {
+        sumsValid = false;
         diffuse();
         forEachPatch(Patch::regulateHormones);
     }
@@ -93,8 +301,23 @@ public class Muscle {
      * @param action action that will be performed
      */
     private void forEachPatch(Consumer<Patch> action) {
-        for (Patch[] row : patches) {
-            for (Patch patch : row) {
+        if (stripes.isParallel()) {
+            stripes.forEach((fromRow, toRow) -> forEachPatch(action, fromRow, toRow));
+        } else {
+            forEachPatch(action, 0, width);
+        }
+    }
+
+    /**
+     * Perform an action on each patch of the given rows
+     * 
+     * @param action action that will be performed
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void forEachPatch(Consumer<Patch> action, int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            for (Patch patch : patches[i]) {
                 action.accept(patch);
             }
         }
@@ -103,53 +326,55 @@ public class Muscle {
     /**
      * Implementation of Netlogo's diffuse function based on description sepecified on
      * https://ccl.northwestern.edu/netlogo/docs/dictionary.html#diffuse.
+     * 
+     * The shares of every patch are computed from the levels before diffusion into the
+     * padded buffers of the stencil, then every patch gathers the shares of its neighbours.
+     * All shares are stored before any patch gathers, so row stripes never read a level
+     * that has already been diffused.
      */
+    @Override
     public void diffuse() {
-        Patch[][] oldPatches = copyPatchesArray();
-        double[] shares = {0.0, 0.0}; // [anabolicShare, catabolicShare]
-
-        for (int i = 0; i < Configuration.GRID_WIDTH; i++) {
-            for (int j = 0; j < Configuration.GRID_HEIGHT; j++) {
-                computeShares(oldPatches[i][j], shares);
-                Patch[] neighbours = getNeighbours(i, j);
-
-                for (Patch neighbour : neighbours) {
-                    neighbour.increaseAnabolicHormone(shares[0]);
-                    neighbour.increaseCatabolicHormone(shares[1]);
-                }
-
-                patches[i][j].decreaseAnabolicHormone(shares[0] * neighbours.length);
-                patches[i][j].decreaseCatabolicHormone(shares[1] * neighbours.length);
-            }
+        sumsValid = false;
+        if (stripes.isParallel()) {
+            stripes.forEach(storeSharesTask);
+            stripes.forEach(gatherSharesTask);
+        } else {
+            storeShares(0, width);
+            gatherShares(0, width);
         }
     }
 
     /**
-     * Calculate amount to be shared to the neighbours with given patch
+     * Store the shares handed out by the patches of the given rows.
      * 
-     * @param patch deep copied patches array
-     * @param shares double array to store the share
+     * @param fromRow first row
+     * @param toRow row after the last row
      */
-    private void computeShares(Patch patch, double[] shares) {
-        shares[0] = patch.getAnabolicHormone() * Configuration.HORMONE_DIFFUSE_RATE 
-            / Configuration.MAX_NEIGHBOUR;
-        shares[1] = patch.getCatabolicHormone() * Configuration.HORMONE_DIFFUSE_RATE 
-            / Configuration.MAX_NEIGHBOUR;
+    private void storeShares(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = 0; j < height; j++) {
+                Patch patch = patches[i][j];
+                stencil.storeShares(i, j, patch.getAnabolicHormone(), patch.getCatabolicHormone());
+            }
+        }
     }
 
     /**
-     * Creates a deep copy of the patches array.
+     * Replace the levels of the patches of the given rows with their diffused levels.
+     * 
+     * @param fromRow first row
+     * @param toRow row after the last row
      */
-    private Patch[][] copyPatchesArray() {
-        Patch[][] copiedPatches = new Patch[Configuration.GRID_WIDTH][Configuration.GRID_HEIGHT];
-
-        for (int i = 0; i < Configuration.GRID_WIDTH; i++) {
-            for (int j = 0; j < Configuration.GRID_HEIGHT; j++) {
-                copiedPatches[i][j] = new Patch(patches[i][j]);
+    private void gatherShares(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = 0; j < height; j++) {
+                Patch patch = patches[i][j];
+                patch.setAnabolicHormone(stencil.diffuseAnabolic(i, j, patch.getAnabolicHormone()));
+                patch.setCatabolicHormone(
+                    stencil.diffuseCatabolic(i, j, patch.getCatabolicHormone())
+                );
             }
         }
-
-        return copiedPatches;
     }
 
     /**
@@ -160,36 +385,106 @@ public class Muscle {
      * @return patch at given coordinate
      */
     public Patch getPatch(int i, int j) {
-        if (i >= 0 && i < Configuration.GRID_WIDTH && j >= 0 && j < Configuration.GRID_HEIGHT) {
+        if (i >= 0 && i < width && j >= 0 && j < height) {
             return patches[i][j];
         }
 
         return null;
     }
 
+    @Override
+    public void saveState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                Patch patch = patches[i][j];
+                int k = i * height + j;
+                anabolic[k] = patch.getAnabolicHormone();
+                catabolic[k] = patch.getCatabolicHormone();
+                fiberSize[k] = patch.getMuscleFiber().getFiberSize();
+                maxSize[k] = patch.getMuscleFiber().getMaxSize();
+            }
+        }
+    }
+
+    @Override
+    public void loadState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        sumsValid = false;
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                Patch patch = patches[i][j];
+                int k = i * height + j;
+                patch.setAnabolicHormone(anabolic[k]);
+                patch.setCatabolicHormone(catabolic[k]);
+                patch.getMuscleFiber().restore(fiberSize[k], maxSize[k]);
+            }
+        }
+    }
+
     /**
-     * Find neighbouring patches for given coordinate.
-     * 
-     * @param i x coordinate of the patch
-     * @param j y coordinate of the patch
-     * @return array of neighbouring patches
+     * Sum the hormone levels and fiber sizes of every patch in a single scan, or row by row
+     * with compensation.
      */
-    public Patch[] getNeighbours(int i, int j) {
-        ArrayList<Patch> neighbours = new ArrayList<>();
+    private void updateSums() {
+        if (compensatedSums != null) {
+            for (int i = 0; i < width; i++) {
+                compensatedSums.clearRow(i);
+                for (Patch patch : patches[i]) {
+                    addToRow(i, patch);
+                }
+            }
+            storeCompensatedTotals();
+            return;
+        }
 
-        int[] dRow = {-1, -1, -1, 0, 0, 1, 1, 1};
-        int[] dCol = {-1, 0, 1, -1, 1, -1, 0, 1};
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
 
-        for (int d = 0; d < 8; d++) {
-            int ni = i + dRow[d];
-            int nj = j + dCol[d];
-            Patch neighbour = getPatch(ni, nj);
-            if (neighbour != null) {
-                neighbours.add(neighbour);
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                Patch patch = patches[i][j];
+                anabolicTotal += patch.getAnabolicHormone();
+                catabolicTotal += patch.getCatabolicHormone();
+                massTotal += patch.getMuscleFiber().getFiberSize();
             }
         }
 
-        return neighbours.toArray(new Patch[0]);
+        sumAnabolic = anabolicTotal;
+        sumCatabolic = catabolicTotal;
+        sumMass = massTotal;
+        sumsValid = true;
+    }
+
+    /**
+     * Add the hormone levels and fiber size of a patch to the compensated sums of its row.
+     * 
+     * @param i row of the patch
+     * @param patch patch to add
+     */
+    private void addToRow(int i, Patch patch) {
+        compensatedSums.add(i, CompensatedSums.ANABOLIC, patch.getAnabolicHormone());
+        compensatedSums.add(i, CompensatedSums.CATABOLIC, patch.getCatabolicHormone());
+        compensatedSums.add(i, CompensatedSums.MASS, patch.getMuscleFiber().getFiberSize());
+    }
+
+    /**
+     * Merge the compensated sums of the rows into the sums over the patches.
+     */
+    private void storeCompensatedTotals() {
+        sumAnabolic = compensatedSums.total(CompensatedSums.ANABOLIC);
+        sumCatabolic = compensatedSums.total(CompensatedSums.CATABOLIC);
+        sumMass = compensatedSums.total(CompensatedSums.MASS);
+        sumsValid = true;
     }
 
     /**
@@ -197,15 +492,11 @@ public class Muscle {
      * 
      * @return current average anabolic hormone level of patches
      */
+    @Override
     public double getAverageAnabolicHormone() {
-        double sumAnabolic = 0;
-
-        for (int i = 0; i < Configuration.GRID_WIDTH; i++) {
-            for (int j = 0; j < Configuration.GRID_HEIGHT; j++) {
-                sumAnabolic += patches[i][j].getAnabolicHormone();
-            }
+        if (!sumsValid) {
+            updateSums();
         }
-
         return sumAnabolic / totalGrid;
     }
 
@@ -214,15 +505,11 @@ public class Muscle {
      * 
      * @return current average catabolic hormone level of patches
      */
+    @Override
     public double getAverageCatabolicHormone() {
-        double sumCatabolic = 0;
-
-        for (int i = 0; i < Configuration.GRID_WIDTH; i++) {
-            for (int j = 0; j < Configuration.GRID_HEIGHT; j++) {
-                sumCatabolic += patches[i][j].getCatabolicHormone();
-            }
+        if (!sumsValid) {
+            updateSums();
         }
-
         return sumCatabolic / totalGrid;
     }
 
@@ -231,15 +518,11 @@ public class Muscle {
      * 
      * @return total size of muscle fibers divided by 100
      */
+    @Override
     public double getMuscleMass() {
-        double sumMass = 0;
-        
-        for (int i = 0; i < Configuration.GRID_WIDTH; i++) {
-            for (int j = 0; j < Configuration.GRID_HEIGHT; j++) {
-                sumMass += patches[i][j].getMuscleFiber().getFiberSize();
-            }
+        if (!sumsValid) {
+            updateSums();
         }
-
         return sumMass / 100;
     }
 }
@@ -0,0 +1,122 @@
+/**
+ * Contract shared by every state engine that can advance the muscle model.
+ *
+ * The simulation only talks to the muscle through the phases of a tic and the aggregate
+ * metrics written to the CSV, so the way the grid state is laid out in memory is left to
+ * the implementation. {@link Muscle} keeps one object per patch while {@link ArrayMuscle}
+ * keeps each field of the grid in a flat primitive array.
+ *
+ * A tic is normally run through {@link #triggerTic}, which lets an engine fuse the phases
+ * into as few passes over the grid as the diffusion step allows.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+public interface MuscleEngine {
+
+    /**
+     * Run every phase of one tic in the order of the model: daily activity, lifting weight
+     * if it is a workout day, eating, sleeping, hormone regulation and muscle development.
+     * Engines may fuse the phases as long as the result is identical to running them one
+     * after another.
+     *
+     * @param tic current tic, which keys the random draws of the lift
+     * @param lift whether weight is lifted in this tic
+     */
+    default void triggerTic(int tic, boolean lift) {
+        triggerDailyActivity();
+        if (lift) {
+            triggerLiftWeight(tic);
+        }
+        triggerEat();
+        triggerSleep();
+        triggerRegulateHormones();
+        triggerDevelopMuscle();
+    }
+
+    /**
+     * Trigger hormonal effect of daily activity on each patches
+     */
+    void triggerDailyActivity();
+
+    /**
+     * Trigger hormonal effect of lifting weight on each patches
+     *
+     * @param tic tic the lift happens at, which keys the random draws
+     */
+    void triggerLiftWeight(int tic);
+
+    /**
+     * Trigger hormonal effect of quality of nutrition intake
+     */
+    void triggerEat();
+
+    /**
+     * Trigger hormonal effect of sleeping on each patches
+     */
+    void triggerSleep();
+
+    /**
+     * Diffuse the hormones of every patch to its neighbours, which the hormone regulation
+     * starts with
+     */
+    void diffuse();
+
+    /**
+     * Trigger hormone regulation on patches
+     */
+    void triggerRegulateHormones();
+
+    /**
+     * Trigger muscle development on muscles fibers in each patch
+     */
+    void triggerDevelopMuscle();
+
+    /**
+     * Copy the state of every patch, for a checkpoint.
+     *
+     * @param anabolic receives the anabolic hormone levels, indexed by i * height + j
+     * @param catabolic receives the catabolic hormone levels, indexed by i * height + j
+     * @param fiberSize receives the fiber sizes, indexed by i * height + j
+     * @param maxSize receives the maximum fiber sizes, indexed by i * height + j
+     */
+    void saveState(double[] anabolic, double[] catabolic, double[] fiberSize, int[] maxSize);
+
+    /**
+     * Replace the state of every patch with a state saved by {@link #saveState}, to resume
+     * from a checkpoint.
+     *
+     * @param anabolic anabolic hormone levels, indexed by i * height + j
+     * @param catabolic catabolic hormone levels, indexed by i * height + j
+     * @param fiberSize fiber sizes, indexed by i * height + j
+     * @param maxSize maximum fiber sizes, indexed by i * height + j
+     */
+    void loadState(double[] anabolic, double[] catabolic, double[] fiberSize, int[] maxSize);
+
+    /**
+     * Calculate total size of muscle fibers in muscle
+     *
+     * @return total size of muscle fibers divided by 100
+     */
+    double getMuscleMass();
+
+    /**
+     * Calculate average anabolic hormone level
+     *
+     * @return current average anabolic hormone level of patches
+     */
+    double getAverageAnabolicHormone();
+
+    /**
+     * Calculate average catabolic hormone level
+     *
+     * @return current average catabolic hormone level of patches
+     */
+    double getAverageCatabolicHormone();
+}
@@ -14,57 +14,40 @@
 
 package extended;
 
-import java.util.Random;
-
 public class MuscleFiber {
 
-    private static final Configuration config = Configuration.getInstance();
-    private static int nextId = 1;
-
-    private Random random = new Random();
+    private Configuration config;   // configuration of the simulation
 
     private int id;             // id of the muscle fiber
+    private int index;          // index of the patch the fiber resides in, keys random draws
     private int maxSize;        // maximum size limit for the muscle fiber
     private double fiberSize;   // current size of muscle fiber
 
     /**
-     * Constructs a MuscleFiber object with a unique ID, and initializes its size parameters.
+     * Constructs a MuscleFiber object with given ID, and initializes its size parameters.
      * 
      * The maximum size is determined through a stochastic process influenced by the percentage
      * of slow twitch fibers.
+     * 
+     * @param config configuration of the simulation
+     * @param index index of the patch the fiber resides in, unique within its muscle
      */
-    public MuscleFiber() {
-        this.id = nextId++;
-        this.maxSize = sproutMuscleFiber();
+    public MuscleFiber(Configuration config, int index) {
+        this.config = config;
+        this.id = index + 1;
+        this.index = index;
+        this.maxSize = FiberSprout.sprout(config, index);
         this.fiberSize = initFiberSize();
         regulateMuscleFiber();
     }
 
-    /**
-     * Determines the initial maximum size of the muscle fiber using a random process.
-     * 
-     * The size is increased based on the probability determined by the percentage of
-     * slow twitch fibers.
-     * 
-     * @return the sprouted maximum size of the muscle fiber.
-     */
-    private int sproutMuscleFiber() {
-        int size = 4;
-        for (int i = 0; i < 20; i++) {
-            if (random.nextDouble() * 100 > config.getSlowTwitchFibersPercentage()) {
-                size += 1;
-            }
-        }
-        return size;
-    }
-
     /**
      * Initializes the current size of the muscle fiber as a fraction of its maximum size.
      * 
      * @return the initial size of the muscle fiber.
      */
     private double initFiberSize() {
-        return (0.2 + random.nextDouble() * 0.4) * maxSize;
+        return FiberSprout.initialSize(config.getSeed(), index, maxSize);
     }
 
     /**
@@ -78,12 +61,12 @@ public class MuscleFiber {
      */
     public void grow(double anabolicHormone, double catabolicHormone) {
         // decrease size based on catabolic hormone.
-        fiberSize -= 0.2 * Math.log10(catabolicHormone);
+        fiberSize -= 0.2 * log10(catabolicHormone);
 
         // increase size based on anabolic hormone, capped by a factor of the catabolic hormone.
         fiberSize += 0.2 * Math.min(
-            Math.log10(anabolicHormone),
-            1.05 * Math.log10(catabolicHormone)
+            log10(anabolicHormone),
+            1.05 * log10(catabolicHormone)
         );
     }
 
@@ -104,6 +87,16 @@ public class MuscleFiber {
         }
     }
 
+    /**
+     * Base 10 logarithm, approximated when the configuration asks for fast math.
+     * 
+     * @param x argument
+     * @return log10 of x
+     */
+    private double log10(double x) {
+        return config.isFastMath() ? FastLog10.log10(x) : Math.log10(x);
+    }
+
     /**
      * Getter methods for muscle fiber's current fiber size
      * 
@@ -113,6 +106,26 @@ public class MuscleFiber {
         return this.fiberSize;
     }
 
+    /**
+     * Getter methods for muscle fiber's maximum size
+     * 
+     * @return maximum size limit of the muscle fiber
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Replace the current and maximum size of the muscle fiber, to resume from a checkpoint.
+     * 
+     * @param fiberSize current size of muscle fiber
+     * @param maxSize maximum size limit for the muscle fiber
+     */
+    public void restore(double fiberSize, int maxSize) {
+        this.fiberSize = fiberSize;
+        this.maxSize = maxSize;
+    }
+
     /**
      * Prints muscle fiber's max size and current fiber size to the console with its id
      * for debugging purpose
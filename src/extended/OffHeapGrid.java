@@ -0,0 +1,98 @@
+/**
+ * Grid of fixed size rows stored outside the Java heap.
+ *
+ * A single ByteBuffer is limited to 2 GiB, so the rows are spread over chunks of whole rows
+ * of at most CHUNK_BYTES each. A row therefore never straddles two chunks and a kernel can
+ * take the chunk and byte offset of a row once and then sweep the row linearly. The chunks
+ * are either direct buffers or regions of a memory-mapped file, in which case the operating
+ * system pages the grid in and out of memory as it is swept.
+ *
+ * Every chunk uses the native byte order and starts out zeroed.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+public class OffHeapGrid {
+
+    private static final int CHUNK_BYTES = 1 << 30; // upper bound of the bytes of a chunk
+
+    private int rowBytes;        // bytes of each row
+    private int rowsPerChunk;    // rows held by every chunk
+    private ByteBuffer[] chunks; // chunks of whole rows
+
+    /**
+     * Constructor for OffHeapGrid allocating the rows in direct buffers, or mapping them from
+     * a file.
+     *
+     * @param rows number of rows
+     * @param rowBytes bytes of each row
+     * @param channel channel of the file the grid is mapped from, or null for direct buffers
+     * @param position position of the grid in the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public OffHeapGrid(int rows, int rowBytes, FileChannel channel, long position)
+        throws IOException {
+        if (rowBytes > CHUNK_BYTES) {
+            throw new IllegalArgumentException(
+                "Rows of " + rowBytes + " bytes are too long to be stored off heap"
+            );
+        }
+        this.rowBytes = rowBytes;
+        this.rowsPerChunk = Math.max(1, CHUNK_BYTES / Math.max(1, rowBytes));
+        this.chunks = new ByteBuffer[(rows + rowsPerChunk - 1) / rowsPerChunk];
+
+        for (int c = 0; c < chunks.length; c++) {
+            int chunkRows = Math.min(rowsPerChunk, rows - c * rowsPerChunk);
+            int bytes = chunkRows * rowBytes;
+            if (channel == null) {
+                chunks[c] = ByteBuffer.allocateDirect(bytes);
+            } else {
+                long start = position + (long) c * rowsPerChunk * rowBytes;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start, bytes);
+            }
+            chunks[c].order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Number of bytes taken by a grid of given size.
+     *
+     * @param rows number of rows
+     * @param rowBytes bytes of each row
+     * @return bytes of the grid
+     */
+    public static long bytes(int rows, int rowBytes) {
+        return (long) rows * rowBytes;
+    }
+
+    /**
+     * Chunk holding a row.
+     *
+     * @param row row of the grid
+     * @return chunk the row lies in
+     */
+    public ByteBuffer chunk(int row) {
+        return chunks[row / rowsPerChunk];
+    }
+
+    /**
+     * Byte offset of a row within its chunk.
+     *
+     * @param row row of the grid
+     * @return offset of the first byte of the row
+     */
+    public int offset(int row) {
+        return (row % rowsPerChunk) * rowBytes;
+    }
+}
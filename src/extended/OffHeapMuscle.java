@@ -0,0 +1,776 @@
+/**
+ * Off-heap implementation of the muscle.
+ *
+ * The state of the patches is laid out like in {@link ArrayMuscle}, one field after another
+ * with patch (i, j) at position i * height + j, but the fields live in {@link OffHeapGrid}s
+ * instead of Java arrays. Only a few objects stay on the heap however large the grid is, so
+ * a huge muscle runs with a small heap and adds nothing to the work of a full collection.
+ * Given a state file the grids are mapped from it, and the operating system pages them in
+ * and out as the rows are swept. The maximum fiber size is at most 24, so it takes a single
+ * byte per patch.
+ *
+ * The padded share buffers of the diffusion are kept off heap as well. The number of
+ * neighbours of a patch follows from its position and is not stored. Every phase performs
+ * the same arithmetic in the same order as the array engine, so the output is identical.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+public class OffHeapMuscle implements MuscleEngine {
+
+    private Configuration config; // configuration of the simulation
+    private long seed;            // seed of every random draw
+    private boolean fastMath;     // approximate log10 with FastLog10
+    private int liftTic;          // tic of the lift being performed
+    private boolean liftToday;    // whether the fused tic lifts weight
+
+    // run constants of the configuration, read once instead of for every patch
+    private double liftThreshold;  // probability of a patch being lifted
+    private double nutritionDelta; // relative hormone change of eating
+    private boolean eats;          // whether eating changes the hormones at all
+    private double hoursOfSleep;   // hours of sleep between day
+
+    private int width;      // number of rows of the grid
+    private int height;     // number of patches in each row
+    private int totalGrid;  // number of patches in the grid
+    private int rowBytes;   // bytes of a row of a double field
+
+    // state of the patches, a row of the grid per row of each field
+    private OffHeapGrid anabolicHormone;
+    private OffHeapGrid catabolicHormone;
+    private OffHeapGrid fiberSize;
+    private OffHeapGrid maxSize; // one byte per patch
+
+    // shares handed out to each neighbour, patch (i, j) at row i + 1 and slot j + 1
+    private OffHeapGrid anabolicShares;
+    private OffHeapGrid catabolicShares;
+
+    private LiftSampler sampler; // samples lifted patches by geometric gaps, null if per patch
+    private int[] lifted;        // patches the sampler selected, row by row
+
+    private RowStripes stripes; // runs the phases over stripes of rows
+
+    // phases bound once so that running them does not allocate
+    private RowStripes.RowTask dailyActivityTask = this::performDailyActivity;
+    private RowStripes.RowTask liftWeightTask = this::liftWeight;
+    private RowStripes.RowTask eatTask = this::eat;
+    private RowStripes.RowTask sleepTask = this::sleep;
+    private RowStripes.RowTask storeSharesTask = this::storeShares;
+    private RowStripes.RowTask gatherSharesTask = this::gatherShares;
+    private RowStripes.RowTask regulateHormonesTask = this::regulateHormones;
+    private RowStripes.RowTask developMuscleTask = this::developMuscle;
+    private RowStripes.RowTask hormonePassTask = this::hormonePass;
+    private RowStripes.RowTask developPassTask = this::developPass;
+
+    // sums of the state, only up to date while sumsValid is set
+    private boolean sumsValid;
+    private double sumAnabolic;
+    private double sumCatabolic;
+    private double sumMass;
+    private CompensatedSums compensatedSums; // per row sums, null unless compensation is on
+
+    /**
+     * Constructor for OffHeapMuscle keeping the state in direct buffers.
+     *
+     * @param config configuration of the simulation
+     * @param pool pool running the phases over row stripes, or null to run sequentially
+     */
+    public OffHeapMuscle(Configuration config, ForkJoinPool pool) {
+        this(config, pool, null);
+    }
+
+    /**
+     * Constructor for OffHeapMuscle to allocate the state off heap with grid width and height
+     * from the configuration.
+     *
+     * @param config configuration of the simulation
+     * @param pool pool running the phases over row stripes, or null to run sequentially
+     * @param stateFile file the state is mapped from, or null to keep it in direct buffers.
+     *                  The file must not exist yet. It is created and removed again once
+     *                  it is mapped, its pages stay backed by the disk until the muscle is
+     *                  collected.
+     */
+    public OffHeapMuscle(Configuration config, ForkJoinPool pool, Path stateFile) {
+        this.config = config;
+        this.seed = config.getSeed();
+        this.fastMath = config.isFastMath();
+        this.liftThreshold = config.getLiftThreshold();
+        this.nutritionDelta = config.getNutritionDelta();
+        this.eats = nutritionDelta != 0;
+        this.hoursOfSleep = config.getHourseOfSleep();
+        this.width = config.getGridWidth();
+        this.height = config.getGridHeight();
+        this.totalGrid = width * height;
+        this.rowBytes = height * Double.BYTES;
+        this.stripes = new RowStripes(pool, width);
+        if (config.isGeometricLift()) {
+            this.sampler = new LiftSampler(config);
+            this.lifted = new int[totalGrid];
+        }
+        if (config.isCompensatedSums()) {
+            this.compensatedSums = new CompensatedSums(width);
+        }
+
+        try {
+            allocate(stateFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map the state to " + stateFile, e);
+        }
+        initialise();
+    }
+
+    /**
+     * Number of off-heap bytes taken by a muscle of given size: three double and one byte
+     * field for the state plus the padded share buffers.
+     *
+     * @param width width of grid
+     * @param height height of grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 25L * width * height + 16L * (width + 2) * (height + 2);
+    }
+
+    /**
+     * Largest number of bytes the JVM allows in direct buffers, which is the maximum heap
+     * unless -XX:MaxDirectMemorySize is given.
+     *
+     * @return bytes available to direct buffers
+     */
+    public static long maxDirectMemory() {
+        String limit = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+            .getVMOption("MaxDirectMemorySize")
+            .getValue();
+        long bytes = Long.parseLong(limit);
+        return bytes > 0 ? bytes : Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Allocate every grid, mapping them one after another from the state file if one is
+     * given.
+     *
+     * @param stateFile file the state is mapped from, or null for direct buffers
+     * @throws IOException if the file already exists or cannot be mapped
+     */
+    private void allocate(Path stateFile) throws IOException {
+        FileChannel channel = null;
+        if (stateFile != null) {
+            // an existing file is refused, so a mistyped path cannot destroy it
+            channel = FileChannel.open(
+                stateFile,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE
+            );
+        }
+
+        // a mapping stays valid after its channel is closed
+        try {
+            int paddedRowBytes = (height + 2) * Double.BYTES;
+            long position = 0;
+            anabolicHormone = new OffHeapGrid(width, rowBytes, channel, position);
+            position += OffHeapGrid.bytes(width, rowBytes);
+            catabolicHormone = new OffHeapGrid(width, rowBytes, channel, position);
+            position += OffHeapGrid.bytes(width, rowBytes);
+            fiberSize = new OffHeapGrid(width, rowBytes, channel, position);
+            position += OffHeapGrid.bytes(width, rowBytes);
+            maxSize = new OffHeapGrid(width, height, channel, position);
+            position += OffHeapGrid.bytes(width, height);
+            anabolicShares = new OffHeapGrid(width + 2, paddedRowBytes, channel, position);
+            position += OffHeapGrid.bytes(width + 2, paddedRowBytes);
+            catabolicShares = new OffHeapGrid(width + 2, paddedRowBytes, channel, position);
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Initialise hormones and muscle fiber of each patch, stripe by stripe.
+     */
+    private void initialise() {
+        stripes.forEach(this::initialiseRows);
+    }
+
+    /**
+     * Initialise hormones and muscle fiber of the patches of the given rows. Every draw is
+     * keyed by its patch, so the stripes give the same state on any number of threads.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void initialiseRows(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            ByteBuffer size = fiberSize.chunk(i);
+            ByteBuffer max = maxSize.chunk(i);
+            int b = fiberSize.offset(i);
+            int m = maxSize.offset(i);
+
+            for (int j = 0, k = i * height; j < height; j++, k++, b += Double.BYTES, m++) {
+                int sprouted = FiberSprout.sprout(config, k);
+                double initial = FiberSprout.initialSize(seed, k, sprouted);
+                max.put(m, (byte) sprouted);
+                size.putDouble(b, regulateMuscleFiber(initial, sprouted));
+                anabolic.putDouble(b, Configuration.ANABOLIC_HORMONE_MIN);
+                catabolic.putDouble(b, Configuration.CATABOLIC_HORMONE_MIN);
+            }
+        }
+    }
+
+    /**
+     * Run a whole tic in two passes over the grid. The first pass applies every pointwise
+     * phase before the diffusion and stores the shares of each patch, the second gathers the
+     * shares, regulates the hormones, develops the muscle and sums the state for the metrics.
+     */
+    @Override
+    public void triggerTic(int tic, boolean lift) {
+        liftTic = tic;
+        liftToday = lift;
+        sumsValid = false;
+        stripes.forEach(hormonePassTask);
+        stripes.forEach(developPassTask);
+        if (compensatedSums != null) {
+            storeCompensatedTotals();
+        }
+    }
+
+    @Override
+    public void triggerDailyActivity() {
+        sumsValid = false;
+        stripes.forEach(dailyActivityTask);
+    }
+
+    @Override
+    public void triggerLiftWeight(int tic) {
+        liftTic = tic;
+        sumsValid = false;
+        stripes.forEach(liftWeightTask);
+    }
+
+    @Override
+    public void triggerEat() {
+        sumsValid = false;
+        stripes.forEach(eatTask);
+    }
+
+    @Override
+    public void triggerSleep() {
+        sumsValid = false;
+        stripes.forEach(sleepTask);
+    }
+
+    @Override
+    public void triggerRegulateHormones() {
+        sumsValid = false;
+        diffuse();
+        stripes.forEach(regulateHormonesTask);
+    }
+
+    @Override
+    public void triggerDevelopMuscle() {
+        sumsValid = false;
+        stripes.forEach(developMuscleTask);
+    }
+
+    /**
+     * Daily activity, lifting weight, eating and sleeping applied row by row, followed by
+     * storing the shares the row hands out.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void hormonePass(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            performDailyActivity(i, i + 1);
+            if (liftToday) {
+                liftWeight(i, i + 1);
+            }
+            if (eats) {
+                eat(i, i + 1);
+            }
+            sleep(i, i + 1);
+            storeShares(i, i + 1);
+        }
+    }
+
+    /**
+     * Diffusion, hormone regulation and muscle development applied row by row. A pass over
+     * the whole grid also sums the state in index order, so the metrics need no further
+     * scan; stripes of a parallel run leave that to the getters. With compensation every
+     * stripe sums its own rows instead.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developPass(int fromRow, int toRow) {
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+
+        for (int i = fromRow; i < toRow; i++) {
+            gatherShares(i, i + 1);
+            regulateHormones(i, i + 1);
+            developMuscle(i, i + 1);
+            if (compensatedSums != null) {
+                sumRow(i);
+                continue;
+            }
+
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            ByteBuffer size = fiberSize.chunk(i);
+            int from = fiberSize.offset(i);
+            for (int b = from; b < from + rowBytes; b += Double.BYTES) {
+                anabolicTotal += anabolic.getDouble(b);
+                catabolicTotal += catabolic.getDouble(b);
+                massTotal += size.getDouble(b);
+            }
+        }
+
+        if (compensatedSums == null && fromRow == 0 && toRow == width) {
+            sumAnabolic = anabolicTotal;
+            sumCatabolic = catabolicTotal;
+            sumMass = massTotal;
+            sumsValid = true;
+        }
+    }
+
+    /**
+     * Hormonal effect of daily activity on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void performDailyActivity(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            ByteBuffer size = fiberSize.chunk(i);
+            int from = fiberSize.offset(i);
+            for (int b = from; b < from + rowBytes; b += Double.BYTES) {
+                double log = log10(size.getDouble(b));
+                anabolic.putDouble(b, anabolic.getDouble(b) + log * 2.5);
+                catabolic.putDouble(b, catabolic.getDouble(b) + log * 2.0);
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of lifting weight on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void liftWeight(int fromRow, int toRow) {
+        double threshold = liftThreshold;
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            ByteBuffer size = fiberSize.chunk(i);
+            int from = fiberSize.offset(i);
+            int k = i * height;
+            if (sampler != null) {
+                int count = sampler.sample(liftTic, i, lifted);
+                for (int n = k; n < k + count; n++) {
+                    int b = from + (lifted[n] - k) * Double.BYTES;
+                    double log = log10(size.getDouble(b));
+                    anabolic.putDouble(b, anabolic.getDouble(b) + log * 55);
+                    catabolic.putDouble(b, catabolic.getDouble(b) + log * 44);
+                }
+                continue;
+            }
+            for (int b = from; b < from + rowBytes; b += Double.BYTES, k++) {
+                if (CounterRandom.uniform(seed, liftTic, k, 0) < threshold) {
+                    double log = log10(size.getDouble(b));
+                    anabolic.putDouble(b, anabolic.getDouble(b) + log * 55);
+                    catabolic.putDouble(b, catabolic.getDouble(b) + log * 44);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of quality of nutrition intake on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void eat(int fromRow, int toRow) {
+        double delta = nutritionDelta;
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            int from = anabolicHormone.offset(i);
+            for (int b = from; b < from + rowBytes; b += Double.BYTES) {
+                double anabolicLevel = anabolic.getDouble(b);
+                double catabolicLevel = catabolic.getDouble(b);
+                anabolic.putDouble(b, anabolicLevel + anabolicLevel * delta);
+                catabolic.putDouble(b, catabolicLevel - catabolicLevel * delta);
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of sleeping on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void sleep(int fromRow, int toRow) {
+        double hours = hoursOfSleep;
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            int from = anabolicHormone.offset(i);
+            for (int b = from; b < from + rowBytes; b += Double.BYTES) {
+                double anabolicLevel = anabolic.getDouble(b);
+                double catabolicLevel = catabolic.getDouble(b);
+                anabolic.putDouble(b, anabolicLevel - 0.48 * log10(anabolicLevel) * hours);
+                catabolic.putDouble(b, catabolicLevel - 0.5 * log10(catabolicLevel) * hours);
+            }
+        }
+    }
+
+    /**
+     * Clamp the hormone levels of the patches of the given rows to their limits.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void regulateHormones(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            int from = anabolicHormone.offset(i);
+            for (int b = from; b < from + rowBytes; b += Double.BYTES) {
+                double anabolicLevel = anabolic.getDouble(b);
+                double catabolicLevel = catabolic.getDouble(b);
+                anabolicLevel = Math.min(anabolicLevel, Configuration.ANABOLIC_HORMONE_MAX);
+                anabolicLevel = Math.max(anabolicLevel, Configuration.ANABOLIC_HORMONE_MIN);
+                catabolicLevel = Math.min(catabolicLevel, Configuration.CATABOLIC_HORMONE_MAX);
+                catabolicLevel = Math.max(catabolicLevel, Configuration.CATABOLIC_HORMONE_MIN);
+                anabolic.putDouble(b, anabolicLevel);
+                catabolic.putDouble(b, catabolicLevel);
+            }
+        }
+    }
+
+    /**
+     * Grow and regulate the muscle fibers of the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developMuscle(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            ByteBuffer size = fiberSize.chunk(i);
+            ByteBuffer max = maxSize.chunk(i);
+            int from = fiberSize.offset(i);
+            int m = maxSize.offset(i);
+            for (int b = from; b < from + rowBytes; b += Double.BYTES, m++) {
+                double catabolicLog = log10(catabolic.getDouble(b));
+                double fiber = size.getDouble(b);
+                fiber -= 0.2 * catabolicLog;
+                fiber += 0.2 * Math.min(log10(anabolic.getDouble(b)), 1.05 * catabolicLog);
+                size.putDouble(b, regulateMuscleFiber(fiber, max.get(m)));
+            }
+        }
+    }
+
+    /**
+     * Ensures that the size of a muscle fiber does not exceed its maximum or fall below 1.
+     *
+     * @param size size of the muscle fiber
+     * @param max maximum size of the muscle fiber
+     * @return regulated size
+     */
+    private static double regulateMuscleFiber(double size, int max) {
+        if (size < 1) {
+            size = 1;
+        }
+        if (size > max) {
+            size = max;
+        }
+        return size;
+    }
+
+    /**
+     * Base 10 logarithm, approximated when the configuration asks for fast math.
+     *
+     * @param x argument
+     * @return log10 of x
+     */
+    private double log10(double x) {
+        return fastMath ? FastLog10.log10(x) : Math.log10(x);
+    }
+
+    /**
+     * Implementation of Netlogo's diffuse function, exchanging shares through the padded
+     * share buffers so the neighbour loop has no bounds checks.
+     *
+     * Every stripe stores its shares before any stripe gathers, so stripes only ever read
+     * the levels from before diffusion.
+     */
+    @Override
+    public void diffuse() {
+        sumsValid = false;
+        stripes.forEach(storeSharesTask);
+        stripes.forEach(gatherSharesTask);
+    }
+
+    /**
+     * Store the shares handed out by the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void storeShares(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            ByteBuffer anabolicShare = anabolicShares.chunk(i + 1);
+            ByteBuffer catabolicShare = catabolicShares.chunk(i + 1);
+            int from = anabolicHormone.offset(i);
+            int p = anabolicShares.offset(i + 1) + Double.BYTES;
+            for (int b = from; b < from + rowBytes; b += Double.BYTES, p += Double.BYTES) {
+                anabolicShare.putDouble(p, DiffusionStencil.share(anabolic.getDouble(b)));
+                catabolicShare.putDouble(p, DiffusionStencil.share(catabolic.getDouble(b)));
+            }
+        }
+    }
+
+    /**
+     * Replace the levels of the patches of the given rows with their diffused levels.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void gatherShares(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            int from = anabolicHormone.offset(i);
+
+            // the padded rows above, of and below the row may lie in different chunks
+            ByteBuffer anabolicAbove = anabolicShares.chunk(i);
+            ByteBuffer anabolicRow = anabolicShares.chunk(i + 1);
+            ByteBuffer anabolicBelow = anabolicShares.chunk(i + 2);
+            ByteBuffer catabolicAbove = catabolicShares.chunk(i);
+            ByteBuffer catabolicRow = catabolicShares.chunk(i + 1);
+            ByteBuffer catabolicBelow = catabolicShares.chunk(i + 2);
+            int above = anabolicShares.offset(i) + Double.BYTES;
+            int p = anabolicShares.offset(i + 1) + Double.BYTES;
+            int below = anabolicShares.offset(i + 2) + Double.BYTES;
+
+            int rows = 1 + (i > 0 ? 1 : 0) + (i < width - 1 ? 1 : 0);
+            for (int j = 0, b = from; j < height; j++, b += Double.BYTES) {
+                int columns = 1 + (j > 0 ? 1 : 0) + (j < height - 1 ? 1 : 0);
+                int neighbours = rows * columns - 1;
+                anabolic.putDouble(b, gather(
+                    anabolicAbove, anabolicRow, anabolicBelow,
+                    above, p, below, neighbours, anabolic.getDouble(b)
+                ));
+                catabolic.putDouble(b, gather(
+                    catabolicAbove, catabolicRow, catabolicBelow,
+                    above, p, below, neighbours, catabolic.getDouble(b)
+                ));
+                above += Double.BYTES;
+                p += Double.BYTES;
+                below += Double.BYTES;
+            }
+        }
+    }
+
+    /**
+     * Apply the shares of the 3x3 block around a padded slot, in row-major order of the
+     * patches handing them out. Halo slots hold zero, which leaves the level unchanged.
+     *
+     * @param aboveRow chunk of the padded row above
+     * @param row chunk of the padded row of the patch
+     * @param belowRow chunk of the padded row below
+     * @param above byte offset of the slot above the patch
+     * @param p byte offset of the slot of the patch
+     * @param below byte offset of the slot below the patch
+     * @param neighbours number of real neighbours of the patch
+     * @param level hormone level of the patch before diffusion
+     * @return hormone level after diffusion
+     */
+    private static double gather(
+        ByteBuffer aboveRow,
+        ByteBuffer row,
+        ByteBuffer belowRow,
+        int above,
+        int p,
+        int below,
+        int neighbours,
+        double level
+    ) {
+        return level
+            + aboveRow.getDouble(above - Double.BYTES)
+            + aboveRow.getDouble(above)
+            + aboveRow.getDouble(above + Double.BYTES)
+            + row.getDouble(p - Double.BYTES)
+            - row.getDouble(p) * neighbours
+            + row.getDouble(p + Double.BYTES)
+            + belowRow.getDouble(below - Double.BYTES)
+            + belowRow.getDouble(below)
+            + belowRow.getDouble(below + Double.BYTES);
+    }
+
+    @Override
+    public void saveState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        for (int i = 0; i < width; i++) {
+            ByteBuffer anabolicRow = anabolicHormone.chunk(i);
+            ByteBuffer catabolicRow = catabolicHormone.chunk(i);
+            ByteBuffer size = this.fiberSize.chunk(i);
+            ByteBuffer max = this.maxSize.chunk(i);
+            int b = this.fiberSize.offset(i);
+            int m = this.maxSize.offset(i);
+
+            for (int j = 0, k = i * height; j < height; j++, k++, b += Double.BYTES, m++) {
+                anabolic[k] = anabolicRow.getDouble(b);
+                catabolic[k] = catabolicRow.getDouble(b);
+                fiberSize[k] = size.getDouble(b);
+                maxSize[k] = max.get(m);
+            }
+        }
+    }
+
+    @Override
+    public void loadState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        sumsValid = false;
+        for (int i = 0; i < width; i++) {
+            ByteBuffer anabolicRow = anabolicHormone.chunk(i);
+            ByteBuffer catabolicRow = catabolicHormone.chunk(i);
+            ByteBuffer size = this.fiberSize.chunk(i);
+            ByteBuffer max = this.maxSize.chunk(i);
+            int b = this.fiberSize.offset(i);
+            int m = this.maxSize.offset(i);
+
+            for (int j = 0, k = i * height; j < height; j++, k++, b += Double.BYTES, m++) {
+                anabolicRow.putDouble(b, anabolic[k]);
+                catabolicRow.putDouble(b, catabolic[k]);
+                size.putDouble(b, fiberSize[k]);
+                max.put(m, (byte) maxSize[k]);
+            }
+        }
+    }
+
+    /**
+     * Sum every field of the state in index order in a single scan, or row by row with
+     * compensation.
+     */
+    private void updateSums() {
+        if (compensatedSums != null) {
+            for (int i = 0; i < width; i++) {
+                sumRow(i);
+            }
+            storeCompensatedTotals();
+            return;
+        }
+
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+        for (int i = 0; i < width; i++) {
+            ByteBuffer anabolic = anabolicHormone.chunk(i);
+            ByteBuffer catabolic = catabolicHormone.chunk(i);
+            ByteBuffer size = fiberSize.chunk(i);
+            int from = fiberSize.offset(i);
+            for (int b = from; b < from + rowBytes; b += Double.BYTES) {
+                anabolicTotal += anabolic.getDouble(b);
+                catabolicTotal += catabolic.getDouble(b);
+                massTotal += size.getDouble(b);
+            }
+        }
+        sumAnabolic = anabolicTotal;
+        sumCatabolic = catabolicTotal;
+        sumMass = massTotal;
+        sumsValid = true;
+    }
+
+    /**
+     * Compensated sums of every field of the state over a row.
+     *
+     * @param i row
+     */
+    private void sumRow(int i) {
+        ByteBuffer anabolic = anabolicHormone.chunk(i);
+        ByteBuffer catabolic = catabolicHormone.chunk(i);
+        ByteBuffer size = fiberSize.chunk(i);
+        int from = fiberSize.offset(i);
+        compensatedSums.clearRow(i);
+        for (int b = from; b < from + rowBytes; b += Double.BYTES) {
+            compensatedSums.add(i, CompensatedSums.ANABOLIC, anabolic.getDouble(b));
+            compensatedSums.add(i, CompensatedSums.CATABOLIC, catabolic.getDouble(b));
+            compensatedSums.add(i, CompensatedSums.MASS, size.getDouble(b));
+        }
+    }
+
+    /**
+     * Merge the compensated sums of the rows into the sums of the state.
+     */
+    private void storeCompensatedTotals() {
+        sumAnabolic = compensatedSums.total(CompensatedSums.ANABOLIC);
+        sumCatabolic = compensatedSums.total(CompensatedSums.CATABOLIC);
+        sumMass = compensatedSums.total(CompensatedSums.MASS);
+        sumsValid = true;
+    }
+
+    @Override
+    public double getAverageAnabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumAnabolic / totalGrid;
+    }
+
+    @Override
+    public double getAverageCatabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumCatabolic / totalGrid;
+    }
+
+    @Override
+    public double getMuscleMass() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumMass / 100;
+    }
+}
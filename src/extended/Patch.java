@@ -14,20 +14,16 @@
 
 package extended;
 
-import java.util.Random;
-
 public class Patch {
 
-    private static final Configuration config = Configuration.getInstance();
-
-    private Random random = new Random();
-    
+    private Configuration config;       // configuration of the simulation
     private Muscle muscle;              // muscle which the patch belongs to
     private MuscleFiber muscleFiber;    // muscle fiber which resides in the patch
 
     // Coordinate for the patch.
     private int coordX;
     private int coordY;
+    private int index;                  // coordX * grid height + coordY, keys random draws
 
     // Current level of anabolic and catabolic hormone for the patch.
     private double anabolicHormone;
@@ -39,14 +35,17 @@ public class Patch {
      * to their minimum values.
      * 
      * @param muscle the muscle which the patch belongs to
+     * @param config configuration of the simulation
      * @param coordX x coordinate of the patch
      * @param coordY y coordinate of the patch
      */
-    public Patch(Muscle muscle, int coordX, int coordY) {
+    public Patch(Muscle muscle, Configuration config, int coordX, int coordY) {
         this.muscle = muscle;
+        this.config = config;
         this.coordX = coordX;
         this.coordY = coordY;
-        this.muscleFiber = new MuscleFiber();
+        this.index = coordX * config.getGridHeight() + coordY;
+        this.muscleFiber = new MuscleFiber(config, index);
         this.anabolicHormone = Configuration.ANABOLIC_HORMONE_MIN;
         this.catabolicHormone = Configuration.CATABOLIC_HORMONE_MIN;
     }
@@ -58,8 +57,10 @@ public class Patch {
      */
     public Patch(Patch other) {
         this.muscle = other.muscle;
+        this.config = other.config;
         this.coordX = other.coordX;
         this.coordY = other.coordY;
+        this.index = other.index;
         this.muscleFiber = other.muscleFiber;
         this.anabolicHormone = other.anabolicHormone;
         this.catabolicHormone = other.catabolicHormone;
@@ -71,25 +72,31 @@ public class Patch {
      * Increases both anabolic and catabolic hormones proportionally to the muscle fiber size.
      */
     public void performDailyActivity() {
-        anabolicHormone += Math.log10(muscleFiber.getFiberSize()) * 2.5;
-        catabolicHormone += Math.log10(muscleFiber.getFiberSize()) * 2.0;
+        anabolicHormone += log10(muscleFiber.getFiberSize()) * 2.5;
+        catabolicHormone += log10(muscleFiber.getFiberSize()) * 2.0;
     }
 
     /**
      * Simulates the effect of weight lifting on the hormone levels.
      * 
      * Hormone levels are increased based on the intensity and muscle fiber size.
+     * 
+     * @param tic tic the lift happens at, which keys the random draw
      */
-    public void liftWeight() {
-        double intensity = (double) config.getIntensity() / 100;
-        double threshold = intensity * intensity;
-
-        if (random.nextDouble() < threshold) {
-            anabolicHormone += Math.log10(muscleFiber.getFiberSize()) * 55;
-            catabolicHormone += Math.log10(muscleFiber.getFiberSize()) * 44;
+    public void liftWeight(int tic) {
+        if (CounterRandom.uniform(config.getSeed(), tic, index, 0) < config.getLiftThreshold()) {
+            lift();
         }
     }
 
+    /**
+     * Applies the hormonal effect of weight lifting to a patch the lift was drawn to affect.
+     */
+    public void lift() {
+        anabolicHormone += log10(muscleFiber.getFiberSize()) * 55;
+        catabolicHormone += log10(muscleFiber.getFiberSize()) * 44;
+    }
+
     /**
      * Simulates the effect of quality of nutrition intake on the hormone levels.
      * 
@@ -102,14 +109,12 @@ public class Patch {
      *                             and negative impact on catabolic hormone
      * 
      * The hormone level is regulated with the use of sigmoid function with a constant to skew
-     * the function to have 0 value when nutrition quality is equal to 0.
+     * the function to have 0 value when nutrition quality is equal to 0.5, which the
+     * configuration folds into its nutrition delta once per run.
      */
     public void eat() {
-        // offset value to have no effect when nutrition quality equals to 0.5
-        double offset = 1 / (1 + Math.exp(-0.5));
-
         // amount of hormone level that needs to be changed.
-        double delta = 0.5 * ((1 / (1 + Math.exp(-config.getNutritionQuality()))) - offset);
+        double delta = config.getNutritionDelta();
 
         anabolicHormone += anabolicHormone * delta;
         catabolicHormone -= catabolicHormone * delta;
@@ -121,8 +126,8 @@ public class Patch {
      * Decreases both anabolic and catabolic hormones based on the number of hours of sleep.
      */
     public void sleep() {
-        anabolicHormone -= 0.48 * Math.log10(anabolicHormone) * config.getHourseOfSleep();
-        catabolicHormone -= 0.5 * Math.log10(catabolicHormone) * config.getHourseOfSleep();
+        anabolicHormone -= 0.48 * log10(anabolicHormone) * config.getHourseOfSleep();
+        catabolicHormone -= 0.5 * log10(catabolicHormone) * config.getHourseOfSleep();
     }
 
     /**
@@ -147,6 +152,16 @@ public class Patch {
         catabolicHormone = Math.max(catabolicHormone, Configuration.CATABOLIC_HORMONE_MIN);
     }
 
+    /**
+     * Base 10 logarithm, approximated when the configuration asks for fast math.
+     * 
+     * @param x argument
+     * @return log10 of x
+     */
+    private double log10(double x) {
+        return config.isFastMath() ? FastLog10.log10(x) : Math.log10(x);
+    }
+
     /**
      * Getter methods for muscle fiber
      * 
@@ -174,6 +189,24 @@ public class Patch {
         return this.catabolicHormone;
     }
 
+    /**
+     * Setter methods for anabolic hormone
+     * 
+     * @param anabolicHormone new level of anabolic hormone
+     */
+    public void setAnabolicHormone(double anabolicHormone) {
+        this.anabolicHormone = anabolicHormone;
+    }
+
+    /**
+     * Setter methods for catabolic hormone
+     * 
+     * @param catabolicHormone new level of catabolic hormone
+     */
+    public void setCatabolicHormone(double catabolicHormone) {
+        this.catabolicHormone = catabolicHormone;
+    }
+
     /**
      * Increase level of anabolic hormome base on the amount given
      * 
@@ -0,0 +1,132 @@
+/**
+ * Accuracy report of single precision state against the double precision reference.
+ *
+ * Two simulations of the same configuration and seed, one storing the state as double and
+ * one as float, are advanced in lockstep so they see the same random draws. The absolute
+ * deviation of each series written to the CSV, muscle mass and the average anabolic and
+ * catabolic hormone, is recorded tic by tic, giving its largest and its mean deviation over
+ * the run.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PrecisionReport {
+
+    private static final int MASS = 0;      // index of the muscle mass series
+    private static final int ANABOLIC = 1;  // index of the average anabolic hormone series
+    private static final int CATABOLIC = 2; // index of the average catabolic hormone series
+    private static final String[] SERIES = {"MuscleMass", "Anabolic", "Catabolic"};
+
+    private int samples;                            // number of tics compared, including tic 0
+    private double[] maxDeviation = new double[3];  // largest absolute deviation of each series
+    private int[] maxDeviationTic = new int[3];     // tic of the largest deviation
+    private double[] sumDeviation = new double[3];  // sum of the absolute deviations
+    private double[] maxRelative = new double[3];   // largest deviation relative to reference
+
+    /**
+     * Run the double and the float simulation of the configuration until its upper bound for
+     * tic and compare their metrics.
+     *
+     * @param config configuration for simulation, precision setting is ignored
+     * @param engine name of the state engine of the double precision reference
+     * @param pool pool running each phase over row stripes, or null to run sequentially
+     */
+    public PrecisionReport(Configuration config, String engine, ForkJoinPool pool) {
+        Simulation reference = new Simulation(config.withSinglePrecision(false), engine, pool);
+        Simulation single = new Simulation(config.withSinglePrecision(true), "array", pool);
+
+        compare(reference, single);
+        while (!reference.isFinished()) {
+            reference.go();
+            single.go();
+            compare(reference, single);
+        }
+    }
+
+    /**
+     * Record the deviations between the metrics of the current tic.
+     *
+     * @param reference simulation storing the state as double
+     * @param single simulation storing the state as float
+     */
+    private void compare(Simulation reference, Simulation single) {
+        record(MASS, reference.getTic(), reference.getMuscleMass(), single.getMuscleMass());
+        record(
+            ANABOLIC,
+            reference.getTic(),
+            reference.getAverageAnabolic(),
+            single.getAverageAnabolic()
+        );
+        record(
+            CATABOLIC,
+            reference.getTic(),
+            reference.getAverageCatabolic(),
+            single.getAverageCatabolic()
+        );
+        samples++;
+    }
+
+    /**
+     * Record the deviation of one series at a tic.
+     *
+     * @param series index of the series
+     * @param tic tic of the metrics
+     * @param expected value of the double precision reference
+     * @param actual value of the single precision run
+     */
+    private void record(int series, int tic, double expected, double actual) {
+        double deviation = Math.abs(actual - expected);
+        if (deviation > maxDeviation[series]) {
+            maxDeviation[series] = deviation;
+            maxDeviationTic[series] = tic;
+        }
+        sumDeviation[series] += deviation;
+        if (expected != 0) {
+            maxRelative[series] = Math.max(maxRelative[series], deviation / Math.abs(expected));
+        }
+    }
+
+    /**
+     * Print the report to the console.
+     */
+    public void print() {
+        System.out.printf("Single precision accuracy against double over %d tics:%n", samples);
+        for (int series = 0; series < SERIES.length; series++) {
+            System.out.printf(
+                "  %-10s max %.3e at tic %d (relative %.3e), mean %.3e%n",
+                SERIES[series],
+                maxDeviation[series],
+                maxDeviationTic[series],
+                maxRelative[series],
+                getMeanDeviation(series)
+            );
+        }
+    }
+
+    /**
+     * Getter method for the largest deviation in muscle mass
+     *
+     * @return largest absolute deviation in muscle mass over every tic
+     */
+    public double getMaxMassDeviation() {
+        return this.maxDeviation[MASS];
+    }
+
+    /**
+     * Mean absolute deviation of a series over every tic.
+     *
+     * @param series index of the series
+     * @return mean absolute deviation
+     */
+    private double getMeanDeviation(int series) {
+        return sumDeviation[series] / samples;
+    }
+}
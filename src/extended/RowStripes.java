@@ -0,0 +1,107 @@
+/**
+ * Runs a task over the rows of the grid, either on the calling thread or split into row
+ * stripes executed by a ForkJoinPool.
+ *
+ * Every phase of a tic only touches the patches of the rows it is given, so stripes can run
+ * concurrently. Phases that read neighbouring rows, like diffusion, are split into a step
+ * reading the old state and a step writing the new state, each run through its own call.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class RowStripes {
+
+    private static final int STRIPES_PER_THREAD = 4; // stripes per thread for load balancing
+
+    private ForkJoinPool pool;  // pool running the stripes, null to run on the caller
+    private int rows;           // number of rows of the grid
+    private int grain;          // maximum number of rows in a stripe
+
+    /**
+     * Work applied to a contiguous range of rows.
+     */
+    public interface RowTask {
+
+        /**
+         * Process rows from fromRow (inclusive) to toRow (exclusive).
+         *
+         * @param fromRow first row of the stripe
+         * @param toRow row after the last row of the stripe
+         */
+        void run(int fromRow, int toRow);
+    }
+
+    /**
+     * Constructor for RowStripes.
+     *
+     * @param pool pool running the stripes, or null to run every task on the calling thread
+     * @param rows number of rows of the grid
+     */
+    public RowStripes(ForkJoinPool pool, int rows) {
+        this.pool = pool != null && pool.getParallelism() > 1 ? pool : null;
+        this.rows = rows;
+        this.grain = this.pool == null
+            ? rows
+            : Math.max(1, rows / (this.pool.getParallelism() * STRIPES_PER_THREAD));
+    }
+
+    /**
+     * Run the task over every row of the grid and wait until all stripes are done.
+     *
+     * @param task work applied to each stripe
+     */
+    public void forEach(RowTask task) {
+        if (pool == null || rows <= grain) {
+            task.run(0, rows);
+        } else {
+            pool.invoke(new Stripe(task, 0, rows));
+        }
+    }
+
+    /**
+     * Whether tasks are split across a pool.
+     *
+     * @return true if stripes run concurrently
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Fork/join action halving its range of rows until it is no larger than the grain.
+     */
+    private class Stripe extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private RowTask task;
+        private int fromRow;
+        private int toRow;
+
+        Stripe(RowTask task, int fromRow, int toRow) {
+            this.task = task;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= grain) {
+                task.run(fromRow, toRow);
+                return;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new Stripe(task, fromRow, middle), new Stripe(task, middle, toRow));
+        }
+    }
+}
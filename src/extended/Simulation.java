@@ -0,0 +1,393 @@
+/**
+ * A single run of the muscle development model.
+ *
+ * A simulation owns its configuration, its muscle and the metrics of the current tic, so any
+ * number of simulations with different parameters can be created and advanced in the same
+ * JVM, including concurrently from different threads.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+public class Simulation {
+
+    // SIMD engine, only compiled and loadable with the jdk.incubator.vector module
+    private static final String VECTOR_ENGINE = "extended.vector.VectorMuscle";
+
+    private Configuration config;    // configuration for simulation
+    private MuscleEngine muscle;     // muscle which will be inspected
+    private int tic;                 // indicate iteration step of simulation
+    private double muscleMass;       // sum of muscle fiber size divided by 100
+    private double averageAnabolic;  // average anabolic hormone level in muscle
+    private double averageCatabolic; // average catabolic hormone level in muscle
+    private ConvergenceDetector detector; // detector ending the run, null if it never ends early
+
+    /**
+     * Set up a simulation running every phase on the calling thread.
+     *
+     * @param config configuration for simulation
+     * @param engine name of the state engine: "object", "array", "active", "vector" or "offheap"
+     */
+    public Simulation(Configuration config, String engine) {
+        this(config, engine, null);
+    }
+
+    /**
+     * Set up the simulation to be run.
+     *
+     * @param config configuration for simulation
+     * @param engine name of the state engine: "object", "array", "active", "vector" or "offheap"
+     * @param pool pool running each phase over row stripes, or null to run sequentially. The
+     *             pool may be shared between simulations and is not shut down by them.
+     */
+    public Simulation(Configuration config, String engine, ForkJoinPool pool) {
+        this(config, engine, pool, null);
+    }
+
+    /**
+     * Set up the simulation to be run, mapping the state of the off-heap engine from a file.
+     *
+     * @param config configuration for simulation
+     * @param engine name of the state engine: "object", "array", "active", "vector" or "offheap"
+     * @param pool pool running each phase over row stripes, or null to run sequentially. The
+     *             pool may be shared between simulations and is not shut down by them.
+     * @param stateFile file the off-heap engine maps its state from, or null to keep it in
+     *                  direct buffers. Ignored by the other engines.
+     */
+    public Simulation(Configuration config, String engine, ForkJoinPool pool, Path stateFile) {
+        this.config = config;
+        this.tic = 0;
+        this.muscle = createMuscle(config, engine, pool, stateFile);
+        if (config.getConvergenceWindow() > 0) {
+            this.detector = new ConvergenceDetector(config);
+        }
+        muscle.triggerRegulateHormones();
+        updateMetrics();
+    }
+
+    /**
+     * Set up a simulation continuing from a checkpoint, with the configuration and engine
+     * of the checkpoint.
+     *
+     * @param checkpoint checkpoint the state is restored from
+     * @param pool pool running each phase over row stripes, or null to run sequentially. The
+     *             pool may be shared between simulations and is not shut down by them.
+     * @param stateFile file the off-heap engine maps its state from, or null to keep it in
+     *                  direct buffers. Ignored by the other engines.
+     */
+    public Simulation(Checkpoint checkpoint, ForkJoinPool pool, Path stateFile) {
+        this.config = checkpoint.getConfiguration();
+        this.tic = checkpoint.getTic();
+        this.muscle = createMuscle(config, checkpoint.getEngine(), pool, stateFile);
+        if (config.getConvergenceWindow() > 0) {
+            this.detector = new ConvergenceDetector(config);
+        }
+        checkpoint.restore(muscle, detector);
+        readMetrics();
+    }
+
+    /**
+     * Create the muscle backed by the requested state engine. The vector engine falls back
+     * to the array engine, which gives the same output, when it cannot be loaded. Single
+     * precision state is only kept in the array layout, so it replaces every engine.
+     *
+     * @param config configuration for simulation
+     * @param engine name of the state engine: "object", "array", "active", "vector" or "offheap"
+     * @param pool pool running each phase over row stripes, or null to run sequentially
+     * @param stateFile file the off-heap engine maps its state from, or null
+     * @return newly initialised muscle
+     */
+    private static MuscleEngine createMuscle(
+        Configuration config,
+        String engine,
+        ForkJoinPool pool,
+        Path stateFile
+    ) {
+        if (config.isSinglePrecision()) {
+            if (engine != null && !engine.equals("array")) {
+                System.out.println(
+                    "Warning: single precision runs on the array layout, not the "
+                        + engine + " engine"
+                );
+            }
+            return new FloatMuscle(config, pool);
+        }
+        if (engine == null || engine.equals("object")) {
+            return new Muscle(config, pool);
+        } else if (engine.equals("array")) {
+            return new ArrayMuscle(config, pool);
+        } else if (engine.equals("active")) {
+            return new ArrayMuscle(config, pool, true);
+        } else if (engine.equals("offheap")) {
+            return new OffHeapMuscle(config, pool, stateFile);
+        } else if (engine.equals("vector")) {
+            try {
+                return (MuscleEngine) Class.forName(VECTOR_ENGINE)
+                    .getConstructor(Configuration.class, ForkJoinPool.class)
+                    .newInstance(config, pool);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.out.println(
+                    "Warning: vector engine unavailable (" + e + "), using the array engine"
+                );
+                return new ArrayMuscle(config, pool);
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+
+    /**
+     * Estimate the memory needed by the grid state of a simulation, which the off-heap
+     * engine keeps outside the heap.
+     *
+     * @param config configuration for simulation
+     * @param engine name of the state engine: "object", "array", "active", "vector" or "offheap"
+     * @return estimated bytes
+     */
+    public static long estimateMemory(Configuration config, String engine) {
+        int width = config.getGridWidth();
+        int height = config.getGridHeight();
+        long lifted = config.isGeometricLift() ? LiftSampler.estimateMemory(width, height) : 0;
+        return estimateState(config, engine, width, height) + lifted;
+    }
+
+    /**
+     * Estimate the memory taken by the state arrays or objects of an engine.
+     *
+     * @param config configuration for simulation
+     * @param engine name of the state engine
+     * @param width width of grid
+     * @param height height of grid
+     * @return estimated bytes
+     */
+    private static long estimateState(Configuration config, String engine, int width, int height) {
+        if (config.isSinglePrecision()) {
+            return FloatMuscle.estimateMemory(width, height);
+        }
+        if (engine == null || engine.equals("object")) {
+            return Muscle.estimateMemory(width, height);
+        } else if (engine.equals("offheap")) {
+            return OffHeapMuscle.estimateMemory(width, height);
+        } else if (engine.equals("active")) {
+            return ArrayMuscle.estimateMemory(width, height)
+                + ActiveTiles.estimateMemory(width, height);
+        } else if (engine.equals("vector")) {
+            try {
+                return (Long) Class.forName(VECTOR_ENGINE)
+                    .getMethod("estimateMemory", int.class, int.class)
+                    .invoke(null, width, height);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // the array engine is used instead
+            }
+        }
+        return ArrayMuscle.estimateMemory(width, height);
+    }
+
+    /**
+     * Run one tic of the simulation and advance the tic counter.
+     */
+    public void go() {
+        boolean lift = config.isLift() && tic % config.getDaysBetweenWorkouts() == 0;
+        muscle.triggerTic(tic, lift);
+
+        tic++;
+        updateMetrics();
+    }
+
+    /**
+     * Run the simulation until the upper bound for tic, or until it converged, saving the
+     * configuration and the status of every tic in CSV form.
+     *
+     * A converged run saves the tic it converged at after the status rows. With fast forward
+     * the status of the remaining tics is saved first, repeating the steady state instead of
+     * simulating it.
+     *
+     * @param sink sink the CSV is saved to
+     * @throws IOException if writing fails
+     */
+    public void run(CsvSink sink) throws IOException {
+        run(sink, null);
+    }
+
+    /**
+     * Run the simulation as {@link #run(CsvSink)} does, saving a checkpoint whenever the
+     * writer has one due.
+     *
+     * @param sink sink the CSV is saved to
+     * @param writer writer of the checkpoints, or null to save none
+     * @throws IOException if writing fails
+     */
+    public void run(CsvSink sink, CheckpointWriter writer) throws IOException {
+        sink.writeConfiguration(config);
+        sink.writeStatusHeader();
+        writeCurrentStatus(sink);
+        resume(sink, writer);
+    }
+
+    /**
+     * Continue the simulation from its current tic, appending the status of the following
+     * tics to a CSV already holding those up to the current tic.
+     *
+     * @param sink sink the CSV is saved to
+     * @param writer writer of the checkpoints, or null to save none
+     * @throws IOException if writing fails
+     */
+    public void resume(CsvSink sink, CheckpointWriter writer) throws IOException {
+        while (!isFinished()) {
+            go();
+
+            // save the current status to output file
+            writeCurrentStatus(sink);
+
+            // the CSV is forced to the disk so the checkpoint never counts bytes it has not
+            if (writer != null && writer.isDue(tic)) {
+                sink.force();
+                writer.save(this, sink.getLength());
+            }
+        }
+
+        if (hasConverged()) {
+            if (config.isFastForward()) {
+                for (int next = tic + 1; next <= config.getMaxTic(); next++) {
+                    sink.writeStatus(
+                        next,
+                        detector.getMuscleMass(next),
+                        detector.getAverageAnabolic(next),
+                        detector.getAverageCatabolic(next)
+                    );
+                }
+            }
+            sink.writeConvergence(detector.getConvergenceTic());
+        }
+    }
+
+    /**
+     * Copy the state of the current tic into a checkpoint.
+     *
+     * @param checkpoint checkpoint of the configuration and engine of the simulation
+     * @param csvLength bytes of the CSV saved up to and including the current tic
+     */
+    public void save(Checkpoint checkpoint, long csvLength) {
+        checkpoint.capture(tic, csvLength, muscle, detector);
+    }
+
+    /**
+     * Save the current tic, muscleMass, average anabolic and catabolic to the CSV.
+     *
+     * @param sink sink the CSV is saved to
+     * @throws IOException if writing fails
+     */
+    public void writeCurrentStatus(CsvSink sink) throws IOException {
+        sink.writeStatus(tic, muscleMass, averageAnabolic, averageCatabolic);
+    }
+
+    /**
+     * Whether the simulation reached the upper bound for tic or converged.
+     *
+     * @return true if no tic is left to run
+     */
+    public boolean isFinished() {
+        return tic >= config.getMaxTic() || hasConverged();
+    }
+
+    /**
+     * Whether the simulation reached its steady state, which is only detected when the
+     * configuration has a convergence window.
+     *
+     * @return true if the simulation converged
+     */
+    public boolean hasConverged() {
+        return detector != null && detector.getConvergenceTic() >= 0;
+    }
+
+    /**
+     * Getter method for the convergence tic
+     *
+     * @return tic the simulation converged at, or -1 if it did not converge
+     */
+    public int getConvergenceTic() {
+        return detector != null ? detector.getConvergenceTic() : -1;
+    }
+
+    /**
+     * Read the metrics of the current tic from the muscle and hand them to the convergence
+     * detector.
+     */
+    private void updateMetrics() {
+        readMetrics();
+        if (detector != null) {
+            detector.observe(tic, muscleMass, averageAnabolic, averageCatabolic);
+        }
+    }
+
+    /**
+     * Read the metrics of the current tic from the muscle.
+     */
+    private void readMetrics() {
+        muscleMass = muscle.getMuscleMass();
+        averageAnabolic = muscle.getAverageAnabolicHormone();
+        averageCatabolic = muscle.getAverageCatabolicHormone();
+    }
+
+    /**
+     * Getter method for configuration
+     *
+     * @return configuration for simulation
+     */
+    public Configuration getConfiguration() {
+        return this.config;
+    }
+
+    /**
+     * Getter method for muscle
+     *
+     * @return muscle which will be inspected
+     */
+    public MuscleEngine getMuscle() {
+        return this.muscle;
+    }
+
+    /**
+     * Getter method for tic
+     *
+     * @return number of tics run so far
+     */
+    public int getTic() {
+        return this.tic;
+    }
+
+    /**
+     * Getter method for muscle mass
+     *
+     * @return sum of muscle fiber size divided by 100 at current tic
+     */
+    public double getMuscleMass() {
+        return this.muscleMass;
+    }
+
+    /**
+     * Getter method for average anabolic hormone
+     *
+     * @return average anabolic hormone level at current tic
+     */
+    public double getAverageAnabolic() {
+        return this.averageAnabolic;
+    }
+
+    /**
+     * Getter method for average catabolic hormone
+     *
+     * @return average catabolic hormone level at current tic
+     */
+    public double getAverageCatabolic() {
+        return this.averageCatabolic;
+    }
+}
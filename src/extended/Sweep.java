@@ -0,0 +1,641 @@
+/**
+ * Sweep class responsible for running many configurations of the simulation in one JVM.
+ *
+ * The configurations are either the cartesian product of the values given for each
+ * parameter on the command line or the rows of a scenario file. Every configuration runs as
+ * an independent Simulation on a bounded pool of worker threads and its result is saved to
+ * its own CSV, named after its parameters the same way as the Netlogo outputs, e.g.
+ * MD_95_8_5_50_T.csv for intensity 95, 8 hours of sleep, 5 days between workouts, 50% slow
+ * twitch fibers and lift.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Sweep {
+
+    // parameters that can be swept, in the order they appear in the output file name
+    private static final String INTENSITY = "intensity";
+    private static final String HOURS_OF_SLEEP = "hoursOfSleep";
+    private static final String DAYS_BW_WORKOUTS = "daysBwWorkouts";
+    private static final String SLOW_TWITCH = "slowTwitchFibersPercentage";
+    private static final String LIFT = "lift";
+    private static final String NUTRITION_QUALITY = "nutritionQuality";
+
+    private static final double NEUTRAL_NUTRITION_QUALITY = 0.5; // no effect on hormones
+
+    /**
+     * Build the configurations for every combination of the given parameter values.
+     *
+     * @param intensities values of intensity
+     * @param hoursOfSleep values of hours of sleep
+     * @param daysBwWorkouts values of days between workouts
+     * @param slowTwitchFibersPercentages values of slow twitch fibers percentage
+     * @param lifts values of lift
+     * @param nutritionQualities values of nutrition quality
+     * @param gridWidth width of grid
+     * @param gridHeight height of grid
+     * @param maxTic upper bound for tic
+     * @param seed seed shared by every configuration
+     * @return configurations of the parameter grid
+     * @throws IllegalArgumentException if two configurations have the same output file
+     */
+    public static List<Configuration> expandGrid(
+        List<String> intensities,
+        List<String> hoursOfSleep,
+        List<String> daysBwWorkouts,
+        List<String> slowTwitchFibersPercentages,
+        List<String> lifts,
+        List<String> nutritionQualities,
+        int gridWidth,
+        int gridHeight,
+        int maxTic,
+        long seed
+    ) {
+        List<Configuration> configs = new ArrayList<>();
+        Map<String, String> names = new HashMap<>();
+
+        for (String intensity : intensities) {
+            for (String sleep : hoursOfSleep) {
+                for (String days : daysBwWorkouts) {
+                    for (String slowTwitch : slowTwitchFibersPercentages) {
+                        for (String lift : lifts) {
+                            for (String nutrition : nutritionQualities) {
+                                Configuration config = new Configuration(
+                                    Integer.parseInt(intensity),
+                                    Double.parseDouble(sleep),
+                                    Integer.parseInt(days),
+                                    Integer.parseInt(slowTwitch),
+                                    Boolean.parseBoolean(lift),
+                                    Double.parseDouble(nutrition),
+                                    gridWidth,
+                                    gridHeight,
+                                    maxTic,
+                                    seed
+                                );
+                                String place = "grid configuration " + (configs.size() + 1);
+                                reserveFileName(names, config, place);
+                                configs.add(config);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return configs;
+    }
+
+    /**
+     * Read the configurations from a scenario file.
+     *
+     * The first line names the columns, using the parameter names of the command line
+     * without the leading dashes, and every following line is one configuration. Parameters
+     * without a column take the given defaults. Blank lines and lines starting with # are
+     * ignored.
+     *
+     * @param path path to the scenario file
+     * @param defaults default value of each parameter, in the order of the file name
+     * @param gridWidth width of grid
+     * @param gridHeight height of grid
+     * @param maxTic upper bound for tic
+     * @param seed seed shared by every configuration
+     * @return configurations of the scenario file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line lacks a column, holds an invalid number or
+     *         has the same output file as an earlier line
+     */
+    public static List<Configuration> readScenarios(
+        String path,
+        String[] defaults,
+        int gridWidth,
+        int gridHeight,
+        int maxTic,
+        long seed
+    ) throws IOException {
+        List<Configuration> configs = new ArrayList<>();
+        Map<String, String> names = new HashMap<>();
+        String[] parameters = {
+            INTENSITY, HOURS_OF_SLEEP, DAYS_BW_WORKOUTS, SLOW_TWITCH, LIFT, NUTRITION_QUALITY
+        };
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            int[] columns = null;
+            int lineNumber = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] cells = line.split(",");
+                if (columns == null) {
+                    columns = new int[parameters.length];
+                    for (int p = 0; p < parameters.length; p++) {
+                        columns[p] = -1;
+                        for (int c = 0; c < cells.length; c++) {
+                            if (cells[c].trim().equals(parameters[p])) {
+                                columns[p] = c;
+                            }
+                        }
+                    }
+                    continue;
+                }
+
+                String[] values = new String[parameters.length];
+                for (int p = 0; p < parameters.length; p++) {
+                    if (columns[p] >= cells.length) {
+                        throw new IllegalArgumentException(
+                            path + ":" + lineNumber + ": missing column " + parameters[p]
+                        );
+                    }
+                    values[p] = columns[p] >= 0 ? cells[columns[p]].trim() : defaults[p];
+                }
+
+                Configuration config;
+                try {
+                    config = new Configuration(
+                        Integer.parseInt(values[0]),
+                        Double.parseDouble(values[1]),
+                        Integer.parseInt(values[2]),
+                        Integer.parseInt(values[3]),
+                        Boolean.parseBoolean(values[4]),
+                        Double.parseDouble(values[5]),
+                        gridWidth,
+                        gridHeight,
+                        maxTic,
+                        seed
+                    );
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                        path + ":" + lineNumber + ": " + e.getMessage(), e
+                    );
+                }
+                reserveFileName(names, config, path + ":" + lineNumber);
+                configs.add(config);
+            }
+        }
+
+        return configs;
+    }
+
+    /**
+     * Parse the values of a swept parameter. Values are separated by commas and each value is
+     * either a single value or an inclusive numeric range from:to:step.
+     *
+     * @param spec values given on the command line
+     * @return list of values
+     */
+    public static List<String> parseValues(String spec) {
+        List<String> values = new ArrayList<>();
+
+        for (String value : spec.split(",")) {
+            String[] range = value.trim().split(":");
+            if (range.length == 1) {
+                values.add(range[0]);
+                continue;
+            }
+
+            double from = Double.parseDouble(range[0]);
+            double to = Double.parseDouble(range[1]);
+            double step = range.length > 2 ? Double.parseDouble(range[2]) : 1;
+            if (step <= 0) {
+                throw new IllegalArgumentException("Step of range " + value + " must be positive");
+            }
+
+            boolean integral = !value.contains(".");
+            for (int n = 0; from + n * step <= to + step * 1e-9; n++) {
+                double v = from + n * step;
+                values.add(integral ? Long.toString(Math.round(v)) : formatNumber(v));
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Name of the output file of a configuration, following the Netlogo outputs:
+     * prefix_intensity_hoursOfSleep_daysBetweenWorkouts_slowTwitchFibersPercentage_lift.csv.
+     * The nutrition quality is appended when it is not the neutral value 0.5.
+     *
+     * @param prefix prefix of the file name
+     * @param config configuration of the run
+     * @return file name
+     */
+    public static String fileName(String prefix, Configuration config) {
+        StringBuilder name = new StringBuilder(prefix)
+            .append('_').append(config.getIntensity())
+            .append('_').append(formatNumber(config.getHourseOfSleep()))
+            .append('_').append(config.getDaysBetweenWorkouts())
+            .append('_').append(config.getSlowTwitchFibersPercentage())
+            .append('_').append(config.isLift() ? 'T' : 'F');
+
+        if (config.getNutritionQuality() != NEUTRAL_NUTRITION_QUALITY) {
+            name.append('_').append(formatNumber(config.getNutritionQuality()));
+        }
+
+        return name.append(".csv").toString();
+    }
+
+    /**
+     * Record the output file name of a configuration, refusing a name an earlier
+     * configuration already has: both runs would write to the same file at the same time.
+     *
+     * @param names place each output file name was first given at
+     * @param config configuration being added
+     * @param place place the configuration is given at, e.g. path:line of a scenario file
+     * @throws IllegalArgumentException if an earlier configuration has the same output file
+     */
+    private static void reserveFileName(
+        Map<String, String> names,
+        Configuration config,
+        String place
+    ) {
+        String name = fileName("", config).substring(1);
+        String earlier = names.putIfAbsent(name, place);
+        if (earlier != null) {
+            throw new IllegalArgumentException(
+                place + ": same output file " + name + " as " + earlier
+            );
+        }
+    }
+
+    /**
+     * Format a number without trailing zeros, e.g. 8.0 as 8 and 0.50 as 0.5.
+     *
+     * @param value number to format
+     * @return formatted number
+     */
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Run every configuration on a pool of worker threads, saving each result to its own CSV
+     * in the output directory.
+     *
+     * @param configs configurations to run
+     * @param outputDir directory the CSVs are saved to
+     * @param prefix prefix of the file names
+     * @param engine name of the state engine
+     * @param workers number of simulations running at the same time
+     * @return number of runs that failed
+     * @throws InterruptedException if interrupted while waiting for the runs
+     */
+    public static int run(
+        List<Configuration> configs,
+        String outputDir,
+        String prefix,
+        String engine,
+        int workers
+    ) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger converged = new AtomicInteger();
+        int progressStep = Math.max(1, configs.size() / 20);
+
+        for (Configuration config : configs) {
+            executor.execute(() -> {
+                String path = new File(outputDir, fileName(prefix, config)).getPath();
+                try (CsvSink sink = new CsvSink(path)) {
+                    Simulation simulation = new Simulation(config, engine);
+                    simulation.run(sink);
+                    if (simulation.hasConverged()) {
+                        converged.incrementAndGet();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    System.out.println("Run " + path + " failed: " + e);
+                }
+
+                int done = finished.incrementAndGet();
+                if (done % progressStep == 0 || done == configs.size()) {
+                    System.out.printf("Finished %d/%d runs%n", done, configs.size());
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        if (converged.get() > 0) {
+            System.out.printf("%d runs converged before their last tic%n", converged.get());
+        }
+        return failed.get();
+    }
+
+    /**
+     * Run the configurations in batches of lanes of an InterleavedSimulation on a pool of
+     * worker threads, saving each result to its own CSV in the output directory. Every
+     * result is the same as from a run of its own with the array engine.
+     *
+     * @param configs configurations to run, all with the same grid size
+     * @param outputDir directory the CSVs are saved to
+     * @param prefix prefix of the file names
+     * @param workers number of batches running at the same time
+     * @param lanes number of configurations advanced together
+     * @return number of runs that failed
+     * @throws InterruptedException if interrupted while waiting for the runs
+     */
+    public static int runInterleaved(
+        List<Configuration> configs,
+        String outputDir,
+        String prefix,
+        int workers,
+        int lanes
+    ) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger converged = new AtomicInteger();
+
+        for (int from = 0; from < configs.size(); from += lanes) {
+            List<Configuration> batch =
+                configs.subList(from, Math.min(configs.size(), from + lanes));
+            executor.execute(() -> {
+                CsvSink[] sinks = new CsvSink[batch.size()];
+                try {
+                    for (int l = 0; l < sinks.length; l++) {
+                        String path = fileName(prefix, batch.get(l));
+                        sinks[l] = new CsvSink(new File(outputDir, path).getPath());
+                    }
+                    InterleavedSimulation simulation = new InterleavedSimulation(
+                        batch.toArray(new Configuration[0]),
+                        null
+                    );
+                    simulation.run(sinks);
+                    for (int l = 0; l < sinks.length; l++) {
+                        if (simulation.hasConverged(l)) {
+                            converged.incrementAndGet();
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failed.addAndGet(batch.size());
+                    System.out.println(
+                        "Batch from " + fileName(prefix, batch.get(0)) + " failed: " + e
+                    );
+                } finally {
+                    for (CsvSink sink : sinks) {
+                        closeQuietly(sink);
+                    }
+                }
+
+                int done = finished.addAndGet(batch.size());
+                System.out.printf("Finished %d/%d runs%n", done, configs.size());
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        if (converged.get() > 0) {
+            System.out.printf("%d runs converged before their last tic%n", converged.get());
+        }
+        return failed.get();
+    }
+
+    /**
+     * Close a sink of a batch, reporting instead of throwing if its last write fails.
+     *
+     * @param sink sink to close, or null if it was never opened
+     */
+    private static void closeQuietly(CsvSink sink) {
+        if (sink == null) {
+            return;
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            System.out.println("Closing a CSV failed: " + e);
+        }
+    }
+
+    /**
+     * Runs a parameter sweep of the simulation.
+     *
+     * Command line arguments:
+     *  --outputDir=[directory]                    Directory the CSVs are saved to
+     *  --scenarios=[filePath]                     Scenario file, replaces the parameter grid
+     *  --intensity=[values]                       Workout intensities, e.g. 55,65,75 or 55:95:10
+     *  --hoursOfSleep=[values]                    Hours of sleep, e.g. 4:12:2
+     *  --daysBwWorkouts=[values]                  Days between workouts
+     *  --slowTwitchFibersPercentage=[values]      Slow twitch fibers percentages
+     *  --lift=[values]                            true, false or true,false
+     *  --nutritionQuality=[values]                Qualities of nutrition
+     *  --prefix=[prefix]                          Prefix of the file names, defaults to MD
+     *  --engine=[object|array|active|vector|offheap|interleaved]
+     *                                             State engine, defaults to object
+     *  --lanes=[lanes]                            Configurations the interleaved engine
+     *                                             advances together, defaults to 16
+     *  --workers=[workers]                        Simulations run at the same time, defaults
+     *                                             to the number of processors
+     *  --gridWidth=[width]                        Width of grid, defaults to 17
+     *  --gridHeight=[height]                      Height of grid, defaults to 17
+     *  --maxTic=[tics]                            Number of tics to simulate, defaults to 3000
+     *  --seed=[seed]                              Seed shared by every run, random if not given
+     *  --precision=[double|float]                 Precision the state is stored in, defaults
+     *                                             to double
+     *  --convergenceWindow=[tics]                 End runs once the means of their metrics
+     *                                             over the last two windows of this many
+     *                                             tics agree, defaults to 0 which never
+     *                                             ends early
+     *  --convergenceTolerance=[tolerance]         Largest change of the mean of a converged
+     *                                             metric, defaults to 1e-6
+     *  --fastForward=[true|false]                 Save the remaining tics of converged runs
+     *                                             from their steady state, defaults to false
+     *  --liftSampling=[bernoulli|geometric]       Draw each patch of a lift or skip between
+     *                                             the lifted patches by geometric gaps,
+     *                                             defaults to bernoulli
+     *  --sproutSampling=[bernoulli|binomial]      Sprout each fiber from 20 draws or from a
+     *                                             single binomial draw, defaults to bernoulli
+     *
+     * Parameters that are not given take the values 95, 8, 5, 50, true and 0.5.
+     *
+     * @param args the command line arguments used to configure the sweep.
+     */
+    public static void main(String[] args) {
+        String outputDir = ".";
+        String scenarios = null;
+        String intensity = "95";
+        String hoursOfSleep = "8";
+        String daysBwWorkouts = "5";
+        String slowTwitchFibersPercentage = "50";
+        String lift = "true";
+        String nutritionQuality = "0.5";
+        String prefix = "MD";
+        String engine = null;
+        int lanes = Ensemble.DEFAULT_LANES;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int gridWidth = Configuration.DEFAULT_GRID_WIDTH;
+        int gridHeight = Configuration.DEFAULT_GRID_HEIGHT;
+        int maxTic = Configuration.DEFAULT_MAX_TIC;
+        long seed = CounterRandom.newSeed();
+        String precision = "double";
+        int convergenceWindow = 0;
+        double convergenceTolerance = Configuration.DEFAULT_CONVERGENCE_TOLERANCE;
+        boolean fastForward = false;
+        String liftSampling = "bernoulli";
+        String sproutSampling = "bernoulli";
+
+        // parse command line arguments.
+        for (String arg : args) {
+            if (arg.startsWith("--outputDir=")) {
+                outputDir = arg.split("=")[1];
+            } else if (arg.startsWith("--scenarios=")) {
+                scenarios = arg.split("=")[1];
+            } else if (arg.startsWith("--intensity=")) {
+                intensity = arg.split("=")[1];
+            } else if (arg.startsWith("--hoursOfSleep=")) {
+                hoursOfSleep = arg.split("=")[1];
+            } else if (arg.startsWith("--daysBwWorkouts=")) {
+                daysBwWorkouts = arg.split("=")[1];
+            } else if (arg.startsWith("--slowTwitchFibersPercentage=")) {
+                slowTwitchFibersPercentage = arg.split("=")[1];
+            } else if (arg.startsWith("--lift=")) {
+                lift = arg.split("=")[1];
+            } else if (arg.startsWith("--nutritionQuality=")) {
+                nutritionQuality = arg.split("=")[1];
+            } else if (arg.startsWith("--prefix=")) {
+                prefix = arg.split("=")[1];
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.split("=")[1];
+            } else if (arg.startsWith("--lanes=")) {
+                lanes = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--workers=")) {
+                workers = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--gridWidth=")) {
+                gridWidth = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--gridHeight=")) {
+                gridHeight = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--maxTic=")) {
+                maxTic = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.split("=")[1]);
+            } else if (arg.startsWith("--precision=")) {
+                precision = arg.split("=")[1];
+            } else if (arg.startsWith("--convergenceWindow=")) {
+                convergenceWindow = Integer.parseInt(arg.split("=")[1]);
+            } else if (arg.startsWith("--convergenceTolerance=")) {
+                convergenceTolerance = Double.parseDouble(arg.split("=")[1]);
+            } else if (arg.startsWith("--fastForward=")) {
+                fastForward = Boolean.parseBoolean(arg.split("=")[1]);
+            } else if (arg.startsWith("--liftSampling=")) {
+                liftSampling = arg.split("=")[1];
+            } else if (arg.startsWith("--sproutSampling=")) {
+                sproutSampling = arg.split("=")[1];
+            }
+        }
+
+        if (!precision.equals("double") && !precision.equals("float")) {
+            throw new IllegalArgumentException("Unknown precision: " + precision);
+        }
+        if ("interleaved".equals(engine) && precision.equals("float")) {
+            throw new IllegalArgumentException("The interleaved engine keeps double state");
+        }
+        if (!liftSampling.equals("bernoulli") && !liftSampling.equals("geometric")) {
+            throw new IllegalArgumentException("Unknown lift sampling: " + liftSampling);
+        }
+        if (!sproutSampling.equals("bernoulli") && !sproutSampling.equals("binomial")) {
+            throw new IllegalArgumentException("Unknown sprout sampling: " + sproutSampling);
+        }
+
+        try {
+            List<Configuration> configs;
+            if (scenarios != null) {
+                String[] defaults = {
+                    parseValues(intensity).get(0),
+                    parseValues(hoursOfSleep).get(0),
+                    parseValues(daysBwWorkouts).get(0),
+                    parseValues(slowTwitchFibersPercentage).get(0),
+                    parseValues(lift).get(0),
+                    parseValues(nutritionQuality).get(0)
+                };
+                configs = readScenarios(
+                    scenarios,
+                    defaults,
+                    gridWidth,
+                    gridHeight,
+                    maxTic,
+                    seed
+                );
+            } else {
+                configs = expandGrid(
+                    parseValues(intensity),
+                    parseValues(hoursOfSleep),
+                    parseValues(daysBwWorkouts),
+                    parseValues(slowTwitchFibersPercentage),
+                    parseValues(lift),
+                    parseValues(nutritionQuality),
+                    gridWidth,
+                    gridHeight,
+                    maxTic,
+                    seed
+                );
+            }
+            if (precision.equals("float")) {
+                configs.replaceAll(config -> config.withSinglePrecision(true));
+            }
+            if (liftSampling.equals("geometric")) {
+                configs.replaceAll(config -> config.withGeometricLift(true));
+            }
+            if (sproutSampling.equals("binomial")) {
+                configs.replaceAll(config -> config.withBinomialSprout(true));
+            }
+            if (convergenceWindow > 0) {
+                int window = convergenceWindow;
+                double tolerance = convergenceTolerance;
+                boolean forward = fastForward;
+                configs.replaceAll(
+                    config -> config.withConvergence(window, tolerance, forward)
+                );
+            }
+
+            System.out.printf(
+                "Running %d configurations on %d workers with seed %d%n",
+                configs.size(),
+                workers,
+                seed
+            );
+            long start = System.nanoTime();
+            int failed = "interleaved".equals(engine)
+                ? runInterleaved(configs, outputDir, prefix, workers, lanes)
+                : run(configs, outputDir, prefix, engine, workers);
+            System.out.printf(
+                "Sweep finished in %.1f s, %d runs failed%n",
+                (System.nanoTime() - start) / 1e9,
+                failed
+            );
+
+        } catch (IOException e) {
+            System.out.println("IO Exception occured while reading the scenario file");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Sweep interrupted");
+        }
+    }
+}
@@ -0,0 +1,764 @@
+/**
+ * SIMD implementation of the muscle built on the incubating Vector API.
+ *
+ * The state is laid out like {@link extended.ArrayMuscle}, one flat primitive array per
+ * field with patch (i, j) at index i * height + j, and every phase processes a whole vector
+ * of patches per step with the widest species the CPU offers (eight doubles on AVX-512).
+ * The diffusion keeps its own padded share buffers so the 8-neighbour stencil is a sum of
+ * nine unaligned vector loads. Each lane performs exactly the same operations in the same
+ * order as the scalar engines, and log10 is evaluated lane by lane with the same function
+ * they use, so a run gives the same output with this engine as with the others.
+ *
+ * The class needs the jdk.incubator.vector module both to compile and to run. Simulation
+ * loads it by reflection and falls back to the array engine when it is not available.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package extended.vector;
+
+import extended.CompensatedSums;
+import extended.Configuration;
+import extended.CounterRandom;
+import extended.FastLog10;
+import extended.FiberSprout;
+import extended.LiftSampler;
+import extended.MuscleEngine;
+import extended.RowStripes;
+import java.util.concurrent.ForkJoinPool;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorMuscle implements MuscleEngine {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int BLOCK_CELLS = 4096; // patches a fused pass runs each phase over
+
+    private Configuration config; // configuration of the simulation
+    private long seed;            // seed of every random draw
+    private boolean fastMath;     // approximate log10 with FastLog10
+    private int liftTic;          // tic of the lift being performed
+    private boolean liftToday;    // whether the fused tic lifts weight
+    private boolean eats;         // whether eating changes the hormones at all
+
+    private int width;      // number of rows of the grid
+    private int height;     // number of patches in each row
+    private int totalGrid;  // number of patches in the grid
+    private int blockRows;  // rows a fused pass runs each phase over
+
+    // state of the patches, indexed by i * height + j
+    private double[] anabolicHormone;
+    private double[] catabolicHormone;
+    private double[] fiberSize;
+    private double[] maxSize;
+
+    // log10 values and draws evaluated ahead of a vector loop, indexed by i * height + j
+    private double[] firstScratch;
+    private double[] secondScratch;
+    private LiftSampler sampler; // samples lifted patches by geometric gaps, null if per patch
+    private int[] lifted;        // patches the sampler selected, row by row
+
+    // shares handed out to each neighbour, indexed by (i + 1) * stride + (j + 1)
+    private int stride;
+    private double[] anabolicShares;
+    private double[] catabolicShares;
+    private double[] neighbourCount;  // number of real neighbours, indexed by i * height + j
+
+    private RowStripes stripes; // runs the phases over stripes of rows
+
+    // phases bound once so that running them does not allocate
+    private RowStripes.RowTask dailyActivityTask = this::performDailyActivity;
+    private RowStripes.RowTask liftWeightTask = this::liftWeight;
+    private RowStripes.RowTask eatTask = this::eat;
+    private RowStripes.RowTask sleepTask = this::sleep;
+    private RowStripes.RowTask storeSharesTask = this::storeShares;
+    private RowStripes.RowTask gatherSharesTask = this::gatherShares;
+    private RowStripes.RowTask regulateHormonesTask = this::regulateHormones;
+    private RowStripes.RowTask developMuscleTask = this::developMuscle;
+    private RowStripes.RowTask hormonePassTask = this::hormonePass;
+    private RowStripes.RowTask developPassTask = this::developPass;
+
+    // sums of the state, only up to date while sumsValid is set
+    private boolean sumsValid;
+    private double sumAnabolic;
+    private double sumCatabolic;
+    private double sumMass;
+    private CompensatedSums compensatedSums; // per row sums, null unless compensation is on
+
+    /**
+     * Constructor for VectorMuscle running every phase on the calling thread.
+     *
+     * @param config configuration of the simulation
+     */
+    public VectorMuscle(Configuration config) {
+        this(config, null);
+    }
+
+    /**
+     * Constructor for VectorMuscle to allocate the state arrays with grid width and height
+     * from the configuration.
+     *
+     * @param config configuration of the simulation
+     * @param pool pool running the phases over row stripes, or null to run sequentially
+     */
+    public VectorMuscle(Configuration config, ForkJoinPool pool) {
+        this.config = config;
+        this.seed = config.getSeed();
+        this.fastMath = config.isFastMath();
+        this.eats = config.getNutritionDelta() != 0;
+        this.width = config.getGridWidth();
+        this.height = config.getGridHeight();
+        this.totalGrid = width * height;
+        this.blockRows = Math.max(1, BLOCK_CELLS / height);
+        this.anabolicHormone = new double[totalGrid];
+        this.catabolicHormone = new double[totalGrid];
+        this.fiberSize = new double[totalGrid];
+        this.maxSize = new double[totalGrid];
+        this.firstScratch = new double[totalGrid];
+        this.secondScratch = new double[totalGrid];
+        this.stride = height + 2;
+        this.anabolicShares = new double[(width + 2) * stride];
+        this.catabolicShares = new double[(width + 2) * stride];
+        this.neighbourCount = new double[totalGrid];
+        this.stripes = new RowStripes(pool, width);
+        if (config.isGeometricLift()) {
+            this.sampler = new LiftSampler(config);
+            this.lifted = new int[totalGrid];
+        }
+        if (config.isCompensatedSums()) {
+            this.compensatedSums = new CompensatedSums(width);
+        }
+        initialise();
+    }
+
+    /**
+     * Number of heap bytes taken by a muscle of given size: four double arrays for the
+     * state, two scratch arrays, the neighbour counts and the padded share buffers.
+     *
+     * @param width width of grid
+     * @param height height of grid
+     * @return estimated bytes
+     */
+    public static long estimateMemory(int width, int height) {
+        return 56L * width * height + 16L * (width + 2) * (height + 2);
+    }
+
+    /**
+     * Initialise hormones, muscle fiber and neighbour count of each patch, stripe by stripe.
+     */
+    private void initialise() {
+        stripes.forEach(this::initialiseRows);
+    }
+
+    /**
+     * Initialise hormones, muscle fiber and neighbour count of the patches of the given rows.
+     * Every draw is keyed by its patch, so the stripes give the same state on any number of
+     * threads.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void initialiseRows(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+            for (int j = 0; j < height; j++) {
+                int k = i * height + j;
+                maxSize[k] = FiberSprout.sprout(config, k);
+                fiberSize[k] = FiberSprout.initialSize(seed, k, (int) maxSize[k]);
+                if (fiberSize[k] < 1) {
+                    fiberSize[k] = 1;
+                }
+                if (fiberSize[k] > maxSize[k]) {
+                    fiberSize[k] = maxSize[k];
+                }
+                anabolicHormone[k] = Configuration.ANABOLIC_HORMONE_MIN;
+                catabolicHormone[k] = Configuration.CATABOLIC_HORMONE_MIN;
+
+                int rows = 1 + (i > 0 ? 1 : 0) + (i < width - 1 ? 1 : 0);
+                int cols = 1 + (j > 0 ? 1 : 0) + (j < height - 1 ? 1 : 0);
+                neighbourCount[k] = rows * cols - 1;
+            }
+        }
+    }
+
+    /**
+     * Run a whole tic in two passes over the grid split around the diffusion. Each pass runs
+     * its phases over blocks of rows small enough to stay in cache, and the second pass sums
+     * the state for the metrics on the way.
+     */
+    @Override
+    public void triggerTic(int tic, boolean lift) {
+        liftTic = tic;
+        liftToday = lift;
+        sumsValid = false;
+        stripes.forEach(hormonePassTask);
+        stripes.forEach(developPassTask);
+        if (compensatedSums != null) {
+            storeCompensatedTotals();
+        }
+    }
+
+    @Override
+    public void triggerDailyActivity() {
+        sumsValid = false;
+        stripes.forEach(dailyActivityTask);
+    }
+
+    @Override
+    public void triggerLiftWeight(int tic) {
+        liftTic = tic;
+        sumsValid = false;
+        stripes.forEach(liftWeightTask);
+    }
+
+    @Override
+    public void triggerEat() {
+        sumsValid = false;
+        stripes.forEach(eatTask);
+    }
+
+    @Override
+    public void triggerSleep() {
+        sumsValid = false;
+        stripes.forEach(sleepTask);
+    }
+
+    @Override
+    public void triggerRegulateHormones() {
+        diffuse();
+        stripes.forEach(regulateHormonesTask);
+    }
+
+    /**
+     * Implementation of Netlogo's diffuse function through the padded share buffers. Every
+     * stripe stores its shares before any stripe gathers.
+     */
+    @Override
+    public void diffuse() {
+        sumsValid = false;
+        stripes.forEach(storeSharesTask);
+        stripes.forEach(gatherSharesTask);
+    }
+
+    @Override
+    public void triggerDevelopMuscle() {
+        sumsValid = false;
+        stripes.forEach(developMuscleTask);
+    }
+
+    /**
+     * Daily activity, lifting weight, eating and sleeping applied block by block, followed
+     * by storing the shares the block hands out.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void hormonePass(int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; i += blockRows) {
+            int end = Math.min(i + blockRows, toRow);
+            performDailyActivity(i, end);
+            if (liftToday) {
+                liftWeight(i, end);
+            }
+            if (eats) {
+                eat(i, end);
+            }
+            sleep(i, end);
+            storeShares(i, end);
+        }
+    }
+
+    /**
+     * Diffusion, hormone regulation and muscle development applied block by block. A pass
+     * over the whole grid also sums the state in index order, so the metrics need no further
+     * scan; stripes of a parallel run leave that to the getters. With compensation every
+     * stripe sums its own rows instead.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developPass(int fromRow, int toRow) {
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+
+        for (int i = fromRow; i < toRow; i += blockRows) {
+            int end = Math.min(i + blockRows, toRow);
+            gatherShares(i, end);
+            regulateHormones(i, end);
+            developMuscle(i, end);
+            if (compensatedSums != null) {
+                for (int row = i; row < end; row++) {
+                    sumRow(row);
+                }
+                continue;
+            }
+            for (int k = i * height; k < end * height; k++) {
+                anabolicTotal += anabolicHormone[k];
+                catabolicTotal += catabolicHormone[k];
+                massTotal += fiberSize[k];
+            }
+        }
+
+        if (compensatedSums == null && fromRow == 0 && toRow == width) {
+            sumAnabolic = anabolicTotal;
+            sumCatabolic = catabolicTotal;
+            sumMass = massTotal;
+            sumsValid = true;
+        }
+    }
+
+    /**
+     * Hormonal effect of daily activity on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void performDailyActivity(int fromRow, int toRow) {
+        int from = fromRow * height;
+        int to = toRow * height;
+        log10(fiberSize, firstScratch, from, to);
+
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LANES) {
+            DoubleVector log = DoubleVector.fromArray(SPECIES, firstScratch, k);
+            DoubleVector.fromArray(SPECIES, anabolicHormone, k)
+                .add(log.mul(2.5))
+                .intoArray(anabolicHormone, k);
+            DoubleVector.fromArray(SPECIES, catabolicHormone, k)
+                .add(log.mul(2.0))
+                .intoArray(catabolicHormone, k);
+        }
+        for (; k < to; k++) {
+            anabolicHormone[k] += firstScratch[k] * 2.5;
+            catabolicHormone[k] += firstScratch[k] * 2.0;
+        }
+    }
+
+    /**
+     * Hormonal effect of lifting weight on the patches of the given rows. The draws are made
+     * ahead of the vector loop, which only applies the lift to the lanes they select. Patches
+     * sampled geometrically are lifted one by one instead.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void liftWeight(int fromRow, int toRow) {
+        double threshold = config.getLiftThreshold();
+
+        int from = fromRow * height;
+        int to = toRow * height;
+        if (sampler != null) {
+            for (int i = fromRow; i < toRow; i++) {
+                int count = sampler.sample(liftTic, i, lifted);
+                for (int n = i * height; n < i * height + count; n++) {
+                    int k = lifted[n];
+                    anabolicHormone[k] += log10(fiberSize[k]) * 55;
+                    catabolicHormone[k] += log10(fiberSize[k]) * 44;
+                }
+            }
+            return;
+        }
+        log10(fiberSize, firstScratch, from, to);
+        for (int k = from; k < to; k++) {
+            secondScratch[k] = CounterRandom.uniform(seed, liftTic, k, 0);
+        }
+
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LANES) {
+            VectorMask<Double> lifted =
+                DoubleVector.fromArray(SPECIES, secondScratch, k).lt(threshold);
+            DoubleVector log = DoubleVector.fromArray(SPECIES, firstScratch, k);
+            DoubleVector.fromArray(SPECIES, anabolicHormone, k)
+                .add(log.mul(55), lifted)
+                .intoArray(anabolicHormone, k);
+            DoubleVector.fromArray(SPECIES, catabolicHormone, k)
+                .add(log.mul(44), lifted)
+                .intoArray(catabolicHormone, k);
+        }
+        for (; k < to; k++) {
+            if (secondScratch[k] < threshold) {
+                anabolicHormone[k] += firstScratch[k] * 55;
+                catabolicHormone[k] += firstScratch[k] * 44;
+            }
+        }
+    }
+
+    /**
+     * Hormonal effect of quality of nutrition intake on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void eat(int fromRow, int toRow) {
+        double delta = config.getNutritionDelta();
+
+        int from = fromRow * height;
+        int to = toRow * height;
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LANES) {
+            DoubleVector anabolic = DoubleVector.fromArray(SPECIES, anabolicHormone, k);
+            DoubleVector catabolic = DoubleVector.fromArray(SPECIES, catabolicHormone, k);
+            anabolic.add(anabolic.mul(delta)).intoArray(anabolicHormone, k);
+            catabolic.sub(catabolic.mul(delta)).intoArray(catabolicHormone, k);
+        }
+        for (; k < to; k++) {
+            anabolicHormone[k] += anabolicHormone[k] * delta;
+            catabolicHormone[k] -= catabolicHormone[k] * delta;
+        }
+    }
+
+    /**
+     * Hormonal effect of sleeping on the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void sleep(int fromRow, int toRow) {
+        double hours = config.getHourseOfSleep();
+
+        int from = fromRow * height;
+        int to = toRow * height;
+        log10(anabolicHormone, firstScratch, from, to);
+        log10(catabolicHormone, secondScratch, from, to);
+
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LANES) {
+            DoubleVector anabolicLog = DoubleVector.fromArray(SPECIES, firstScratch, k);
+            DoubleVector catabolicLog = DoubleVector.fromArray(SPECIES, secondScratch, k);
+            DoubleVector.fromArray(SPECIES, anabolicHormone, k)
+                .sub(anabolicLog.mul(0.48).mul(hours))
+                .intoArray(anabolicHormone, k);
+            DoubleVector.fromArray(SPECIES, catabolicHormone, k)
+                .sub(catabolicLog.mul(0.5).mul(hours))
+                .intoArray(catabolicHormone, k);
+        }
+        for (; k < to; k++) {
+            anabolicHormone[k] -= 0.48 * firstScratch[k] * hours;
+            catabolicHormone[k] -= 0.5 * secondScratch[k] * hours;
+        }
+    }
+
+    /**
+     * Store the shares handed out by the patches of the given rows, computed from their
+     * levels before diffusion.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void storeShares(int fromRow, int toRow) {
+        int bound = SPECIES.loopBound(height);
+        for (int i = fromRow; i < toRow; i++) {
+            int k = i * height;
+            int p = (i + 1) * stride + 1;
+            int j = 0;
+            for (; j < bound; j += LANES) {
+                share(DoubleVector.fromArray(SPECIES, anabolicHormone, k + j))
+                    .intoArray(anabolicShares, p + j);
+                share(DoubleVector.fromArray(SPECIES, catabolicHormone, k + j))
+                    .intoArray(catabolicShares, p + j);
+            }
+            for (; j < height; j++) {
+                anabolicShares[p + j] = share(anabolicHormone[k + j]);
+                catabolicShares[p + j] = share(catabolicHormone[k + j]);
+            }
+        }
+    }
+
+    /**
+     * Replace the levels of the patches of the given rows with their diffused levels. Every
+     * share must have been stored before any row gathers.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void gatherShares(int fromRow, int toRow) {
+        int bound = SPECIES.loopBound(height);
+        for (int i = fromRow; i < toRow; i++) {
+            int k = i * height;
+            int p = (i + 1) * stride + 1;
+            int j = 0;
+            for (; j < bound; j += LANES) {
+                DoubleVector neighbours = DoubleVector.fromArray(SPECIES, neighbourCount, k + j);
+                gather(anabolicShares, p + j, neighbours,
+                    DoubleVector.fromArray(SPECIES, anabolicHormone, k + j))
+                    .intoArray(anabolicHormone, k + j);
+                gather(catabolicShares, p + j, neighbours,
+                    DoubleVector.fromArray(SPECIES, catabolicHormone, k + j))
+                    .intoArray(catabolicHormone, k + j);
+            }
+            for (; j < height; j++) {
+                double neighbours = neighbourCount[k + j];
+                anabolicHormone[k + j] =
+                    gather(anabolicShares, p + j, neighbours, anabolicHormone[k + j]);
+                catabolicHormone[k + j] =
+                    gather(catabolicShares, p + j, neighbours, catabolicHormone[k + j]);
+            }
+        }
+    }
+
+    /**
+     * Clamp the hormone levels of the patches of the given rows to their limits.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void regulateHormones(int fromRow, int toRow) {
+        int from = fromRow * height;
+        int to = toRow * height;
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LANES) {
+            DoubleVector.fromArray(SPECIES, anabolicHormone, k)
+                .min(Configuration.ANABOLIC_HORMONE_MAX)
+                .max(Configuration.ANABOLIC_HORMONE_MIN)
+                .intoArray(anabolicHormone, k);
+            DoubleVector.fromArray(SPECIES, catabolicHormone, k)
+                .min(Configuration.CATABOLIC_HORMONE_MAX)
+                .max(Configuration.CATABOLIC_HORMONE_MIN)
+                .intoArray(catabolicHormone, k);
+        }
+        for (; k < to; k++) {
+            double anabolic = Math.min(anabolicHormone[k], Configuration.ANABOLIC_HORMONE_MAX);
+            double catabolic = Math.min(catabolicHormone[k], Configuration.CATABOLIC_HORMONE_MAX);
+            anabolicHormone[k] = Math.max(anabolic, Configuration.ANABOLIC_HORMONE_MIN);
+            catabolicHormone[k] = Math.max(catabolic, Configuration.CATABOLIC_HORMONE_MIN);
+        }
+    }
+
+    /**
+     * Grow and regulate the muscle fibers of the patches of the given rows.
+     *
+     * @param fromRow first row
+     * @param toRow row after the last row
+     */
+    private void developMuscle(int fromRow, int toRow) {
+        int from = fromRow * height;
+        int to = toRow * height;
+        log10(anabolicHormone, firstScratch, from, to);
+        log10(catabolicHormone, secondScratch, from, to);
+
+        int k = from;
+        for (int bound = from + SPECIES.loopBound(to - from); k < bound; k += LANES) {
+            DoubleVector anabolicLog = DoubleVector.fromArray(SPECIES, firstScratch, k);
+            DoubleVector catabolicLog = DoubleVector.fromArray(SPECIES, secondScratch, k);
+            DoubleVector.fromArray(SPECIES, fiberSize, k)
+                .sub(catabolicLog.mul(0.2))
+                .add(anabolicLog.min(catabolicLog.mul(1.05)).mul(0.2))
+                .max(1)
+                .min(DoubleVector.fromArray(SPECIES, maxSize, k))
+                .intoArray(fiberSize, k);
+        }
+        for (; k < to; k++) {
+            double size = fiberSize[k];
+            size -= 0.2 * secondScratch[k];
+            size += 0.2 * Math.min(firstScratch[k], 1.05 * secondScratch[k]);
+            fiberSize[k] = Math.min(Math.max(size, 1), maxSize[k]);
+        }
+    }
+
+    /**
+     * Amount to be shared to each neighbour for a vector of hormone levels.
+     *
+     * @param level hormone levels of the patches before diffusion
+     * @return amount handed to each neighbour
+     */
+    private static DoubleVector share(DoubleVector level) {
+        return level.mul(Configuration.HORMONE_DIFFUSE_RATE).div(Configuration.MAX_NEIGHBOUR);
+    }
+
+    /**
+     * Amount to be shared to each neighbour for given hormone level
+     *
+     * @param level hormone level of the patch before diffusion
+     * @return amount handed to each neighbour
+     */
+    private static double share(double level) {
+        return level * Configuration.HORMONE_DIFFUSE_RATE / Configuration.MAX_NEIGHBOUR;
+    }
+
+    /**
+     * Apply the shares of the 3x3 blocks around a vector of padded slots, in row-major order
+     * of the patches handing them out.
+     *
+     * @param shares padded share buffer
+     * @param p padded index of the first patch
+     * @param neighbours number of real neighbours of the patches
+     * @param level hormone levels of the patches before diffusion
+     * @return hormone levels after diffusion
+     */
+    private DoubleVector gather(
+        double[] shares,
+        int p,
+        DoubleVector neighbours,
+        DoubleVector level
+    ) {
+        int above = p - stride;
+        int below = p + stride;
+        return level
+            .add(DoubleVector.fromArray(SPECIES, shares, above - 1))
+            .add(DoubleVector.fromArray(SPECIES, shares, above))
+            .add(DoubleVector.fromArray(SPECIES, shares, above + 1))
+            .add(DoubleVector.fromArray(SPECIES, shares, p - 1))
+            .sub(DoubleVector.fromArray(SPECIES, shares, p).mul(neighbours))
+            .add(DoubleVector.fromArray(SPECIES, shares, p + 1))
+            .add(DoubleVector.fromArray(SPECIES, shares, below - 1))
+            .add(DoubleVector.fromArray(SPECIES, shares, below))
+            .add(DoubleVector.fromArray(SPECIES, shares, below + 1));
+    }
+
+    /**
+     * Apply the shares of the 3x3 block around a padded slot, in row-major order of the
+     * patches handing them out.
+     *
+     * @param shares padded share buffer
+     * @param p padded index of the patch
+     * @param neighbours number of real neighbours of the patch
+     * @param level hormone level of the patch before diffusion
+     * @return hormone level after diffusion
+     */
+    private double gather(double[] shares, int p, double neighbours, double level) {
+        int above = p - stride;
+        int below = p + stride;
+        return level
+            + shares[above - 1] + shares[above] + shares[above + 1]
+            + shares[p - 1] - shares[p] * neighbours + shares[p + 1]
+            + shares[below - 1] + shares[below] + shares[below + 1];
+    }
+
+    /**
+     * Base 10 logarithm of a range of values ahead of a vector loop. Math.log10 has no
+     * vector form giving the same results, and a lane-wise FastLog10 needs a table gather
+     * that measured slower than the scalar function, so logarithms stay scalar.
+     *
+     * @param source arguments
+     * @param target array receiving the logarithms at the same indices
+     * @param from first index
+     * @param to index after the last index
+     */
+    private void log10(double[] source, double[] target, int from, int to) {
+        for (int k = from; k < to; k++) {
+            target[k] = log10(source[k]);
+        }
+    }
+
+    /**
+     * Base 10 logarithm, approximated when the configuration asks for fast math.
+     *
+     * @param x argument
+     * @return log10 of x
+     */
+    private double log10(double x) {
+        return fastMath ? FastLog10.log10(x) : Math.log10(x);
+    }
+
+    @Override
+    public void saveState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        System.arraycopy(anabolicHormone, 0, anabolic, 0, totalGrid);
+        System.arraycopy(catabolicHormone, 0, catabolic, 0, totalGrid);
+        System.arraycopy(this.fiberSize, 0, fiberSize, 0, totalGrid);
+        for (int k = 0; k < totalGrid; k++) {
+            maxSize[k] = (int) this.maxSize[k];
+        }
+    }
+
+    @Override
+    public void loadState(
+        double[] anabolic,
+        double[] catabolic,
+        double[] fiberSize,
+        int[] maxSize
+    ) {
+        sumsValid = false;
+        System.arraycopy(anabolic, 0, anabolicHormone, 0, totalGrid);
+        System.arraycopy(catabolic, 0, catabolicHormone, 0, totalGrid);
+        System.arraycopy(fiberSize, 0, this.fiberSize, 0, totalGrid);
+        for (int k = 0; k < totalGrid; k++) {
+            this.maxSize[k] = maxSize[k];
+        }
+    }
+
+    /**
+     * Sum every field of the state in index order in a single scan, or row by row with
+     * compensation.
+     */
+    private void updateSums() {
+        if (compensatedSums != null) {
+            for (int i = 0; i < width; i++) {
+                sumRow(i);
+            }
+            storeCompensatedTotals();
+            return;
+        }
+
+        double anabolicTotal = 0;
+        double catabolicTotal = 0;
+        double massTotal = 0;
+        for (int k = 0; k < totalGrid; k++) {
+            anabolicTotal += anabolicHormone[k];
+            catabolicTotal += catabolicHormone[k];
+            massTotal += fiberSize[k];
+        }
+        sumAnabolic = anabolicTotal;
+        sumCatabolic = catabolicTotal;
+        sumMass = massTotal;
+        sumsValid = true;
+    }
+
+    /**
+     * Compensated sums of every field of the state over a row.
+     *
+     * @param i row
+     */
+    private void sumRow(int i) {
+        compensatedSums.clearRow(i);
+        for (int k = i * height; k < (i + 1) * height; k++) {
+            compensatedSums.add(i, CompensatedSums.ANABOLIC, anabolicHormone[k]);
+            compensatedSums.add(i, CompensatedSums.CATABOLIC, catabolicHormone[k]);
+            compensatedSums.add(i, CompensatedSums.MASS, fiberSize[k]);
+        }
+    }
+
+    /**
+     * Merge the compensated sums of the rows into the sums of the state.
+     */
+    private void storeCompensatedTotals() {
+        sumAnabolic = compensatedSums.total(CompensatedSums.ANABOLIC);
+        sumCatabolic = compensatedSums.total(CompensatedSums.CATABOLIC);
+        sumMass = compensatedSums.total(CompensatedSums.MASS);
+        sumsValid = true;
+    }
+
+    @Override
+    public double getAverageAnabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumAnabolic / totalGrid;
+    }
+
+    @Override
+    public double getAverageCatabolicHormone() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumCatabolic / totalGrid;
+    }
+
+    @Override
+    public double getMuscleMass() {
+        if (!sumsValid) {
+            updateSums();
+        }
+        return sumMass / 100;
+    }
+}
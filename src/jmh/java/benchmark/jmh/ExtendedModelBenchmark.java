@@ -0,0 +1,178 @@
+/**
+ * JMH benchmarks of the extended model.
+ *
+ * Measures a tic as advanced by Global, a single diffusion, every phase of a tic on its own,
+ * the metric getters, full runs and setting up the muscle alone, for every combination of
+ * engine, grid and thread count. Results are consumed by a Blackhole so the metrics are
+ * computed.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package benchmark.jmh;
+
+import extended.Configuration;
+import extended.MuscleEngine;
+import extended.Simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtendedModelBenchmark {
+
+    @Param({"object", "array", "active", "vector", "offheap"})
+    private String engine;
+
+    @Param({"17", "128", "512"})
+    private int grid;
+
+    @Param({"1"})
+    private int threads;
+
+    @Param({"300"})
+    private int runTics;
+
+    @Param({"false"})
+    private boolean fastMath;
+
+    @Param({"bernoulli"})
+    private String sproutSampling;
+
+    private Configuration config;
+    private ForkJoinPool pool;
+    private Simulation simulation;
+    private MuscleEngine muscle;
+    private int tic;
+
+    /**
+     * Create the configuration and the pool shared by every iteration.
+     */
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        config = new Configuration(95, 8.0, 5, 50, true, 0.5, grid, grid, runTics, 42L)
+            .withFastMath(fastMath)
+            .withBinomialSprout(sproutSampling.equals("binomial"));
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Start every iteration from a newly set up muscle.
+     */
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        simulation = new Simulation(config, engine, pool);
+        muscle = simulation.getMuscle();
+        tic = 0;
+    }
+
+    /**
+     * Shut the pool down after the last iteration.
+     */
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public double tic() {
+        simulation.go();
+        return simulation.getMuscleMass();
+    }
+
+    @Benchmark
+    public void diffuse() {
+        muscle.diffuse();
+    }
+
+    @Benchmark
+    public void dailyActivity() {
+        muscle.triggerDailyActivity();
+    }
+
+    @Benchmark
+    public void liftWeight() {
+        muscle.triggerLiftWeight(tic);
+        tic += config.getDaysBetweenWorkouts();
+    }
+
+    @Benchmark
+    public void eat() {
+        muscle.triggerEat();
+    }
+
+    @Benchmark
+    public void sleep() {
+        muscle.triggerSleep();
+    }
+
+    @Benchmark
+    public void regulateHormones() {
+        muscle.triggerRegulateHormones();
+    }
+
+    @Benchmark
+    public void developMuscle() {
+        muscle.triggerDevelopMuscle();
+    }
+
+    /**
+     * Change the state before every call of the metrics benchmark, outside the measured
+     * time, so the getters cannot answer from the sums of the previous call.
+     */
+    @State(Scope.Thread)
+    public static class Changed {
+
+        @Setup(Level.Invocation)
+        public void change(ExtendedModelBenchmark benchmark) {
+            benchmark.muscle.triggerDailyActivity();
+        }
+    }
+
+    @Benchmark
+    public void metrics(Changed changed, Blackhole blackhole) {
+        blackhole.consume(muscle.getMuscleMass());
+        blackhole.consume(muscle.getAverageAnabolicHormone());
+        blackhole.consume(muscle.getAverageCatabolicHormone());
+    }
+
+    @Benchmark
+    public double run() {
+        Simulation run = new Simulation(config, engine, pool);
+        while (!run.isFinished()) {
+            run.go();
+        }
+        return run.getMuscleMass();
+    }
+
+    @Benchmark
+    public Simulation setup() {
+        return new Simulation(config, engine, pool);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * JMH benchmarks of the original model on its fixed 17x17 grid.
+ *
+ * The original model keeps its configuration and tic in static fields, and Global.go reads
+ * a tic only its main method advances, so the tic benchmark replays the phases of go with a
+ * tic of its own.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package benchmark.jmh;
+
+import original.Configuration;
+import original.Global;
+import original.Muscle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OriginalModelBenchmark {
+
+    @Param({"300"})
+    private int runTics;
+
+    private Configuration config;
+    private Muscle muscle;
+    private int tic;
+
+    /**
+     * Load the configuration the benchmarks of the original model run with.
+     */
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        Global.loadConfig(95, 8.0, 5, 50, true);
+        config = Configuration.getInstance();
+    }
+
+    /**
+     * Start every iteration from a newly set up muscle.
+     */
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        muscle = Global.setUp();
+        tic = 0;
+    }
+
+    /**
+     * Run one tic of the original model on a muscle.
+     *
+     * @param muscle muscle to advance
+     * @param tic tic being run
+     * @param blackhole consumer of the metrics
+     */
+    private void go(Muscle muscle, int tic, Blackhole blackhole) {
+        muscle.triggerDailyActivity();
+        if (config.isLift() && tic % config.getDaysBetweenWorkouts() == 0) {
+            muscle.triggerLiftWeight();
+        }
+        muscle.triggerSleep();
+        muscle.triggerRegulateHormones();
+        muscle.triggerDevelopMuscle();
+
+        blackhole.consume(muscle.getMuscleMass());
+        blackhole.consume(muscle.getAverageAnabolicHormone());
+        blackhole.consume(muscle.getAverageCatabolicHormone());
+    }
+
+    @Benchmark
+    public void tic(Blackhole blackhole) {
+        go(muscle, tic++, blackhole);
+    }
+
+    @Benchmark
+    public void diffuse() {
+        muscle.diffuse();
+    }
+
+    @Benchmark
+    public void run(Blackhole blackhole) {
+        Muscle run = Global.setUp();
+        for (int t = 0; t < runTics; t++) {
+            go(run, t, blackhole);
+        }
+    }
+
+    @Benchmark
+    public Muscle setup() {
+        return Global.setUp();
+    }
+}
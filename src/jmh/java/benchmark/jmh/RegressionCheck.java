@@ -0,0 +1,198 @@
+/**
+ * RegressionCheck class running the JMH benchmarks and comparing them with an earlier run.
+ *
+ * The benchmarks matching a pattern run under JMH with the given parameters. Their scores
+ * are saved to a CSV, one row per benchmark and combination of parameters, and compared
+ * against the CSV of an earlier run: every score that dropped by more than the tolerance is
+ * reported as a regression.
+ *
+ * @author Dong Hyeog Jang (582238)
+ * @author Junheng Chen (1049540)
+ * @author Ning Wang (1468286)
+ *
+ * @date 18 October 2026
+ */
+
+package benchmark.jmh;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class RegressionCheck {
+
+    private List<String> keys = new ArrayList<>();   // benchmark and parameters of each result
+    private List<Result> results = new ArrayList<>(); // primary result of each benchmark
+
+    /**
+     * Key of a result: the class and method of the benchmark followed by its parameters,
+     * e.g. "ExtendedModelBenchmark.tic engine=array grid=128 runTics=300 threads=1".
+     *
+     * @param params parameters of the benchmark run
+     * @return key of the result
+     */
+    private static String key(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        int method = benchmark.lastIndexOf('.');
+        StringBuilder key = new StringBuilder(
+            benchmark.substring(benchmark.lastIndexOf('.', method - 1) + 1)
+        );
+        for (String name : params.getParamsKeys()) {
+            key.append(' ').append(name).append('=').append(params.getParam(name));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Run the benchmarks under JMH and record their results.
+     *
+     * @param include pattern of the benchmarks to run
+     * @param params values of each benchmark parameter overriding the defaults
+     * @throws RunnerException if JMH fails to run the benchmarks
+     */
+    private void run(String include, Map<String, String[]> params) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().include(include);
+        for (Map.Entry<String, String[]> param : params.entrySet()) {
+            options.param(param.getKey(), param.getValue());
+        }
+
+        for (RunResult run : new Runner(options.build()).run()) {
+            keys.add(key(run.getParams()));
+            results.add(run.getPrimaryResult());
+        }
+    }
+
+    /**
+     * Save the results as CSV.
+     *
+     * @param path path to the CSV
+     * @throws IOException if the CSV cannot be written
+     */
+    private void save(String path) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(path)))) {
+            writer.println("benchmark,score,error,unit");
+            for (int r = 0; r < results.size(); r++) {
+                Result result = results.get(r);
+                writer.println(
+                    keys.get(r) + "," + result.getScore() + "," + result.getScoreError() + "," +
+                    result.getScoreUnit()
+                );
+            }
+        }
+    }
+
+    /**
+     * Compare the results against the results of an earlier run.
+     *
+     * @param path path to the CSV of the earlier run
+     * @param tolerance largest relative drop of a score that is not a regression
+     * @return number of regressions
+     * @throws IOException if the CSV cannot be read
+     */
+    private int compare(String path, double tolerance) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        List<String> lines = Files.readAllLines(Paths.get(path));
+        for (String line : lines.subList(1, lines.size())) {
+            String[] cells = line.split(",");
+            if (cells.length >= 2) {
+                baseline.put(cells[0], Double.parseDouble(cells[1]));
+            }
+        }
+
+        int regressions = 0;
+        System.out.println("\nComparison with " + path + ":");
+        for (int r = 0; r < results.size(); r++) {
+            Double before = baseline.get(keys.get(r));
+            if (before == null || before == 0) {
+                continue;
+            }
+            double ratio = results.get(r).getScore() / before;
+            boolean regression = ratio < 1 - tolerance;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf(
+                "%-80s %8.3fx%s%n",
+                keys.get(r),
+                ratio,
+                regression ? "  REGRESSION" : ""
+            );
+        }
+        System.out.printf(
+            "%d regressions beyond a tolerance of %.0f%%%n",
+            regressions,
+            tolerance * 100
+        );
+        return regressions;
+    }
+
+    /**
+     * Runs the benchmarks and checks them for regressions.
+     *
+     * Command line arguments:
+     *  --include=[pattern]              Benchmarks to run, e.g. ExtendedModelBenchmark.tic,
+     *                                   defaults to all
+     *  --param=[name=values]            Comma separated values of a benchmark parameter,
+     *                                   e.g. --param=engine=array,vector, may be repeated
+     *  --output=[filePath]              CSV the results are saved to
+     *  --baseline=[filePath]            CSV of an earlier run to compare against
+     *  --tolerance=[fraction]           Largest drop of a score that is not a regression,
+     *                                   defaults to 0.1
+     *
+     * The program exits with status 1 if a score regressed against the baseline.
+     *
+     * @param args the command line arguments used to configure the benchmarks.
+     * @throws RunnerException if JMH fails to run the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        RegressionCheck check = new RegressionCheck();
+        String include = "benchmark.jmh.";
+        Map<String, String[]> params = new HashMap<>();
+        String output = null;
+        String baseline = null;
+        double tolerance = 0.1;
+
+        // parse command line arguments.
+        for (String arg : args) {
+            if (arg.startsWith("--include=")) {
+                include = arg.split("=")[1];
+            } else if (arg.startsWith("--param=")) {
+                String[] param = arg.split("=");
+                params.put(param[1], param[2].split(","));
+            } else if (arg.startsWith("--output=")) {
+                output = arg.split("=")[1];
+            } else if (arg.startsWith("--baseline=")) {
+                baseline = arg.split("=")[1];
+            } else if (arg.startsWith("--tolerance=")) {
+                tolerance = Double.parseDouble(arg.split("=")[1]);
+            }
+        }
+
+        check.run(include, params);
+
+        try {
+            if (output != null) {
+                check.save(output);
+            }
+            if (baseline != null && check.compare(baseline, tolerance) > 0) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception occured during saving/reading the results");
+            e.printStackTrace();
+        }
+    }
+}